@@ -2,11 +2,16 @@ package org.jujubeframework.util;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.math.NumberUtils;
+import org.jujubeframework.util.support.DecimalFormatPool;
+import org.jujubeframework.util.support.FixedDecimal;
+import org.jujubeframework.util.support.StreamingStatistics;
 
 import java.math.BigDecimal;
-import java.text.DecimalFormat;
-import java.util.Collections;
+import java.text.DecimalFormatSymbols;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * 算数工具类(calculate)<br>
@@ -18,6 +23,7 @@ import java.util.List;
  * <li>floor:地板，12.6 = 12.0</li>
  * <li>ceil:天花板，12.3 = 13.0</li>
  * </ul>
+ * 加减乘除和比较优先在long上按定点数计算（见{@link FixedDecimal}），只有输入不是普通小数写法、保留的小数位数超过{@link FixedDecimal#MAX_SCALE}或者溢出时才使用BigDecimal，两者结果一致
  *
  * @author John Li
  */
@@ -27,6 +33,22 @@ public class Calcs {
     public static final double DOUBLE_ZERO = 0.0d;
     public static final int TWO = 2;
 
+    private static final int ADD = 0;
+    private static final int SUB = 1;
+    private static final int MUL = 2;
+    private static final int DIV = 3;
+
+    /**
+     * numberToString的格式，最多保留10位小数
+     */
+    private static final String PLAIN_PATTERN = "###########.##########";
+    private static final int PLAIN_FRACTION_DIGITS = 10;
+
+    /**
+     * 上次检查的默认Locale，以及它的小数点、零和负号是否为'.'、'0'和'-'
+     */
+    private static volatile Map.Entry<Locale, Boolean> plainSymbols = new SimpleImmutableEntry<>(null, false);
+
     private Calcs() {
     }
 
@@ -39,6 +61,11 @@ public class Calcs {
 
         str1 = str1.trim();
         str2 = str2.trim();
+        int scale1 = FixedDecimal.scaleOf(str1);
+        int scale2 = FixedDecimal.scaleOf(str2);
+        if (scale1 >= 0 && scale2 >= 0) {
+            return FixedDecimal.compare(FixedDecimal.unscaled(str1, scale1), scale1, FixedDecimal.unscaled(str2, scale2), scale2) == 0;
+        }
         // stripTrailingZeros()能去掉后面的0，进行比较
         BigDecimal b1 = new BigDecimal(str1).stripTrailingZeros();
         BigDecimal b2 = new BigDecimal(str2).stripTrailingZeros();
@@ -50,6 +77,11 @@ public class Calcs {
      * 确认两个金额值是否相等（非常严谨的比较）
      */
     public static boolean equ(Number str1, Number str2) {
+        int scale1 = FixedDecimal.scaleOf(str1);
+        int scale2 = FixedDecimal.scaleOf(str2);
+        if (scale1 >= 0 && scale2 >= 0) {
+            return FixedDecimal.compare(FixedDecimal.unscaled(str1, scale1), scale1, FixedDecimal.unscaled(str2, scale2), scale2) == 0;
+        }
         return equ(String.valueOf(str1), str2.toString());
     }
 
@@ -69,6 +101,11 @@ public class Calcs {
 
         str1 = str1.trim();
         str2 = str2.trim();
+        int scale1 = FixedDecimal.scaleOf(str1);
+        int scale2 = FixedDecimal.scaleOf(str2);
+        if (scale1 >= 0 && scale2 >= 0) {
+            return FixedDecimal.compare(FixedDecimal.unscaled(str1, scale1), scale1, FixedDecimal.unscaled(str2, scale2), scale2) < 0;
+        }
         BigDecimal b1 = new BigDecimal(str1).stripTrailingZeros();
         BigDecimal b2 = new BigDecimal(str2).stripTrailingZeros();
         BigDecimal b3 = b1.min(b2).stripTrailingZeros();
@@ -99,6 +136,10 @@ public class Calcs {
 
         str1 = str1.trim();
         str2 = str2.trim();
+        String fast = fastCalc(ADD, str1, str2, iScale);
+        if (fast != null) {
+            return fast;
+        }
         BigDecimal b1 = new BigDecimal(str1);
         BigDecimal b2 = new BigDecimal(str2);
         BigDecimal b3 = b1.add(b2);
@@ -110,6 +151,16 @@ public class Calcs {
      * 加法
      */
     public static Number add(Number str1, Number str2, int iScale) {
+        int scale1 = FixedDecimal.scaleOf(str1);
+        int scale2 = FixedDecimal.scaleOf(str2);
+        if (scale1 >= 0 && scale2 >= 0 && iScale > -1 && iScale <= FixedDecimal.MAX_SCALE) {
+            try {
+                long result = calc(ADD, FixedDecimal.unscaled(str1, scale1), scale1, FixedDecimal.unscaled(str2, scale2), scale2, iScale);
+                return FixedDecimal.toDouble(result, iScale);
+            } catch (ArithmeticException e) {
+                // 溢出，按BigDecimal计算
+            }
+        }
         return NumberUtils.toDouble(add(String.valueOf(str1), String.valueOf(str2), iScale));
     }
 
@@ -139,6 +190,10 @@ public class Calcs {
 
         str1 = str1.trim();
         str2 = str2.trim();
+        String fast = fastCalc(SUB, str1, str2, iScale);
+        if (fast != null) {
+            return fast;
+        }
         BigDecimal b1 = new BigDecimal(str1);
         BigDecimal b2 = new BigDecimal(str2);
         BigDecimal b3 = b1.subtract(b2);
@@ -161,6 +216,16 @@ public class Calcs {
      * 减法
      */
     public static Number sub(Number str1, Number str2, int iScale) {
+        int scale1 = FixedDecimal.scaleOf(str1);
+        int scale2 = FixedDecimal.scaleOf(str2);
+        if (scale1 >= 0 && scale2 >= 0 && iScale > -1 && iScale <= FixedDecimal.MAX_SCALE) {
+            try {
+                long result = calc(SUB, FixedDecimal.unscaled(str1, scale1), scale1, FixedDecimal.unscaled(str2, scale2), scale2, iScale);
+                return FixedDecimal.toDouble(result, iScale);
+            } catch (ArithmeticException e) {
+                // 溢出，按BigDecimal计算
+            }
+        }
         return NumberUtils.toDouble(sub(String.valueOf(str1), String.valueOf(str2), iScale));
     }
 
@@ -179,6 +244,10 @@ public class Calcs {
 
         str1 = str1.trim();
         str2 = str2.trim();
+        String fast = fastCalc(MUL, str1, str2, iScale);
+        if (fast != null) {
+            return fast;
+        }
         BigDecimal b1 = new BigDecimal(str1);
         BigDecimal b2 = new BigDecimal(str2);
         BigDecimal b3 = b1.multiply(b2);
@@ -198,6 +267,16 @@ public class Calcs {
      * 乘法
      */
     public static Number mul(Number str1, Number str2, int iScale) {
+        int scale1 = FixedDecimal.scaleOf(str1);
+        int scale2 = FixedDecimal.scaleOf(str2);
+        if (scale1 >= 0 && scale2 >= 0 && iScale > -1 && iScale <= FixedDecimal.MAX_SCALE) {
+            try {
+                long result = calc(MUL, FixedDecimal.unscaled(str1, scale1), scale1, FixedDecimal.unscaled(str2, scale2), scale2, iScale);
+                return FixedDecimal.toDouble(result, iScale);
+            } catch (ArithmeticException e) {
+                // 溢出，按BigDecimal计算
+            }
+        }
         return NumberUtils.toDouble(mul(String.valueOf(str1), String.valueOf(str2), iScale));
     }
 
@@ -220,6 +299,10 @@ public class Calcs {
 
         str1 = str1.trim();
         str2 = str2.trim();
+        String fast = fastCalc(DIV, str1, str2, iScale);
+        if (fast != null) {
+            return fast;
+        }
         BigDecimal b1 = new BigDecimal(str1);
         BigDecimal b2 = new BigDecimal(str2);
         BigDecimal b3 = b1.divide(b2, iScale, BigDecimal.ROUND_HALF_UP);
@@ -237,50 +320,274 @@ public class Calcs {
      * 除法
      */
     public static Number div(Number str1, Number str2, int iScale) {
+        int scale1 = FixedDecimal.scaleOf(str1);
+        int scale2 = FixedDecimal.scaleOf(str2);
+        if (scale1 >= 0 && scale2 >= 0 && iScale > -1 && iScale <= FixedDecimal.MAX_SCALE) {
+            try {
+                long result = calc(DIV, FixedDecimal.unscaled(str1, scale1), scale1, FixedDecimal.unscaled(str2, scale2), scale2, iScale);
+                return FixedDecimal.toDouble(result, iScale);
+            } catch (ArithmeticException e) {
+                // 溢出，按BigDecimal计算
+            }
+        }
         return NumberUtils.toDouble(div(String.valueOf(str1), String.valueOf(str2), iScale));
     }
 
+    /**
+     * 定点数快速计算。输入不是普通小数写法、小数位数超出范围或者溢出时返回null，由调用方按BigDecimal计算
+     */
+    private static String fastCalc(int op, String str1, String str2, int iScale) {
+        int scale1 = FixedDecimal.scaleOf(str1);
+        int scale2 = FixedDecimal.scaleOf(str2);
+        if (scale1 < 0 || scale2 < 0 || iScale > FixedDecimal.MAX_SCALE) {
+            return null;
+        }
+        try {
+            long result = calc(op, FixedDecimal.unscaled(str1, scale1), scale1, FixedDecimal.unscaled(str2, scale2), scale2, iScale);
+            return FixedDecimal.toPlainString(result, iScale);
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private static long calc(int op, long a, int aScale, long b, int bScale, int iScale) {
+        switch (op) {
+            case ADD:
+                return FixedDecimal.add(a, aScale, b, bScale, iScale);
+            case SUB:
+                return FixedDecimal.subtract(a, aScale, b, bScale, iScale);
+            case MUL:
+                return FixedDecimal.multiply(a, aScale, b, bScale, iScale);
+            default:
+                // 除数为0时按除以1处理
+                if (b == 0) {
+                    b = 1;
+                    bScale = 0;
+                }
+                return FixedDecimal.divide(a, aScale, b, bScale, iScale);
+        }
+    }
+
     /**
      * 计算平均数
      */
     public static double getAverage(List<Double> list) {
         double sum = 0;
-        for (int i = 0; i < list.size(); i++) {
-            sum += list.get(i).doubleValue();
+        for (Double value : list) {
+            sum += value;
         }
         return sum / list.size();
     }
 
     /**
-     * 计算中位数
+     * 计算平均数
+     */
+    public static double getAverage(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * 计算总体方差（单遍计算，见{@link StreamingStatistics}）
+     */
+    public static double getVariance(double[] values) {
+        return new StreamingStatistics().addAll(values).getVariance();
+    }
+
+    /**
+     * 计算总体标准差
+     */
+    public static double getStandardDeviation(double[] values) {
+        return Math.sqrt(getVariance(values));
+    }
+
+    /**
+     * 计算中位数。不会修改list
      */
     public static double getMedian(List<Double> list) {
-        Collections.sort(list);
-        if (list.size() % TWO == 0) {
-            int index = (int) (list.size() / 2) - 1;
-            return (list.get(index) + list.get(index + 1)) / 2;
-        } else {
-            int index = (int) (list.size() / 2) + 1;
-            return list.get(index).doubleValue();
+        double[] values = new double[list.size()];
+        int i = 0;
+        for (Double value : list) {
+            values[i++] = value;
+        }
+        return selectMedian(values);
+    }
+
+    /**
+     * 计算中位数（快速选择，平均O(n)）。不会修改values
+     */
+    public static double getMedian(double[] values) {
+        return selectMedian(values.clone());
+    }
+
+    /**
+     * 计算百分位数，相邻两个值之间线性插值（和Excel的PERCENTILE.INC一致）。不会修改values
+     *
+     * @param percentile 0 ~ 100，例如90表示P90
+     */
+    public static double getPercentile(double[] values, double percentile) {
+        Validate.isTrue(values.length > 0, "values不能为空");
+        Validate.isTrue(percentile >= 0 && percentile <= 100, "percentile必须在0 ~ 100之间");
+        double[] copy = values.clone();
+        double position = percentile / 100 * (copy.length - 1);
+        int index = (int) position;
+        double lower = select(copy, index);
+        double fraction = position - index;
+        if (fraction == 0) {
+            return lower;
+        }
+        return lower + (minFrom(copy, index + 1) - lower) * fraction;
+    }
+
+    private static double selectMedian(double[] values) {
+        Validate.isTrue(values.length > 0, "values不能为空");
+        int half = values.length / TWO;
+        if (values.length % TWO == 0) {
+            double lower = select(values, half - 1);
+            return (lower + minFrom(values, half)) / TWO;
+        }
+        return select(values, half);
+    }
+
+    /**
+     * 快速选择：把第k小的值放到values[k]，且values[k]之后的值都不小于它
+     */
+    private static double select(double[] values, int k) {
+        int left = 0;
+        int right = values.length - 1;
+        while (right > left) {
+            // 三数取中作为枢轴，避免有序数据退化
+            int middle = (left + right) >>> 1;
+            if (values[middle] < values[left]) {
+                swap(values, left, middle);
+            }
+            if (values[right] < values[left]) {
+                swap(values, left, right);
+            }
+            if (values[right] < values[middle]) {
+                swap(values, middle, right);
+            }
+            double pivot = values[middle];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(values, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                break;
+            }
+        }
+        return values[k];
+    }
+
+    private static double minFrom(double[] values, int from) {
+        double min = values[from];
+        for (int i = from + 1; i < values.length; i++) {
+            if (values[i] < min) {
+                min = values[i];
+            }
         }
+        return min;
+    }
+
+    private static void swap(double[] values, int i, int j) {
+        double tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
     }
 
     /**
      * 数字格式化
      */
     public static String numberFormat(Number number, String pattern) {
-        DecimalFormat myformat = new DecimalFormat();
-        myformat.applyPattern(pattern);
-        return myformat.format(number);
+        return DecimalFormatPool.format(number, pattern);
     }
 
     /**
-     * 把number转换为string，非科学计数法
+     * 把number转换为string，非科学计数法，数字符号按默认Locale。
+     * 默认Locale的小数点、零和负号是'.'、'0'和'-'时，整数和能精确表示的double直接拼接，结果和DecimalFormat一致
      */
     public static String numberToString(Number value) {
-        // 格式化设置
-        DecimalFormat decimalFormat = new DecimalFormat("###########.##########");
-        decimalFormat.setGroupingUsed(false);
-        return decimalFormat.format(value);
+        if (!hasPlainSymbols()) {
+            return DecimalFormatPool.format(value, PLAIN_PATTERN);
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return Long.toString(value.longValue());
+        }
+        if (value instanceof Double) {
+            String plain = plainToString(value.doubleValue());
+            if (plain != null) {
+                return plain;
+            }
+        }
+        return DecimalFormatPool.format(value, PLAIN_PATTERN);
+    }
+
+    /**
+     * 默认Locale的数字符号是否和直接拼接的结果一致，Locale不变时只检查一次
+     */
+    private static boolean hasPlainSymbols() {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        Map.Entry<Locale, Boolean> cached = plainSymbols;
+        if (cached.getKey() != locale) {
+            DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+            boolean plain = symbols.getDecimalSeparator() == '.' && symbols.getZeroDigit() == '0' && symbols.getMinusSign() == '-';
+            cached = new SimpleImmutableEntry<>(locale, plain);
+            plainSymbols = cached;
+        }
+        return cached.getValue();
+    }
+
+    /**
+     * 和{@link #PLAIN_PATTERN}在小数点、零和负号为'.'、'0'和'-'时格式化的结果一致：不分组，去掉末尾的0。
+     * 小数位数超过{@link #PLAIN_FRACTION_DIGITS}（需要舍入）或不能精确表示时返回null
+     */
+    private static String plainToString(double value) {
+        int scale = FixedDecimal.scaleOf(value);
+        if (scale < 0 || scale > PLAIN_FRACTION_DIGITS) {
+            return null;
+        }
+        long unscaled = Math.abs(FixedDecimal.toUnscaled(value, scale));
+        while (scale > 0 && unscaled % 10 == 0) {
+            unscaled /= 10;
+            scale--;
+        }
+        String digits = Long.toString(unscaled);
+        StringBuilder sb = new StringBuilder(digits.length() + scale + 2);
+        // 包括-0.0
+        if (Double.doubleToRawLongBits(value) < 0) {
+            sb.append('-');
+        }
+        if (scale == 0) {
+            return sb.append(digits).toString();
+        }
+        int integerLength = digits.length() - scale;
+        if (integerLength > 0) {
+            sb.append(digits, 0, integerLength).append('.').append(digits, integerLength, digits.length());
+        } else {
+            sb.append("0.");
+            for (int i = integerLength; i < 0; i++) {
+                sb.append('0');
+            }
+            sb.append(digits);
+        }
+        return sb.toString();
     }
 }
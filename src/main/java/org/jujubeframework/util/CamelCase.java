@@ -1,9 +1,10 @@
 package org.jujubeframework.util;
 
 import org.apache.commons.lang3.StringUtils;
+import org.jujubeframework.util.support.NameCache;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 驼峰命名法转换工具
@@ -14,6 +15,8 @@ import java.util.concurrent.ConcurrentHashMap;
  *  CamelCaseUtils.toCapitalizeCamelCase("hello_world") == "HelloWorld"
  *  CamelCaseUtils.toUnderScoreCase("helloWorld") = "hello_world"
  * </pre>
+ * <p>
+ * 转换结果有缓存，同一个名称在缓存中时返回的是同一个实例，可以直接作为Record等Map的key复用
  *
  * @author John Li Email：jujubeframework@163.com
  */
@@ -23,10 +26,16 @@ public class CamelCase {
     }
 
     /**
-     * 字段转换的缓存
+     * 每个方向的缓存容量。Map的key可能来自外部输入，所以缓存必须有上限
      */
-    private static Map<String, String> underLine_fieldCache = new ConcurrentHashMap<String, String>();
-    private static Map<String, String> camelCase_fieldCache = new ConcurrentHashMap<String, String>();
+    private static final int CACHE_CAPACITY = 4096;
+
+    /**
+     * 字段转换的缓存，每种转换各用一个，互不干扰
+     */
+    private static final NameCache UNDERLINE_CACHE = new NameCache(CACHE_CAPACITY, CamelCase::convertToUnderline);
+    private static final NameCache CAMEL_CASE_CACHE = new NameCache(CACHE_CAPACITY, CamelCase::convertToCamelCase);
+    private static final NameCache SPECIL_CAMEL_CASE_CACHE = new NameCache(CACHE_CAPACITY, CamelCase::convertToSpecilCamelCase);
 
     private static final char SEPARATOR = '_';
 
@@ -37,106 +46,146 @@ public class CamelCase {
         if (input == null) {
             return "";
         }
-
-        // 先从cache中取值
-        String cache = underLine_fieldCache.get(input);
-        if (cache != null) {
-            return cache;
+        // 没有大写字母的不需要转换
+        if (!hasUpperCase(input)) {
+            return input;
         }
+        return UNDERLINE_CACHE.get(input);
+    }
 
-        StringBuilder resultSb = new StringBuilder();
-        boolean upperCase = false;
-        for (int i = 0; i < input.length(); i++) {
-            char c = input.charAt(i);
-
-            boolean nextUpperCase = true;
+    /**
+     * 下划线写法转换为驼峰写法
+     */
+    public static String toCamelCase(String input) {
+        if (input == null) {
+            return "";
+        }
+        if (input.indexOf(SEPARATOR) < 0) {
+            return input;
+        }
+        return CAMEL_CASE_CACHE.get(input);
+    }
 
-            if (i < (input.length() - 1)) {
-                nextUpperCase = Character.isUpperCase(input.charAt(i + 1));
-            }
+    /**
+     * 特殊的转换：前两个字母不能大写
+     */
+    public static String toSpecilCamelCase(String input) {
+        if (input == null) {
+            return "";
+        }
+        return SPECIL_CAMEL_CASE_CACHE.get(input);
+    }
 
-            if ((i >= 0) && Character.isUpperCase(c)) {
-                if (!upperCase || !nextUpperCase) {
-                    if (i > 0) {
-                        resultSb.append(SEPARATOR);
-                    }
-                }
-                upperCase = true;
-            } else {
-                upperCase = false;
-            }
+    /**
+     * 下划线写法转换为驼峰写法,并首字母大写
+     */
+    public static String toCapitalizeCamelCase(String s) {
+        String str = toCamelCase(s);
+        return StringUtils.capitalize(str);
+    }
 
-            resultSb.append(Character.toLowerCase(c));
+    /**
+     * 批量转换为下划线写法，例如整行表头
+     */
+    public static List<String> toUnderlineNames(List<String> inputs) {
+        List<String> result = new ArrayList<>(inputs.size());
+        for (String input : inputs) {
+            result.add(toUnderlineName(input));
         }
+        return result;
+    }
 
-        String result = resultSb.toString();
-        underLine_fieldCache.put(input, result);
+    /**
+     * 批量转换为驼峰写法，例如整行表头
+     */
+    public static List<String> toCamelCases(List<String> inputs) {
+        List<String> result = new ArrayList<>(inputs.size());
+        for (String input : inputs) {
+            result.add(toCamelCase(input));
+        }
         return result;
     }
 
     /**
-     * 下划线写法转换为驼峰写法
+     * 批量转换为下划线写法，原地替换数组元素
+     *
+     * @return inputs本身
      */
-    public static String toCamelCase(String input) {
-        if (input == null) {
-            return "";
+    public static String[] toUnderlineNames(String[] inputs) {
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = toUnderlineName(inputs[i]);
         }
-        if (!input.contains(String.valueOf(SEPARATOR))) {
-            return input;
+        return inputs;
+    }
+
+    /**
+     * 批量转换为驼峰写法，原地替换数组元素
+     *
+     * @return inputs本身
+     */
+    public static String[] toCamelCases(String[] inputs) {
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = toCamelCase(inputs[i]);
         }
+        return inputs;
+    }
 
-        // 先从cache中取值
-        String cache = camelCase_fieldCache.get(input);
-        if (cache != null) {
-            return cache;
+    private static boolean hasUpperCase(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if (Character.isUpperCase(input.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String convertToUnderline(String input) {
+        int length = input.length();
+        // 最坏情况每个字符前都加一个下划线
+        char[] result = new char[length * 2];
+        int pos = 0;
+        boolean upperCase = false;
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            boolean nextUpperCase = i >= length - 1 || Character.isUpperCase(input.charAt(i + 1));
+            if (Character.isUpperCase(c)) {
+                if ((!upperCase || !nextUpperCase) && i > 0) {
+                    result[pos++] = SEPARATOR;
+                }
+                upperCase = true;
+            } else {
+                upperCase = false;
+            }
+            result[pos++] = Character.toLowerCase(c);
         }
+        return new String(result, 0, pos);
+    }
 
-        String curInput = input;
-        StringBuilder resultSb = new StringBuilder(curInput.length());
+    private static String convertToCamelCase(String input) {
+        int length = input.length();
+        char[] result = new char[length];
+        int pos = 0;
         boolean upperCase = false;
-        for (int i = 0; i < curInput.length(); i++) {
-            char c = curInput.charAt(i);
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
             if (c == SEPARATOR) {
                 upperCase = true;
             } else if (upperCase) {
-                resultSb.append(Character.toUpperCase(c));
+                result[pos++] = Character.toUpperCase(c);
                 upperCase = false;
             } else {
-                resultSb.append(c);
+                result[pos++] = c;
             }
         }
-
-        String result = resultSb.toString();
-        camelCase_fieldCache.put(input, result);
-        return result;
+        return new String(result, 0, pos);
     }
 
-    /**
-     * 特殊的转换：前两个字母不能大写
-     */
-    public static String toSpecilCamelCase(String input) {
-        // 先从cache中取值
-        String cache = camelCase_fieldCache.get(input);
-        if (cache != null) {
-            return cache;
+    private static String convertToSpecilCamelCase(String input) {
+        char[] result = toCamelCase(input).toCharArray();
+        for (int i = 0; i < Math.min(2, result.length); i++) {
+            result[i] = Character.toLowerCase(result[i]);
         }
-
-        String temp = toCamelCase(input);
-        StringBuilder resultSb = new StringBuilder(temp.length());
-        resultSb.append(temp.substring(0, 2).toLowerCase());
-        resultSb.append(temp.substring(2));
-
-        String result = resultSb.toString();
-        camelCase_fieldCache.put(input, result);
-        return result;
-    }
-
-    /**
-     * 下划线写法转换为驼峰写法,并首字母大写
-     */
-    public static String toCapitalizeCamelCase(String s) {
-        String str = toCamelCase(s);
-        return StringUtils.capitalize(str);
+        return new String(result);
     }
 
 }
@@ -5,16 +5,26 @@ import lombok.NoArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.time.DateFormatUtils;
+import org.jujubeframework.util.support.DateTimeFormatterHolder;
+import org.jujubeframework.util.support.EpochMillisFormatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.text.DateFormat;
+import java.io.IOException;
 import java.text.ParseException;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.YearMonth;
 import java.time.ZoneId;
-import java.time.temporal.TemporalAdjusters;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -33,6 +43,20 @@ public class Dates {
     private static Logger logger = LoggerFactory.getLogger(Dates.class);
 
     private static final String[] DEFAULT_PATTERNS = {"yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd HH:mm", "yyyy-MM-dd HH", "yyyy-MM-dd"};
+    /**
+     * 解析失败的标记值
+     */
+    private static final long PARSE_FAILED = Long.MIN_VALUE;
+    private static final int GREGORIAN_YEAR = 1583;
+    private static final long MIN_TEN_DIGITS = 1000000000L;
+    private static final long MAX_TEN_DIGITS = 9999999999L;
+    private static final long MIN_THIRTEEN_DIGITS = 1000000000000L;
+    private static final long MAX_THIRTEEN_DIGITS = 9999999999999L;
+    /**
+     * 系统默认时区和它的yyyy-MM-dd HH:mm:ss快速格式化，默认时区改变后重新创建
+     */
+    private static volatile DefaultZone defaultZone;
+    private static volatile Today today;
 
     /**
      * 格式化时间
@@ -44,12 +68,7 @@ public class Dates {
         if (date == null) {
             return "";
         }
-
-        String thisPattern = DEFAULT_PATTERNS[0];
-        if (StringUtils.isNotBlank(pattern)) {
-            thisPattern = pattern;
-        }
-        return DateFormatUtils.format(date, thisPattern);
+        return formatMillis(date.getTime(), pattern);
     }
 
     /**
@@ -77,22 +96,50 @@ public class Dates {
      * @param pattern 格式化规则
      */
     public static String formatTimeMillis(Long time, String pattern) {
-        time = time == null ? 0L : time;
-        int len = time.toString().length();
-        if (!(len == THIRTEEN || len == TEN)) {
-            return "";
+        long value = time == null ? 0L : time;
+        // 13位为毫秒，10位为秒
+        if (value >= MIN_THIRTEEN_DIGITS && value <= MAX_THIRTEEN_DIGITS) {
+            return formatMillis(value, pattern);
+        } else if (value >= MIN_TEN_DIGITS && value <= MAX_TEN_DIGITS) {
+            return formatMillis(value * 1000, pattern);
         }
+        return "";
+    }
 
-        Date date = null;
-        // 毫秒
-        if (len == THIRTEEN) {
-            date = new Date(time);
+    /**
+     * 按照{yyyy-MM-dd HH:mm:ss}格式化epoch毫秒值，结果追加到builder中
+     *
+     * @return builder本身
+     */
+    public static StringBuilder formatTo(long timeMillis, StringBuilder builder) {
+        if (EpochMillisFormatter.isSupported(timeMillis)) {
+            return defaultFormatter().formatTo(timeMillis, builder);
         }
-        // 秒
-        else if (len == TEN) {
-            date = new Date(time * 1000);
+        return builder.append(DateFormatUtils.format(timeMillis, DEFAULT_PATTERNS[0]));
+    }
+
+    /**
+     * 按照{yyyy-MM-dd HH:mm:ss}格式化epoch毫秒值，结果追加到appendable（例如Writer）中
+     */
+    public static void formatTo(long timeMillis, Appendable appendable) throws IOException {
+        if (EpochMillisFormatter.isSupported(timeMillis)) {
+            defaultFormatter().formatTo(timeMillis, appendable);
+        } else {
+            appendable.append(DateFormatUtils.format(timeMillis, DEFAULT_PATTERNS[0]));
+        }
+    }
+
+    /**
+     * yyyy-MM-dd HH:mm:ss格式走{@link EpochMillisFormatter}，其他格式走DateFormatUtils
+     */
+    private static String formatMillis(long timeMillis, String pattern) {
+        if (StringUtils.isBlank(pattern) || DEFAULT_PATTERNS[0].equals(pattern)) {
+            if (EpochMillisFormatter.isSupported(timeMillis)) {
+                return defaultFormatter().format(timeMillis);
+            }
+            return DateFormatUtils.format(timeMillis, DEFAULT_PATTERNS[0]);
         }
-        return formatDate(date, pattern);
+        return DateFormatUtils.format(timeMillis, pattern);
     }
 
     /**
@@ -117,53 +164,157 @@ public class Dates {
      * 根据pattern规则转换字符串为Date
      */
     public static Date parse(String source, String pattern) {
-        try {
-            return new SimpleDateFormat(pattern).parse(source);
-        } catch (ParseException e) {
-            throw new RuntimeException(e);
-        }
+        return new Date(parseToTimeMillis(source, pattern));
     }
 
     /**
      * 根据pattern和时区转换字符串为Date
      */
     public static Date parse(String source, String pattern, TimeZone timeZone) {
-        try {
-            DateFormat dateFormat = new SimpleDateFormat(pattern);
-            dateFormat.setTimeZone(timeZone);
-            return dateFormat.parse(source);
-        } catch (ParseException e) {
-            logger.error("dates", e);
+        long millis = parseMillis(source, pattern, timeZone.toZoneId());
+        if (millis == PARSE_FAILED) {
+            logger.error("dates", new ParseException("Unparseable date: \"" + source + "\"", 0));
+            return null;
         }
-        return null;
+        return new Date(millis);
     }
 
     /**
      * 根据{@link Dates#DEFAULT_PATTERNS}转换字符串为Date
      */
     public static Date parse(String source) {
-        for (String pattern : DEFAULT_PATTERNS) {
-            try {
-                return new SimpleDateFormat(pattern).parse(source);
-            } catch (ParseException e) {
-                continue;
-            }
-        }
-        throw new RuntimeException("找不到适合的pattern");
+        return new Date(parseToTimeMillis(source));
     }
 
     /**
+     * 根据pattern规则转换字符串为epoch毫秒值
+     * <p>
+     * 常用pattern使用缓存的DateTimeFormatter解析，不创建Date对象
+     *
      * @see Dates#parse(String, String)
      */
     public static long parseToTimeMillis(String source, String pattern) {
-        return parse(source, pattern).getTime();
+        long millis = parseMillis(source, pattern, ZoneId.systemDefault());
+        if (millis == PARSE_FAILED) {
+            throw new RuntimeException(new ParseException("Unparseable date: \"" + source + "\"", 0));
+        }
+        return millis;
     }
 
     /**
+     * 根据{@link Dates#DEFAULT_PATTERNS}转换字符串为epoch毫秒值
+     * <p>
+     * 根据字符串长度和分隔符一次判断出pattern，直接解析数字，不抛异常试错
+     *
      * @see Dates#parse(String)
      */
     public static long parseToTimeMillis(String source) {
-        return parse(source).getTime();
+        ZoneId zone = ZoneId.systemDefault();
+        long millis = parseDefaultPattern(source, zone);
+        if (millis == PARSE_FAILED) {
+            // 不规范的写法（如2020-1-5、2020-02-30），按原来的方式宽松解析
+            for (String pattern : DEFAULT_PATTERNS) {
+                millis = parseBySimpleDateFormat(source, pattern, zone);
+                if (millis != PARSE_FAILED) {
+                    return millis;
+                }
+            }
+            throw new RuntimeException("找不到适合的pattern");
+        }
+        return millis;
+    }
+
+    /**
+     * 解析失败时返回{@link #PARSE_FAILED}
+     */
+    private static long parseMillis(String source, String pattern, ZoneId zone) {
+        DateTimeFormatter formatter = DateTimeFormatterHolder.getFormatter(pattern);
+        if (formatter != null) {
+            try {
+                TemporalAccessor parsed = formatter.parse(source, new ParsePosition(0));
+                return toEpochMillis(parsed, zone);
+            } catch (DateTimeException e) {
+                // DateTimeFormatter比SimpleDateFormat严格，失败时交给SimpleDateFormat再宽松解析一次
+            }
+        }
+        return parseBySimpleDateFormat(source, pattern, zone);
+    }
+
+    private static long parseBySimpleDateFormat(String source, String pattern, ZoneId zone) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat(pattern);
+        dateFormat.setTimeZone(TimeZone.getTimeZone(zone));
+        Date date = dateFormat.parse(source, new ParsePosition(0));
+        return date == null ? PARSE_FAILED : date.getTime();
+    }
+
+    private static long toEpochMillis(TemporalAccessor parsed, ZoneId zone) {
+        LocalDate date = parsed.query(TemporalQueries.localDate());
+        if (date == null) {
+            int year = parsed.isSupported(ChronoField.YEAR) ? parsed.get(ChronoField.YEAR) : 1970;
+            int month = parsed.isSupported(ChronoField.MONTH_OF_YEAR) ? parsed.get(ChronoField.MONTH_OF_YEAR) : 1;
+            int day = parsed.isSupported(ChronoField.DAY_OF_MONTH) ? parsed.get(ChronoField.DAY_OF_MONTH) : 1;
+            date = LocalDate.of(year, month, day);
+        }
+        if (date.getYear() < GREGORIAN_YEAR) {
+            throw new DateTimeException("julian date");
+        }
+        LocalTime time = parsed.query(TemporalQueries.localTime());
+        if (time == null) {
+            time = LocalTime.MIDNIGHT;
+        }
+        return toEpochMillis(LocalDateTime.of(date, time), zone);
+    }
+
+    /**
+     * 夏令时结束时重复的一段时间取较晚的偏移，和SimpleDateFormat一致
+     */
+    private static long toEpochMillis(LocalDateTime dateTime, ZoneId zone) {
+        return dateTime.atZone(zone).withLaterOffsetAtOverlap().toInstant().toEpochMilli();
+    }
+
+    /**
+     * 按长度和分隔符识别{@link #DEFAULT_PATTERNS}中的格式，并直接解析数字。不匹配或数值越界时返回{@link #PARSE_FAILED}
+     */
+    private static long parseDefaultPattern(String source, ZoneId zone) {
+        int len = source.length();
+        if (len != 10 && len != 13 && len != 16 && len != 19) {
+            return PARSE_FAILED;
+        }
+        if (source.charAt(4) != '-' || source.charAt(7) != '-') {
+            return PARSE_FAILED;
+        }
+        if ((len >= 13 && source.charAt(10) != ' ') || (len >= 16 && source.charAt(13) != ':') || (len == 19 && source.charAt(16) != ':')) {
+            return PARSE_FAILED;
+        }
+        int year = digits(source, 0, 4);
+        int month = digits(source, 5, 2);
+        int day = digits(source, 8, 2);
+        int hour = len >= 13 ? digits(source, 11, 2) : 0;
+        int minute = len >= 16 ? digits(source, 14, 2) : 0;
+        int second = len == 19 ? digits(source, 17, 2) : 0;
+        // 1583年之前SimpleDateFormat使用儒略历，交给它处理以保持一致
+        if (year < GREGORIAN_YEAR || month < 1 || month > 12 || day < 1 || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return PARSE_FAILED;
+        }
+        if (day > YearMonth.of(year, month).lengthOfMonth()) {
+            return PARSE_FAILED;
+        }
+        return toEpochMillis(LocalDateTime.of(year, month, day, hour, minute, second), zone);
+    }
+
+    /**
+     * 解析定长的数字，有非数字字符时返回-1
+     */
+    private static int digits(String source, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = source.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
     }
 
     /**
@@ -216,17 +367,9 @@ public class Dates {
      * 获取当前日期前一个月日期
      */
     public static Date getBeforeByMonth() {
-        // 当前日期
-        Date date = new Date();
-        // 格式化对象
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        // 日历对象
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(date);
-        // 月份减一
-        calendar.add(Calendar.MONTH, -1);
-        // 输出格式化的日期
-        return parse(sdf.format(calendar.getTime()));
+        // 当前日期减一个月，精确到秒
+        LocalDateTime before = LocalDateTime.now().minusMonths(1).withNano(0);
+        return new Date(before.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
     }
 
     /**
@@ -246,15 +389,15 @@ public class Dates {
      * 获取当前月份的最后一天
      */
     public static int getLastDayOfMonth(Date date) {
-        LocalDateTime localDate = LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
-        return localDate.with(TemporalAdjusters.lastDayOfMonth()).getDayOfMonth();
+        LocalDate localDate = Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+        return localDate.lengthOfMonth();
     }
 
     /**
      * 获取当前月份的最后一天
      */
     public static int getLastDayOfMonth() {
-        return getLastDayOfMonth(new Date());
+        return today().lastDayOfMonth;
     }
 
     /**
@@ -275,40 +418,49 @@ public class Dates {
      * @return 数组中四个元素，依次是：日、时、分、秒
      */
     public static long[] endDown(long startTime, long endTime) {
-        String strTime = String.valueOf(endTime);
-        int len = strTime.length();
-        Validate.isTrue(len == THIRTEEN || len == TEN, "endTime必须为秒或毫秒");
-
-        String strNow = String.valueOf(startTime);
-        int len2 = strNow.length();
-        Validate.isTrue(len2 == THIRTEEN || len2 == TEN, "startTime必须为秒或毫秒");
-
-        if (len == THIRTEEN) {
-            endTime = endTime / 1000;
-        }
-        if (len2 == THIRTEEN) {
-            startTime = startTime / 1000;
-        }
-
         long[] arr = new long[4];
-        long second = endTime - startTime;
+        return endDown(startTime, endTime, arr) ? arr : null;
+    }
+
+    /**
+     * 计算两个日期之间的差，结果写入调用方提供的数组，适合循环中复用同一个数组
+     *
+     * @param startTime epoch格式的开始时间
+     * @param endTime   epoch格式的结束时间
+     * @param result    长度至少为4，依次写入：日、时、分、秒
+     * @return endTime早于startTime时返回false，此时result不变
+     */
+    public static boolean endDown(long startTime, long endTime, long[] result) {
+        long second = toEpochSecond(endTime, "endTime必须为秒或毫秒") - toEpochSecond(startTime, "startTime必须为秒或毫秒");
         if (second < 0) {
-            return null;
+            return false;
         }
+        result[0] = second / 86400;
+        result[1] = second / 3600 % 24;
+        result[2] = second / 60 % 60;
+        result[3] = second % 60;
+        return true;
+    }
 
-        long minite = second / 60;
-        long hour = minite / 60;
-        long day = hour / 24;
-
-        second = second % 60;
-        minite = minite % 60;
-        hour = hour % 24;
+    /**
+     * 距目标时间还有多少秒，已过期时返回0
+     *
+     * @param descTime epoch格式（秒或毫秒）的目标时间
+     */
+    public static long countDownSeconds(long descTime) {
+        long second = toEpochSecond(descTime, "descTime必须为秒或毫秒") - now();
+        return second < 0 ? 0 : second;
+    }
 
-        arr[0] = day;
-        arr[1] = hour;
-        arr[2] = minite;
-        arr[3] = second % 60;
-        return arr;
+    /**
+     * 秒或毫秒值统一转为秒值
+     */
+    private static long toEpochSecond(long time, String message) {
+        if (time >= MIN_THIRTEEN_DIGITS && time <= MAX_THIRTEEN_DIGITS) {
+            return time / 1000;
+        }
+        Validate.isTrue(time >= MIN_TEN_DIGITS && time <= MAX_TEN_DIGITS, message);
+        return time;
     }
 
     /**
@@ -324,8 +476,7 @@ public class Dates {
      * @return 返回millis值
      */
     public static long maximumTimeMillisOfToday() {
-        LocalDateTime localDateTime = LocalDateTime.now();
-        return Date.from(localDateTime.with(LocalTime.MAX).atZone(ZoneId.systemDefault()).toInstant()).getTime();
+        return today().end - 1;
     }
 
     /**
@@ -334,22 +485,87 @@ public class Dates {
      * @return 返回millis值
      */
     public static long minimumTimeMillisOfToday() {
-        LocalDateTime localDateTime = LocalDateTime.now();
-        return Date.from(localDateTime.with(LocalTime.MIN).atZone(ZoneId.systemDefault()).toInstant()).getTime();
+        return today().start;
+    }
+
+    /**
+     * 默认时区的yyyy-MM-dd HH:mm:ss快速格式化
+     */
+    private static EpochMillisFormatter defaultFormatter() {
+        return defaultZone().formatter;
+    }
+
+    /**
+     * 当前的默认时区，按时区ID比较，ID不变时不重复转换为ZoneId
+     */
+    private static DefaultZone defaultZone() {
+        TimeZone timeZone = TimeZone.getDefault();
+        DefaultZone current = defaultZone;
+        if (current == null || !current.id.equals(timeZone.getID())) {
+            current = new DefaultZone(timeZone.getID(), timeZone.toZoneId());
+            defaultZone = current;
+        }
+        return current;
+    }
+
+    /**
+     * 获得今天的边界信息，每天只计算一次
+     */
+    private static Today today() {
+        long now = System.currentTimeMillis();
+        ZoneId zone = defaultZone().zone;
+        Today current = today;
+        if (current == null || now < current.start || now >= current.end || current.zone != zone) {
+            current = new Today(LocalDate.now(zone), zone);
+            today = current;
+        }
+        return current;
+    }
+
+    /**
+     * 缓存的默认时区
+     */
+    private static final class DefaultZone {
+        final String id;
+        final ZoneId zone;
+        final EpochMillisFormatter formatter;
+
+        DefaultZone(String id, ZoneId zone) {
+            this.id = id;
+            this.zone = zone;
+            this.formatter = new EpochMillisFormatter(zone);
+        }
+    }
+
+    /**
+     * 缓存的今天的起止时间：[start, end)
+     */
+    private static final class Today {
+        final ZoneId zone;
+        final long start;
+        final long end;
+        final int lastDayOfMonth;
+
+        Today(LocalDate date, ZoneId zone) {
+            this.zone = zone;
+            this.start = date.atStartOfDay(zone).toInstant().toEpochMilli();
+            this.end = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            this.lastDayOfMonth = date.lengthOfMonth();
+        }
     }
 
     /**
      * 以‘yyyy-MM-dd HH:mm:ss’格式化当前日期
      */
     public static String formatNow() {
-        return formatDate(new Date(), null);
+        return formatMillis(System.currentTimeMillis(), null);
     }
 
     /**
      * 以指定的pattern格式化当前日期
      */
     public static String formatNow(String pattern) {
-        return formatDate(new Date(), pattern);
+        return formatMillis(System.currentTimeMillis(), pattern);
     }
 
 }
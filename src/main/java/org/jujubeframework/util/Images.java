@@ -9,19 +9,36 @@ import lombok.NoArgsConstructor;
 import net.coobird.thumbnailator.Thumbnails;
 import net.coobird.thumbnailator.Thumbnails.Builder;
 import net.coobird.thumbnailator.geometry.Position;
-import org.apache.commons.io.FileUtils;
+import org.jujubeframework.util.support.JpegEncoder;
+import org.jujubeframework.util.support.concurrent.PreNameThreadFactory;
 
 import javax.imageio.*;
 import javax.imageio.stream.ImageInputStream;
-import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import javax.servlet.ServletOutputStream;
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 图像处理工具类
@@ -41,6 +58,11 @@ public class Images {
      */
     public static final String PROJECT_WATERMARK_PATH = "watermark.png";
 
+    /**
+     * 采样解码时，解码结果至少是目标尺寸的多少倍
+     */
+    private static final int SUBSAMPLING_MARGIN = 2;
+
     /**
      * 等比压缩图像(默认带水印)
      *
@@ -65,68 +87,266 @@ public class Images {
      * maxHeight) throws IOException
      */
     public static void transform(File sourceFile, File destFile, int maxWidth, int maxHeight, boolean addWatermark) throws IOException {
-        rotateImage(sourceFile);
+        innerTransform(readOriented(sourceFile, maxWidth, maxHeight), destFile, maxWidth, maxHeight, addWatermark);
+    }
 
+    /**
+     * 等比压缩已经读取的图像。同一张图片要生成多个尺寸时，可以用{@link #readOriented(File, int, int)}按最大的尺寸读取一次，再分别压缩
+     *
+     * @see transform(File sourceFile, File destFile, int maxWidth, int
+     * maxHeight) throws IOException
+     */
+    public static void transform(BufferedImage sourceImage, File destFile, int maxWidth, int maxHeight, boolean addWatermark) throws IOException {
+        innerTransform(sourceImage, destFile, maxWidth, maxHeight, addWatermark);
+    }
+
+    /**
+     * 批量等比压缩图像(规则同{@link #transform(File, File, int, int)})，在有界的线程池中并发处理
+     *
+     * @param sourceToDest 源图像文件 -> 压缩后要存放的目标文件
+     * @param maxWidth     压缩后允许的最大宽度
+     * @param maxHeight    压缩后允许的最大高度
+     * @param parallelism  并发处理的线程数
+     * @return 处理失败的源文件及其异常，全部成功时为空。调用线程被中断时，还没开始处理的文件不再处理，
+     * 以InterruptedException记为失败，并保留线程的中断状态
+     */
+    public static Map<File, Exception> transformBatch(Map<File, File> sourceToDest, int maxWidth, int maxHeight, int parallelism) {
+        Map<File, Exception> failures = new ConcurrentHashMap<>(16);
+        // 开始处理前先认领，中断时没有被认领的文件由调用线程记为失败
+        Set<File> claimed = ConcurrentHashMap.newKeySet();
+        InterruptedException interrupted = null;
+        // 队列有界，任务提交过快时由调用线程自己处理，避免大批量文件全部堆积在内存中
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(parallelism * 2),
+                new PreNameThreadFactory("images-transform"), new ThreadPoolExecutor.CallerRunsPolicy());
         try {
-            BufferedImage image = Thumbnails.of(sourceFile).scale(1).rotate(0).asBufferedImage();
-            innerTransform(image, destFile, maxWidth, maxHeight, addWatermark);
-        } catch (IIOException e) { // 有时用常规的读取会报错，所以加下面一层
-            BufferedImage image = getImage(sourceFile);
-            innerTransform(image, destFile, maxWidth, maxHeight, addWatermark);
+            for (Map.Entry<File, File> entry : sourceToDest.entrySet()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                File sourceFile = entry.getKey();
+                executor.execute(() -> {
+                    if (!claimed.add(sourceFile)) {
+                        return;
+                    }
+                    try {
+                        transform(sourceFile, entry.getValue(), maxWidth, maxHeight);
+                    } catch (Exception e) {
+                        failures.put(sourceFile, e);
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            interrupted = e;
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
         }
+        if (interrupted != null) {
+            for (File sourceFile : sourceToDest.keySet()) {
+                if (claimed.add(sourceFile)) {
+                    failures.put(sourceFile, interrupted);
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * 一次生成同一张图片的多个尺寸(例如列表图、详情图、放大图)，使用默认的编码线程池
+     *
+     * @see #transformAll(File, List, ExecutorService)
+     */
+    public static TransformResult transformAll(File sourceFile, List<SizeSpec> specs) throws IOException {
+        return transformAll(sourceFile, specs, EncodeExecutor.INSTANCE);
+    }
+
+    /**
+     * 一次生成同一张图片的多个尺寸
+     * <p>
+     * 源文件只解码一次(按最大的尺寸采样解码并摆正)；从大到小逐级缩放，小尺寸由上一级的结果缩放得到，水印只在编码时加上，不会带入下一级；
+     * 每个尺寸缩放完成后立即交给executor编码写文件，和下一级的缩放并行。源文件名含_c.时(已加过水印)不再加水印
+     *
+     * @param specs    要生成的尺寸
+     * @param executor 编码用的线程池
+     * @return 解码和每个尺寸的耗时
+     * @throws IOException 解码失败，或者任意一个尺寸编码失败(其他尺寸的失败作为suppressed附加)
+     */
+    public static TransformResult transformAll(File sourceFile, List<SizeSpec> specs, ExecutorService executor) throws IOException {
+        int decodeWidth = 0;
+        int decodeHeight = 0;
+        for (SizeSpec spec : specs) {
+            decodeWidth = Math.max(decodeWidth, spec.maxWidth);
+            decodeHeight = Math.max(decodeHeight, spec.maxHeight);
+        }
+        long start = System.nanoTime();
+        BufferedImage source = readOriented(sourceFile, decodeWidth, decodeHeight);
+        long decodeNanos = System.nanoTime() - start;
+
+        // _c表示已经加过水印了
+        boolean watermarked = sourceFile.getName().contains("_c.");
+        List<SizeSpec> ordered = new ArrayList<>(specs);
+        Map<SizeSpec, Dimension> targets = new HashMap<>(specs.size() * 2);
+        for (SizeSpec spec : ordered) {
+            boolean fits = source.getWidth() <= spec.maxWidth && source.getHeight() <= spec.maxHeight;
+            targets.put(spec, fits ? new Dimension(source.getWidth(), source.getHeight()) : getTargetSize(source.getWidth(), source.getHeight(), spec.maxWidth, spec.maxHeight));
+        }
+        ordered.sort((a, b) -> Integer.compare(targets.get(b).width, targets.get(a).width));
+
+        Map<SizeSpec, Future<SizeResult>> futures = new HashMap<>(specs.size() * 2);
+        BufferedImage previous = source;
+        for (SizeSpec spec : ordered) {
+            Dimension target = targets.get(spec);
+            long resizeStart = System.nanoTime();
+            // 上一级比目标小时(取整误差)，从解码结果缩放
+            BufferedImage base = previous.getWidth() >= target.width && previous.getHeight() >= target.height ? previous : source;
+            BufferedImage resized = base.getWidth() == target.width && base.getHeight() == target.height ? base : Thumbnails.of(base).size(target.width, target.height).asBufferedImage();
+            long resizeNanos = System.nanoTime() - resizeStart;
+            previous = resized;
+            boolean addWatermark = spec.watermark && !watermarked;
+            futures.put(spec, executor.submit(() -> {
+                long encodeStart = System.nanoTime();
+                encode(resized, spec.destFile, addWatermark);
+                return new SizeResult(spec, resized.getWidth(), resized.getHeight(), resizeNanos, System.nanoTime() - encodeStart);
+            }));
+        }
+
+        List<SizeResult> results = new ArrayList<>(specs.size());
+        IOException failure = null;
+        for (SizeSpec spec : specs) {
+            try {
+                results.add(futures.get(spec).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while encoding " + sourceFile.getAbsolutePath());
+            } catch (ExecutionException e) {
+                IOException ex = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                if (failure == null) {
+                    failure = ex;
+                } else {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return new TransformResult(decodeNanos, results);
+    }
+
+    /**
+     * 把已经缩放好的图像编码写入文件，格式由文件扩展名决定
+     */
+    private static void encode(BufferedImage image, File destFile, boolean addWatermark) throws IOException {
+        Builder<BufferedImage> builder = Thumbnails.of(image).scale(1);
+        if (addWatermark) {
+            float opacity = 0.35f;
+            Position[] positions = PositivePositions.values();
+            builder.watermark(positions[1], Watermarks.scaledFor(image.getWidth()), opacity);
+        }
+        builder.toFile(destFile);
     }
 
     /**
-     * 本来应该根据图片旋转的角度来进行更正
+     * 读取图像，并按EXIF中的方向信息摆正
+     * <p>
+     * 源文件只读取一次，元数据和图像都从同一份字节中解析；方向在内存中更正，不会修改源文件
      */
-    private static void rotateImage(File sourceFile) throws IOException {
+    public static BufferedImage readOriented(File sourceFile) throws IOException {
+        return readOriented(sourceFile, 0, 0);
+    }
+
+    /**
+     * 读取图像并按EXIF方向摆正，只解码压缩到maxWidth * maxHeight以内所需的分辨率
+     * <p>
+     * 原图比目标尺寸大很多时，按文件头中的尺寸计算采样间隔，解码时隔行隔列采样（见{@link #getImage(File, int, int)}）。
+     * 生成多个尺寸时，传入其中最大的尺寸
+     *
+     * @param maxWidth  摆正后要压缩到的最大宽度，0表示按原始分辨率解码
+     * @param maxHeight 摆正后要压缩到的最大高度，0表示按原始分辨率解码
+     */
+    public static BufferedImage readOriented(File sourceFile, int maxWidth, int maxHeight) throws IOException {
+        byte[] bytes = Files.readAllBytes(sourceFile.toPath());
+        int orientation = getOrientation(bytes);
+        // 5 ~ 8的方向摆正时要转90°，解码时的宽高和目标宽高是对调的
+        int i5 = 5;
+        boolean swap = orientation >= i5;
+        BufferedImage image = read(new MemoryCacheImageInputStream(new ByteArrayInputStream(bytes)), sourceFile.getAbsolutePath(), swap ? maxHeight : maxWidth, swap ? maxWidth : maxHeight);
+        return orient(image, orientation);
+    }
+
+    /**
+     * 获得EXIF中的方向（1 ~ 8），没有方向信息时返回1
+     */
+    private static int getOrientation(byte[] bytes) throws IOException {
         try {
-            Metadata metadata = ImageMetadataReader.readMetadata(sourceFile);
+            Metadata metadata = ImageMetadataReader.readMetadata(new ByteArrayInputStream(bytes));
             ExifIFD0Directory directory = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
             if (directory == null) {
-                return;
+                return 1;
             }
             Integer orientation = directory.getInteger(ExifIFD0Directory.TAG_ORIENTATION);
-            // 进行图片旋转
-            if (orientation != null) {
-                // 把这些特殊的图片暂时放到试验地
-                if (orientation > 1) {
-                    FileUtils.copyFile(sourceFile, new File("/tmp/" + sourceFile.getName()));
-                }
-
-                int turn = 0;
-                int i3 = 3;
-                int i6 = 6;
-                int i8 = 8;
-                if (orientation == i3) {
-                    turn = 180;
-                } else if (orientation == i6) {
-                    turn = 90;
-                } else if (orientation == i8) {
-                    turn = 270;
-                }
-
-                if (turn > 0) {
-                    if (directory.containsTag(ExifIFD0Directory.TAG_MAKE)) {
-                        String mark = directory.getDescription(ExifIFD0Directory.TAG_MAKE);
-                        // 测试发现，对于佳能来说，只有旋转360°才回复正常
-                        String canon = "Canon";
-                        if (canon.equalsIgnoreCase(mark)) {
-                            turn = 360;
-                        }
-                        // 对于iphone，这里不处理，交由下一步
-                        String regEx = "[iI][pP]hone";
-                        if (Texts.find(mark, regEx)) {
-                            return;
-                        }
-                    }
-                    BufferedImage image = rotate(ImageIO.read(sourceFile), turn);
-                    ImageIO.write(image, "jpg", sourceFile);
-                }
+            if (orientation == null) {
+                return 1;
+            }
+            int i3 = 3;
+            int i6 = 6;
+            int i8 = 8;
+            boolean rotated = orientation == i3 || orientation == i6 || orientation == i8;
+            // 测试发现，对于佳能来说，旋转类的方向不需要更正
+            String canon = "Canon";
+            if (rotated && directory.containsTag(ExifIFD0Directory.TAG_MAKE) && canon.equalsIgnoreCase(directory.getDescription(ExifIFD0Directory.TAG_MAKE))) {
+                return 1;
             }
-        } catch (ImageProcessingException e1) {
-            // nothing
+            return orientation;
+        } catch (ImageProcessingException e) {
+            return 1;
+        }
+    }
+
+    /**
+     * 按EXIF方向摆正图像（含镜像）
+     */
+    static BufferedImage orient(BufferedImage image, int orientation) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        AffineTransform transform;
+        switch (orientation) {
+            case 2:
+                transform = new AffineTransform(-1, 0, 0, 1, w, 0);
+                break;
+            case 3:
+                transform = new AffineTransform(-1, 0, 0, -1, w, h);
+                break;
+            case 4:
+                transform = new AffineTransform(1, 0, 0, -1, 0, h);
+                break;
+            case 5:
+                transform = new AffineTransform(0, 1, 1, 0, 0, 0);
+                break;
+            case 6:
+                transform = new AffineTransform(0, 1, -1, 0, h, 0);
+                break;
+            case 7:
+                transform = new AffineTransform(0, -1, -1, 0, h, w);
+                break;
+            case 8:
+                transform = new AffineTransform(0, -1, 1, 0, 0, w);
+                break;
+            default:
+                return image;
         }
+        boolean swap = orientation >= 5;
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage result = new BufferedImage(swap ? h : w, swap ? w : h, type);
+        Graphics2D g2 = result.createGraphics();
+        try {
+            g2.drawImage(image, transform, null);
+        } finally {
+            g2.dispose();
+        }
+        return result;
     }
 
     /**
@@ -142,10 +362,8 @@ public class Images {
         // 给网站的图片打上水印
         if (haveWatermark) {
             float opacity = 0.35f;
-            BufferedImage image = builder.asBufferedImage();
-            BufferedImage watermarkImage = ImageIO.read(new File(Images.PROJECT_WATERMARK_PATH));
-            double ratio = (image.getWidth() / 8.0) / watermarkImage.getWidth();
-            watermarkImage = Thumbnails.of(watermarkImage).scale(ratio).asBufferedImage();
+            int width = getTargetWidth(sourceImage, maxWidth, maxHeight);
+            BufferedImage watermarkImage = Watermarks.scaledFor(width);
 
             Position[] positions = PositivePositions.values();
             builder.watermark(positions[1], watermarkImage, opacity);
@@ -165,10 +383,8 @@ public class Images {
         // 给网站的图片打上水印
         if (haveWatermark) {
             float opacity = 0.4f;
-            BufferedImage image = builder.asBufferedImage();
-            BufferedImage watermarkImage = ImageIO.read(new File(Images.PROJECT_WATERMARK_PATH));
-            double ratio = (image.getWidth() / 8.0) / watermarkImage.getWidth();
-            watermarkImage = Thumbnails.of(watermarkImage).scale(ratio).asBufferedImage();
+            int width = getTargetWidth(sourceImage, maxWidth, maxHeight);
+            BufferedImage watermarkImage = Watermarks.scaledFor(width);
 
             List<Integer> listX = new ArrayList<>();
             List<Integer> listY = new ArrayList<>();
@@ -200,26 +416,87 @@ public class Images {
         return x;
     }
 
+    /**
+     * 计算等比压缩后的宽度，和Thumbnailator的size(maxWidth, maxHeight)一致
+     */
+    private static int getTargetWidth(BufferedImage sourceImage, int maxWidth, int maxHeight) {
+        return getTargetSize(sourceImage.getWidth(), sourceImage.getHeight(), maxWidth, maxHeight).width;
+    }
+
+    /**
+     * 计算等比压缩后的尺寸，和Thumbnailator的size(maxWidth, maxHeight)一致
+     */
+    private static Dimension getTargetSize(int sourceWidth, int sourceHeight, int maxWidth, int maxHeight) {
+        double sourceRatio = (double) sourceWidth / sourceHeight;
+        double targetRatio = (double) maxWidth / maxHeight;
+        int width = maxWidth;
+        int height = maxHeight;
+        if (Double.compare(sourceRatio, targetRatio) != 0) {
+            if (sourceRatio > targetRatio) {
+                height = (int) Math.round(maxWidth / sourceRatio);
+            } else {
+                width = (int) Math.round(maxHeight * sourceRatio);
+            }
+        }
+        return new Dimension(Math.max(width, 1), Math.max(height, 1));
+    }
+
+    /**
+     * 计算解码时的采样间隔：采样后的图像在两个方向上都至少是目标尺寸的{@link #SUBSAMPLING_MARGIN}倍，
+     * 留给后续的缩放算法平滑，避免隔行采样带来的锯齿
+     */
+    static int getSubsampling(int sourceWidth, int sourceHeight, int maxWidth, int maxHeight) {
+        if (maxWidth <= 0 || maxHeight <= 0 || sourceWidth <= maxWidth && sourceHeight <= maxHeight) {
+            return 1;
+        }
+        Dimension target = getTargetSize(sourceWidth, sourceHeight, maxWidth, maxHeight);
+        int factor = Math.min(sourceWidth / (target.width * SUBSAMPLING_MARGIN), sourceHeight / (target.height * SUBSAMPLING_MARGIN));
+        return Math.max(factor, 1);
+    }
+
     public static BufferedImage getImage(File sourceFile) throws IOException {
-        ImageInputStream input = null;
+        return getImage(sourceFile, 0, 0);
+    }
+
+    /**
+     * 读取图像，只解码压缩到maxWidth * maxHeight以内所需的分辨率
+     * <p>
+     * 先从文件头中读取原图尺寸，原图比目标尺寸大很多时用ImageReadParam.setSourceSubsampling隔行隔列解码，
+     * 例如4800万像素的照片生成400px的缩略图时，解码后的图像只有原图的几十分之一，CPU和堆内存的占用都随之下降。
+     * 返回的图像不小于目标尺寸，仍需要缩放
+     *
+     * @param maxWidth  要压缩到的最大宽度，0表示按原始分辨率解码
+     * @param maxHeight 要压缩到的最大高度，0表示按原始分辨率解码
+     */
+    public static BufferedImage getImage(File sourceFile, int maxWidth, int maxHeight) throws IOException {
+        return read(ImageIO.createImageInputStream(sourceFile), sourceFile.getAbsolutePath(), maxWidth, maxHeight);
+    }
+
+    /**
+     * 依次尝试所有能识别该格式的reader，读取后关闭input
+     */
+    private static BufferedImage read(ImageInputStream input, String name, int maxWidth, int maxHeight) throws IOException {
+        if (input == null) {
+            throw new IIOException("Unable to read image:" + name);
+        }
         try {
-            input = ImageIO.createImageInputStream(sourceFile);
             // Find potential readers
             Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
 
             // For each reader: try to read
             while (readers != null && readers.hasNext()) {
                 ImageReader reader = readers.next();
-                BufferedImage image = null;
                 try {
+                    input.seek(0);
                     reader.setInput(input);
-                    image = reader.read(0);
-                    return image;
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    int subsampling = getSubsampling(reader.getWidth(0), reader.getHeight(0), maxWidth, maxHeight);
+                    if (subsampling > 1) {
+                        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                    }
+                    return reader.read(0, param);
                 } catch (IIOException e) {
                     // Try next reader, ignore.
-                } catch (Exception e) {
-                    // Unexpected exception. do not continue
-                    throw e;
                 } finally {
                     // Close reader resources
                     reader.dispose();
@@ -227,11 +504,9 @@ public class Images {
             }
 
             // Couldn't resize with any of the readers
-            throw new IIOException("Unable to resize image:" + sourceFile.getAbsolutePath());
+            throw new IIOException("Unable to resize image:" + name);
         } finally {
-            if (input != null) {
-                input.close();
-            }
+            input.close();
         }
     }
 
@@ -316,28 +591,215 @@ public class Images {
     }
 
     /**
-     * 往页面输出的方法
+     * 往页面输出的方法（JPEG，使用{@link JpegEncoder#DEFAULT}的编码参数）
      */
     public static void outputImage(BufferedImage image, ServletOutputStream out) throws IOException, NullPointerException {
-        ImageWriter writer = null;
-        // 下面进行对图片格式的一些修改
-        ImageTypeSpecifier type = ImageTypeSpecifier.createFromRenderedImage(image);
-        Iterator<ImageWriter> iter = ImageIO.getImageWriters(type, "jpg");
-        if (iter.hasNext()) {
-            writer = iter.next();
-        }
-
-        IIOImage iioImage = new IIOImage(image, null, null);
-        ImageWriteParam param = writer.getDefaultWriteParam();
-
-        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-        // 控制图片质量，1.0最高
-        param.setCompressionQuality(1.0F);
-        // 创建输出流
-        ImageOutputStream outputStream = ImageIO.createImageOutputStream(out);
-        // 将构建好的图片输出流写入到页面中
-        writer.setOutput(outputStream);
-        writer.write(null, iioImage, param);
+        outputImage(image, out, JpegEncoder.DEFAULT);
+    }
+
+    /**
+     * 以JPEG格式直接写入输出流，out不会被关闭
+     *
+     * @param encoder 编码参数，例如new JpegEncoder(0.7f, true, true)
+     */
+    public static void outputImage(BufferedImage image, OutputStream out, JpegEncoder encoder) throws IOException {
+        encoder.encode(image, out);
+    }
+
+    /**
+     * 要生成的一个尺寸
+     */
+    public static class SizeSpec {
+        private final File destFile;
+        private final int maxWidth;
+        private final int maxHeight;
+        private final boolean watermark;
+
+        /**
+         * 带水印
+         */
+        public SizeSpec(File destFile, int maxWidth, int maxHeight) {
+            this(destFile, maxWidth, maxHeight, true);
+        }
+
+        /**
+         * @param destFile  压缩后要存放的目标文件
+         * @param maxWidth  压缩后允许的最大宽度
+         * @param maxHeight 压缩后允许的最大高度
+         * @param watermark 是否加水印
+         */
+        public SizeSpec(File destFile, int maxWidth, int maxHeight, boolean watermark) {
+            this.destFile = destFile;
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+            this.watermark = watermark;
+        }
+
+        public File getDestFile() {
+            return destFile;
+        }
+
+        public int getMaxWidth() {
+            return maxWidth;
+        }
+
+        public int getMaxHeight() {
+            return maxHeight;
+        }
+
+        public boolean isWatermark() {
+            return watermark;
+        }
+    }
+
+    /**
+     * 一个尺寸的生成结果和耗时
+     */
+    public static class SizeResult {
+        private final SizeSpec spec;
+        private final int width;
+        private final int height;
+        private final long resizeNanos;
+        private final long encodeNanos;
+
+        SizeResult(SizeSpec spec, int width, int height, long resizeNanos, long encodeNanos) {
+            this.spec = spec;
+            this.width = width;
+            this.height = height;
+            this.resizeNanos = resizeNanos;
+            this.encodeNanos = encodeNanos;
+        }
+
+        public SizeSpec getSpec() {
+            return spec;
+        }
+
+        /**
+         * 实际输出的宽度
+         */
+        public int getWidth() {
+            return width;
+        }
+
+        /**
+         * 实际输出的高度
+         */
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * 缩放耗时(纳秒)
+         */
+        public long getResizeNanos() {
+            return resizeNanos;
+        }
+
+        /**
+         * 编码并写文件的耗时(纳秒，含水印)
+         */
+        public long getEncodeNanos() {
+            return encodeNanos;
+        }
+
+        @Override
+        public String toString() {
+            return spec.destFile.getName() + " " + width + "x" + height + ", resize=" + TimeUnit.NANOSECONDS.toMillis(resizeNanos) + "ms, encode=" + TimeUnit.NANOSECONDS.toMillis(encodeNanos) + "ms";
+        }
+    }
+
+    /**
+     * {@link #transformAll(File, List)}的结果
+     */
+    public static class TransformResult {
+        private final long decodeNanos;
+        private final List<SizeResult> sizes;
+
+        TransformResult(long decodeNanos, List<SizeResult> sizes) {
+            this.decodeNanos = decodeNanos;
+            this.sizes = sizes;
+        }
+
+        /**
+         * 读取、解码并摆正源文件的耗时(纳秒)
+         */
+        public long getDecodeNanos() {
+            return decodeNanos;
+        }
+
+        /**
+         * 每个尺寸的结果，顺序和传入的SizeSpec一致
+         */
+        public List<SizeResult> getSizes() {
+            return sizes;
+        }
+
+        @Override
+        public String toString() {
+            return "decode=" + TimeUnit.NANOSECONDS.toMillis(decodeNanos) + "ms, sizes=" + sizes;
+        }
+    }
+
+    /**
+     * 默认的编码线程池，第一次使用时才创建。线程空闲60秒后自动回收
+     */
+    private static final class EncodeExecutor {
+        static final ThreadPoolExecutor INSTANCE;
+
+        static {
+            int threads = Runtime.getRuntime().availableProcessors();
+            INSTANCE = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads * 16),
+                    new PreNameThreadFactory("images-encode"), new ThreadPoolExecutor.CallerRunsPolicy());
+            INSTANCE.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * 水印图片的缓存。原图在文件修改后重新加载，缩放后的水印按目标图像的宽度缓存
+     */
+    private static final class Watermarks {
+        private static final int MAX_CACHE_SIZE = 64;
+        private static volatile Watermarks current;
+
+        private final long lastModified;
+        private final BufferedImage image;
+        private final ConcurrentMap<Integer, BufferedImage> scaled = new ConcurrentHashMap<>(16);
+
+        private Watermarks(long lastModified, BufferedImage image) {
+            this.lastModified = lastModified;
+            this.image = image;
+        }
+
+        /**
+         * 获得宽度为目标图像1/8的水印。返回的图像是共享的，只能读取
+         */
+        static BufferedImage scaledFor(int imageWidth) throws IOException {
+            File file = new File(PROJECT_WATERMARK_PATH);
+            long lastModified = file.lastModified();
+            Watermarks watermarks = current;
+            if (watermarks == null || watermarks.lastModified != lastModified) {
+                BufferedImage image = ImageIO.read(file);
+                if (image == null) {
+                    throw new IIOException("Unable to read watermark:" + file.getAbsolutePath());
+                }
+                watermarks = new Watermarks(lastModified, image);
+                current = watermarks;
+            }
+            return watermarks.scale(imageWidth);
+        }
+
+        private BufferedImage scale(int imageWidth) throws IOException {
+            BufferedImage result = scaled.get(imageWidth);
+            if (result == null) {
+                double ratio = (imageWidth / 8.0) / image.getWidth();
+                result = Thumbnails.of(image).scale(ratio).asBufferedImage();
+                if (scaled.size() >= MAX_CACHE_SIZE) {
+                    scaled.clear();
+                }
+                scaled.putIfAbsent(imageWidth, result);
+            }
+            return result;
+        }
     }
 
     /**
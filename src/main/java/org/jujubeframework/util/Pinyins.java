@@ -0,0 +1,290 @@
+package org.jujubeframework.util;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import net.sourceforge.pinyin4j.PinyinHelper;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 拼音工具类
+ * <p>
+ * 首次使用时把CJK区间（U+3000 ~ U+9FFF）内每个汉字的拼音（取第一个读音）预先算好，存为紧凑的查找表，之后的转换都只是查表，不再调用pinyin4j
+ *
+ * @author John Li
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class Pinyins {
+
+    /**
+     * 不属于任何字母分组时的索引
+     */
+    public static final char OTHER_INDEX = '#';
+
+    /**
+     * 拼音输出样式
+     */
+    public enum Style {
+        /**
+         * 小写且带声调，例如zhong1
+         */
+        WITH_TONE,
+        /**
+         * 小写不带声调，例如zhong
+         */
+        WITHOUT_TONE,
+        /**
+         * 首字母大写不带声调，例如Zhong
+         */
+        CAPITALIZE
+    }
+
+    /**
+     * 字符是否是汉字（即是否有拼音）
+     */
+    public static boolean isChinese(char c) {
+        return Table.syllableOf(c) != Table.NONE;
+    }
+
+    /**
+     * 字符串中是否包含汉字
+     */
+    public static boolean containsChinese(CharSequence s) {
+        if (s == null) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (isChinese(s.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获得汉字的拼音，非汉字返回null
+     */
+    public static String toPinyin(char c, Style style) {
+        int syllable = Table.syllableOf(c);
+        return syllable == Table.NONE ? null : Table.pinyin(syllable, style);
+    }
+
+    /**
+     * 把文本中所有汉字的拼音追加到builder中，非汉字被舍弃
+     *
+     * @return builder本身
+     */
+    public static StringBuilder appendPinyin(CharSequence s, Style style, StringBuilder builder) {
+        for (int i = 0; i < s.length(); i++) {
+            int syllable = Table.syllableOf(s.charAt(i));
+            if (syllable != Table.NONE) {
+                builder.append(Table.pinyin(syllable, style));
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * 获得文本中所有汉字的拼音，非汉字被舍弃
+     */
+    public static String toPinyin(CharSequence s, Style style) {
+        return appendPinyin(s, style, new StringBuilder(s.length() * 6)).toString();
+    }
+
+    /**
+     * 获得汉字拼音的首字母（小写），非汉字返回0
+     */
+    public static char firstLetter(char c) {
+        int syllable = Table.syllableOf(c);
+        return syllable == Table.NONE ? 0 : Table.FIRST_LETTERS[syllable];
+    }
+
+    /**
+     * 获得字符串第一个字母
+     * <p>
+     * 跳过开头的符号，第一个英文字母原样返回，第一个汉字则返回其拼音首字母。全是符号时返回0
+     */
+    public static char firstLetter(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Texts.isEn(c)) {
+                return c;
+            }
+            char letter = firstLetter(c);
+            if (letter != 0) {
+                return letter;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 把文本中所有汉字的拼音首字母追加到builder中，非汉字被舍弃
+     *
+     * @return builder本身
+     */
+    public static StringBuilder appendFirstLetters(CharSequence s, StringBuilder builder) {
+        for (int i = 0; i < s.length(); i++) {
+            int syllable = Table.syllableOf(s.charAt(i));
+            if (syllable != Table.NONE) {
+                builder.append(Table.FIRST_LETTERS[syllable]);
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * 获得用于排序的键：汉字转为不带声调的小写拼音，英文字母转为小写，数字保留，其他字符舍弃。
+     * 例如“张三Li”的排序键为“zhangsanli”
+     */
+    public static String sortKey(CharSequence s) {
+        StringBuilder builder = new StringBuilder(s.length() * 6);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            int syllable = Table.syllableOf(c);
+            if (syllable != Table.NONE) {
+                builder.append(Table.TONELESS[syllable]);
+            } else if (Texts.isEn(c)) {
+                builder.append(Character.toLowerCase(c));
+            } else if (c >= '0' && c <= '9') {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 获得通讯录式的索引字母（A ~ Z），首字符不是字母或汉字时返回{@link #OTHER_INDEX}
+     */
+    public static char indexLetter(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (Texts.isEn(c)) {
+                return Character.toUpperCase(c);
+            }
+            char letter = firstLetter(c);
+            return letter == 0 ? OTHER_INDEX : Character.toUpperCase(letter);
+        }
+        return OTHER_INDEX;
+    }
+
+    /**
+     * 构建通讯录式的首字母索引
+     * <p>
+     * 按A ~ Z分组，{@link #OTHER_INDEX}分组排在最后；组内按{@link #sortKey(CharSequence)}排序。每个元素的排序键只计算一次
+     *
+     * @param items        元素集合
+     * @param nameFunction 获得元素名称的function
+     */
+    public static <T> Map<Character, List<T>> buildIndex(Collection<T> items, Function<T, String> nameFunction) {
+        List<Object[]> keyed = new ArrayList<>(items.size());
+        for (T item : items) {
+            String name = nameFunction.apply(item);
+            if (name == null) {
+                name = "";
+            }
+            keyed.add(new Object[]{indexLetter(name), sortKey(name), name, item});
+        }
+        keyed.sort((a, b) -> {
+            int result = Character.compare(indexOrder((Character) a[0]), indexOrder((Character) b[0]));
+            if (result == 0) {
+                result = ((String) a[1]).compareTo((String) b[1]);
+            }
+            if (result == 0) {
+                result = ((String) a[2]).compareTo((String) b[2]);
+            }
+            return result;
+        });
+        Map<Character, List<T>> index = new LinkedHashMap<>();
+        for (Object[] ele : keyed) {
+            @SuppressWarnings("unchecked")
+            T item = (T) ele[3];
+            index.computeIfAbsent((Character) ele[0], k -> new ArrayList<>()).add(item);
+        }
+        return index;
+    }
+
+    private static char indexOrder(char index) {
+        return index == OTHER_INDEX ? Character.MAX_VALUE : index;
+    }
+
+    /**
+     * 拼音查找表。利用类加载机制，在第一次使用时才初始化
+     */
+    private static final class Table {
+        static final int NONE = 0;
+        static final char FROM = '\u3000';
+        static final char TO = '\u9FFF';
+
+        /**
+         * 字符到音节编号的映射，下标为c - FROM，0表示没有拼音
+         */
+        static final short[] SYLLABLES;
+        /**
+         * 各音节的三种样式及首字母，下标为音节编号
+         */
+        static final String[] WITH_TONE;
+        static final String[] TONELESS;
+        static final String[] CAPITALIZED;
+        static final char[] FIRST_LETTERS;
+
+        static {
+            short[] syllables = new short[TO - FROM + 1];
+            Map<String, Integer> ids = new HashMap<>(2048);
+            List<String> pinyins = new ArrayList<>(2048);
+            // 0号音节占位
+            pinyins.add(null);
+            for (char c = FROM; c <= TO; c++) {
+                String[] array = PinyinHelper.toHanyuPinyinStringArray(c);
+                if (array == null || array.length == 0) {
+                    continue;
+                }
+                Integer id = ids.get(array[0]);
+                if (id == null) {
+                    id = pinyins.size();
+                    ids.put(array[0], id);
+                    pinyins.add(array[0]);
+                }
+                syllables[c - FROM] = (short) id.intValue();
+            }
+            int size = pinyins.size();
+            WITH_TONE = new String[size];
+            TONELESS = new String[size];
+            CAPITALIZED = new String[size];
+            FIRST_LETTERS = new char[size];
+            for (int i = 1; i < size; i++) {
+                String pinyin = pinyins.get(i);
+                String toneless = stripTone(pinyin);
+                WITH_TONE[i] = pinyin;
+                TONELESS[i] = toneless;
+                CAPITALIZED[i] = Texts.capitalize(toneless);
+                FIRST_LETTERS[i] = pinyin.charAt(0);
+            }
+            SYLLABLES = syllables;
+        }
+
+        static int syllableOf(char c) {
+            return c < FROM || c > TO ? NONE : SYLLABLES[c - FROM];
+        }
+
+        static String pinyin(int syllable, Style style) {
+            switch (style) {
+                case WITHOUT_TONE:
+                    return TONELESS[syllable];
+                case CAPITALIZE:
+                    return CAPITALIZED[syllable];
+                default:
+                    return WITH_TONE[syllable];
+            }
+        }
+
+        private static String stripTone(String pinyin) {
+            int last = pinyin.length() - 1;
+            return last > 0 && Character.isDigit(pinyin.charAt(last)) ? pinyin.substring(0, last) : pinyin;
+        }
+    }
+}
@@ -1,16 +1,17 @@
 package org.jujubeframework.util;
 
 import com.google.common.collect.Maps;
-import net.sourceforge.pinyin4j.PinyinHelper;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.text.StringEscapeUtils;
+import org.jujubeframework.util.support.CompiledFormat;
+import org.jujubeframework.util.support.KeywordMatcher;
 import org.jujubeframework.util.support.PatternHolder;
+import org.jujubeframework.util.support.io.Utf8Mb4FilterReader;
+import org.jujubeframework.util.support.io.Utf8Mb4FilterWriter;
 
-import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
-import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.function.Function;
@@ -113,48 +114,28 @@ public class Texts {
 
     /**
      * 过滤掉超过3个字节的UTF8字符
+     * <p>
+     * 超过3个字节的UTF8字符在Java中都是代理对，所以直接按char扫描即可；单独出现的代理字符也一并去掉。
+     * 没有需要过滤的字符时直接返回原字符串。大段文本可以用{@link Utf8Mb4FilterReader}、{@link Utf8Mb4FilterWriter}边读写边过滤
      */
     public static String filterOffUtf8Mb4(String text) {
-        byte[] bytes = null;
-        try {
-            bytes = text.getBytes("utf-8");
-        } catch (UnsupportedEncodingException e) {
-            return text;
-        }
-        ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+        int length = text.length();
         int i = 0;
-        while (i < bytes.length) {
-            short b = bytes[i];
-            if (b > 0) {
-                buffer.put(bytes[i++]);
-                continue;
-            }
-
-            // 去掉符号位
-            b += 256;
-
-            if (((b >> 5) ^ 0x6) == 0) {
-                buffer.put(bytes, i, 2);
-                i += 2;
-            } else if (((b >> 4) ^ 0xE) == 0) {
-                buffer.put(bytes, i, 3);
-                i += 3;
-            } else if (((b >> 3) ^ 0x1E) == 0) {
-                i += 4;
-            } else if (((b >> 2) ^ 0x3E) == 0) {
-                i += 5;
-            } else if (((b >> 1) ^ 0x7E) == 0) {
-                i += 6;
-            } else {
-                buffer.put(bytes[i++]);
-            }
+        while (i < length && !Character.isSurrogate(text.charAt(i))) {
+            i++;
         }
-        buffer.flip();
-        try {
-            return new String(buffer.array(), "utf-8");
-        } catch (UnsupportedEncodingException e) {
+        if (i == length) {
             return text;
         }
+        StringBuilder result = new StringBuilder(length);
+        result.append(text, 0, i);
+        for (; i < length; i++) {
+            char ch = text.charAt(i);
+            if (!Character.isSurrogate(ch)) {
+                result.append(ch);
+            }
+        }
+        return result.toString();
     }
 
     /**
@@ -354,34 +335,21 @@ public class Texts {
      * @return
      */
     public static String highlight(String source, String keyWord, String styleBefore, String styleAfter) {
-        int begin = 0;
-        // 加上样式之后的关键字长度
-        int len = styleAfter.length() + styleBefore.length() + keyWord.length();
-        StringBuilder sb = new StringBuilder(source.length() + len * 5);
-        String tag = source;
-        while (true) {
-            // 不区分大小写，找到关键字
-            begin = tag.toUpperCase().indexOf(keyWord.toUpperCase());
-            // 如果找到关键字，则关键字替换为高亮样式
-            if (begin != -1) {
-                int end = begin + keyWord.length();
-                // 原文本中的关键字（保持其大小写状态）
-                String red = tag.substring(begin, end);
-                // 此次查找的字符串
-                String result = tag.substring(0, end);
-                // 对文本中关键字进行高亮替换
-                result = result.replace(red, (styleBefore + red + styleAfter));
-                // 保存已经替换完成的那一段
-                sb.append(result);
-                // 截取字符串，在后面继续寻找关键字，进行高亮替换
-                tag = tag.substring(end);
-            } else {
-                // 如果没有找到关键字，把文本遗落的一段放入结果中
-                sb.append(tag);
-                break;
-            }
-        }
-        return sb.toString();
+        return highlight(source, Collections.singletonList(keyWord), styleBefore, styleAfter);
+    }
+
+    /**
+     * 高亮显示多个关键字(所有匹配的字符都替换，不区分大小写)
+     * <p>
+     * 只扫描一遍文本，关键字之间有重叠时取最左最长的那个。如果同一组关键字要反复使用，可以直接用{@link KeywordMatcher#compile(Collection)}编译后复用
+     *
+     * @param source      原文本
+     * @param keyWords    关键字集合
+     * @param styleBefore 样式前，例如<font class='red'>
+     * @param styleAfter  样式后,例如</font>
+     */
+    public static String highlight(String source, Collection<String> keyWords, String styleBefore, String styleAfter) {
+        return KeywordMatcher.compile(keyWords).highlight(source, styleBefore, styleAfter);
     }
 
     /**
@@ -429,34 +397,15 @@ public class Texts {
      */
     public static String getFirstLetter(String str) {
         Validate.notBlank(str);
-
-        String result = null;
-        char firstLetter = str.charAt(0);
-        if (isEn(firstLetter)) {
-            result = String.valueOf(firstLetter);
-        } else if (isChinese(firstLetter)) {
-            result = PinyinHelper.toHanyuPinyinStringArray(firstLetter)[0].substring(0, 1);
-        } else if (str.length() > 1) {
-            result = getFirstLetter(str.substring(1));
-        }
-        return result;
+        char letter = Pinyins.firstLetter(str);
+        return letter == 0 ? null : String.valueOf(letter);
     }
 
     /**
      * 判断字符串中是否包含汉字
      */
     public static boolean containsChinese(String s) {
-        boolean result = false;
-        if (StringUtils.isNotBlank(s)) {
-            for (int i = 0; i < s.length(); i++) {
-                String[] pinyinArray = PinyinHelper.toHanyuPinyinStringArray(s.charAt(i));
-                if (pinyinArray != null && pinyinArray.length > 0) {
-                    result = true;
-                    break;
-                }
-            }
-        }
-        return result;
+        return Pinyins.containsChinese(s);
     }
 
     /**
@@ -478,14 +427,7 @@ public class Texts {
      */
     public static String getFirstLetterArr(String str) {
         Validate.notBlank(str);
-        StringBuffer sBuffer = new StringBuffer();
-        for (int i = 0; i < str.length(); i++) {
-            Character c = str.charAt(i);
-            if (isChinese(c)) {
-                sBuffer.append(getFirstLetter(String.valueOf(c)));
-            }
-        }
-        return sBuffer.toString();
+        return Pinyins.appendFirstLetters(str, new StringBuilder(str.length())).toString();
     }
 
     /**
@@ -496,26 +438,15 @@ public class Texts {
      */
     public static String getLetter(String content, int type) {
         Validate.notBlank(content);
-        int three = 3;
-        if (type < 1 || type > three) {
-            type = 1;
-        }
-
-        StringBuilder result = new StringBuilder();
-        for (int i = 0; i < content.length(); i++) {
-            Character c = content.charAt(i);
-            if (isChinese(c)) {
-                String pinyin = PinyinHelper.toHanyuPinyinStringArray(c)[0];
-                if (type == 2) {
-                    pinyin = pinyin.substring(0, pinyin.length() - 1);
-                } else if (type == three) {
-                    pinyin = pinyin.substring(0, pinyin.length() - 1);
-                    pinyin = StringUtils.capitalize(pinyin);
-                }
-                result.append(pinyin);
-            }
+        Pinyins.Style style;
+        if (type == 2) {
+            style = Pinyins.Style.WITHOUT_TONE;
+        } else if (type == 3) {
+            style = Pinyins.Style.CAPITALIZE;
+        } else {
+            style = Pinyins.Style.WITH_TONE;
         }
-        return result.toString();
+        return Pinyins.toPinyin(content, style);
     }
 
     public static boolean isEn(char c) {
@@ -530,7 +461,7 @@ public class Texts {
      * 字符是否是中文
      */
     public static boolean isChinese(char c) {
-        return containsChinese(String.valueOf(c));
+        return Pinyins.isChinese(c);
     }
 
     /**
@@ -676,44 +607,14 @@ public class Texts {
      * #result = Hello World!
      * </pre>
      *
+     * 模板会被编译并缓存，重复调用时不再解析
+     *
      * @param pattern 待匹配字符串
      * @param params  参数数组
+     * @see CompiledFormat
      */
     public static String format(String pattern, String... params) {
-        String regex = "\\{\\d+\\}";
-        int count = regQuery(regex, pattern).size();
-        String symbol = "{}";
-        // 类似{0}这种形式
-        if (count > 0) {
-            if (params.length != count) {
-                throw new IllegalArgumentException("模式匹配跟参数个数不对应");
-            }
-            String result = pattern;
-            for (int i = 0; i < count; i++) {
-                String replacement = params[i];
-                if (replacement == null) {
-                    replacement = "";
-                }
-                result = result.replace("{" + i + "}", replacement);
-            }
-            return result;
-        }
-        // 或者直接{}这种形式
-        else if (pattern.contains(symbol)) {
-            String result = "";
-            // 防止{}出现在最后一行
-            pattern += " ";
-            String[] arr = pattern.split("\\{\\}");
-            for (int i = 0; i < arr.length - 1; i++) {
-                result += arr[i] + (params.length <= i ? "" : params[i]);
-                if (i == arr.length - 2) {
-                    result += arr[i + 1];
-                }
-            }
-            return result.substring(0, result.length() - 1);
-        } else {
-            return pattern;
-        }
+        return CompiledFormat.compile(pattern).format(params);
     }
 
     public static String toA(String href, String title, boolean blank) {
@@ -5,12 +5,29 @@ import lombok.NoArgsConstructor;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.jujubeframework.util.support.concurrent.PreNameThreadFactory;
+import org.jujubeframework.util.support.zip.PreparedEntry;
+import org.jujubeframework.util.support.zip.ZipArchiveWriter;
+import org.jujubeframework.util.support.zip.ZipCentralDirectory;
+import org.jujubeframework.util.support.zip.ZipDiff;
+import org.jujubeframework.util.support.zip.ZipEditor;
+import org.jujubeframework.util.support.zip.ZipIndex;
+import org.jujubeframework.util.support.zip.ZipStreamBuilder;
+import org.jujubeframework.util.support.zip.ZipRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -47,12 +64,31 @@ public class Zips {
      */
     public final int DEFAULT_COMPRESSION_LEVEL = Deflater.DEFAULT_COMPRESSION;
 
+    /**
+     * 并行压缩时，单个条目压缩后超过此大小则暂存到临时文件
+     */
+    private static final int PACK_SPILL_THRESHOLD = 4 * 1024 * 1024;
+
     private final Logger log = LoggerFactory.getLogger(Zips.class);
 
     public Zips(Charset charset) {
         defaultEncoding = charset;
     }
 
+    /**
+     * 获得ZIP的索引。索引按路径缓存，文件变化后自动重新加载，同一个ZIP被反复读取时不需要每次都解析中央目录；索引不持有打开的文件
+     *
+     * @param zip ZIP file.
+     * @see ZipIndex#get(File, Charset)
+     */
+    public ZipIndex index(File zip) {
+        try {
+            return ZipIndex.get(zip, defaultEncoding);
+        } catch (IOException e) {
+            throw rethrow(e);
+        }
+    }
+
     /**
      * Checks if the ZIP file contains the given entry.
      *
@@ -61,15 +97,7 @@ public class Zips {
      * @return <code>true</code> if the ZIP file contains the given entry.
      */
     public boolean containsEntry(File zip, String name) {
-        ZipFile zf = null;
-        try {
-            zf = new ZipFile(zip, defaultEncoding);
-            return zf.getEntry(name) != null;
-        } catch (IOException e) {
-            throw rethrow(e);
-        } finally {
-            closeQuietly(zf);
-        }
+        return index(zip).contains(name);
     }
 
     /**
@@ -81,22 +109,13 @@ public class Zips {
      * entries.
      */
     public boolean containsAnyEntry(File zip, String[] names) {
-        ZipFile zf = null;
-        boolean result = false;
-        try {
-            zf = new ZipFile(zip, defaultEncoding);
-            for (int i = 0; i < names.length; i++) {
-                if (zf.getEntry(names[i]) != null) {
-                    result = true;
-                    break;
-                }
+        ZipIndex index = index(zip);
+        for (String name : names) {
+            if (index.contains(name)) {
+                return true;
             }
-        } catch (IOException e) {
-            throw rethrow(e);
-        } finally {
-            closeQuietly(zf);
         }
-        return result;
+        return false;
     }
 
     /**
@@ -107,14 +126,10 @@ public class Zips {
      * @return contents of the entry or <code>null</code> if it was not found.
      */
     public byte[] unpackEntry(File zip, String name) {
-        ZipFile zf = null;
         try {
-            zf = new ZipFile(zip, defaultEncoding);
-            return doUnpackEntry(zf, name);
+            return index(zip).read(name);
         } catch (IOException e) {
             throw rethrow(e);
-        } finally {
-            closeQuietly(zf);
         }
     }
 
@@ -162,14 +177,15 @@ public class Zips {
      * <code>false</code> if the entry was not found.
      */
     public boolean unpackEntry(File zip, String name, File file) {
-        ZipFile zf = null;
-        try {
-            zf = new ZipFile(zip, defaultEncoding);
-            return doUnpackEntry(zf, name, file);
+        try (InputStream in = index(zip).getInputStream(name)) {
+            if (in == null) {
+                // entry not found
+                return false;
+            }
+            FileUtil.copy(in, file);
+            return true;
         } catch (IOException e) {
             throw rethrow(e);
-        } finally {
-            closeQuietly(zf);
         }
     }
 
@@ -437,6 +453,130 @@ public class Zips {
         iterate(zip, new Unwraper(outputDir, mapper));
     }
 
+    /**
+     * 并行解压ZIP到目录：先在当前线程中映射所有条目名称，一次建好整个目录树，再把文件分给线程池解压。
+     * 已知大小的文件在写入前先设置好长度，同时写入的文件数不超过parallelism
+     * <p>
+     * The output directory must not be a file.
+     *
+     * @param zip         input ZIP file.
+     * @param outputDir   output directory (created automatically if not found).
+     * @param mapper      call-back for renaming the entries.
+     * @param parallelism 解压线程数
+     */
+    public void unpack(File zip, File outputDir, NameMapper mapper, int parallelism) {
+        log.debug("Extracting '{}' into '{}' with {} threads.", zip, outputDir, parallelism);
+        unpackParallel(zip, outputDir, mapper, false, parallelism);
+    }
+
+    /**
+     * 并行解压ZIP到目录并去掉唯一的根目录，见{@link #unpack(File, File, NameMapper, int)}。
+     * 有多个根目录或根目录下有文件时，在写入任何文件之前抛出ZipException
+     * <p>
+     * The output directory must not be a file.
+     *
+     * @param zip         input ZIP file.
+     * @param outputDir   output directory (created automatically if not found).
+     * @param mapper      call-back for renaming the entries.
+     * @param parallelism 解压线程数
+     */
+    public void unwrap(File zip, File outputDir, NameMapper mapper, int parallelism) {
+        log.debug("Unwraping '{}' into '{}' with {} threads.", zip, outputDir, parallelism);
+        unpackParallel(zip, outputDir, mapper, true, parallelism);
+    }
+
+    private void unpackParallel(File zip, File outputDir, NameMapper mapper, boolean unwrap, int parallelism) {
+        try (ZipFile zf = new ZipFile(zip, defaultEncoding)) {
+            // 同一个文件对应多个条目时和顺序解压一样，后面的覆盖前面的
+            Map<File, ZipEntry> files = new LinkedHashMap<>();
+            Set<File> dirs = new LinkedHashSet<>();
+            String rootDir = null;
+            Enumeration<? extends ZipEntry> en = zf.entries();
+            while (en.hasMoreElements()) {
+                ZipEntry entry = en.nextElement();
+                String name = entry.getName();
+                if (unwrap) {
+                    String root = getRootName(name);
+                    if (rootDir == null) {
+                        rootDir = root;
+                    } else if (!rootDir.equals(root)) {
+                        throw new ZipException("Unwrapping with multiple roots is not supported, roots: " + rootDir + ", " + root);
+                    }
+                    name = name.substring(root.length());
+                }
+                name = mapper.map(name);
+                if (name == null) {
+                    continue;
+                }
+                File file = new File(outputDir, name);
+                if (entry.isDirectory()) {
+                    dirs.add(file);
+                } else {
+                    dirs.add(file.getParentFile());
+                    files.remove(file);
+                    files.put(file, entry);
+                }
+            }
+            for (File dir : dirs) {
+                FileUtils.forceMkdir(dir);
+            }
+
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                    new PreNameThreadFactory("zips-unpack"));
+            try {
+                List<Future<Void>> futures = new ArrayList<>(files.size());
+                for (Map.Entry<File, ZipEntry> e : files.entrySet()) {
+                    futures.add(executor.submit(() -> {
+                        extract(zf, e.getValue(), e.getKey());
+                        return null;
+                    }));
+                }
+                for (Future<Void> future : futures) {
+                    await(future);
+                }
+            } finally {
+                executor.shutdownNow();
+                try {
+                    // 等待正在写的任务结束后再关闭ZipFile
+                    executor.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } catch (IOException e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * 解压一个条目，已知大小时先设置文件长度
+     */
+    private void extract(ZipFile zf, ZipEntry entry, File file) throws IOException {
+        log.trace("Extracting entry '{}'.", entry.getName());
+        try (InputStream in = zf.getInputStream(entry); RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long size = entry.getSize();
+            if (size >= 0) {
+                raf.setLength(size);
+            }
+            FileChannel channel = raf.getChannel();
+            byte[] b = new byte[64 * 1024];
+            ByteBuffer buffer = ByteBuffer.wrap(b);
+            long written = 0;
+            int n;
+            while ((n = in.read(b)) != -1) {
+                buffer.clear();
+                buffer.limit(n);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                written += n;
+            }
+            if (written != size) {
+                raf.setLength(written);
+            }
+        }
+    }
+
     /**
      * Unpacks each ZIP entry.
      *
@@ -521,15 +661,15 @@ public class Zips {
         private String getUnrootedName(String root, String name) {
             return name.substring(root.length());
         }
+    }
 
-        private String getRootName(String name) {
-            name = name.substring(FilenameUtils.getPrefixLength(name));
-            int idx = name.indexOf(PATH_SEPARATOR);
-            if (idx < 0) {
-                throw new ZipException("Entry " + name + " from the root of the zip is not supported");
-            }
-            return name.substring(0, name.indexOf(PATH_SEPARATOR));
+    private String getRootName(String name) {
+        name = name.substring(FilenameUtils.getPrefixLength(name));
+        int idx = name.indexOf(PATH_SEPARATOR);
+        if (idx < 0) {
+            throw new ZipException("Entry " + name + " from the root of the zip is not supported");
         }
+        return name.substring(0, name.indexOf(PATH_SEPARATOR));
     }
 
     /**
@@ -542,6 +682,18 @@ public class Zips {
      * @see #unpack(File, File)
      */
     public void explode(File zip) {
+        explode(zip, 1);
+    }
+
+    /**
+     * Unpacks a ZIP file to its own location.
+     * <p>
+     * parallelism大于1时并行解压，见{@link #unpack(File, File, NameMapper, int)}
+     *
+     * @param zip         input ZIP file as well as the target directory.
+     * @param parallelism 解压线程数
+     */
+    public void explode(File zip, int parallelism) {
         try {
             // Find a new unique name is the same directory
             File tempFile = FileUtil.getTempFileFor(zip);
@@ -550,7 +702,11 @@ public class Zips {
             FileUtils.moveFile(zip, tempFile);
 
             // Unpack it
-            unpack(tempFile, zip);
+            if (parallelism > 1) {
+                unpack(tempFile, zip, IdentityNameMapper.INSTANCE, parallelism);
+            } else {
+                unpack(tempFile, zip);
+            }
 
             // Delete the archive
             if (!tempFile.delete()) {
@@ -713,6 +869,145 @@ public class Zips {
     public void pack(File sourceDir, File targetZip, NameMapper mapper, int compressionLevel) {
         log.debug("Compressing '{}' into '{}'.", sourceDir, targetZip);
 
+        checkSourceDir(sourceDir);
+        try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(targetZip)), defaultEncoding)) {
+            out.setLevel(compressionLevel);
+            pack(sourceDir, out, mapper, "");
+        } catch (IOException e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * 并行压缩目录：每个文件在线程池中独立压缩（大文件压缩结果暂存到临时文件），再按遍历顺序原样写入ZIP。
+     * jpg、png、zip等本身已压缩的文件，以及压缩后反而更大的文件直接存储，不再压缩。
+     * 同时在压缩的文件数不超过parallelism的2倍，内存占用有上限
+     * <p>
+     * The ZIP file must not be a directory and its parent directory must exist.
+     *
+     * @param sourceDir        root directory.
+     * @param targetZip        ZIP file that will be created or overwritten.
+     * @param mapper           call-back for renaming the entries.
+     * @param compressionLevel compression level
+     * @param parallelism      压缩线程数
+     */
+    public void pack(File sourceDir, File targetZip, NameMapper mapper, int compressionLevel, int parallelism) {
+        log.debug("Compressing '{}' into '{}' with {} threads.", sourceDir, targetZip, parallelism);
+
+        checkSourceDir(sourceDir);
+        List<File> files = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        try {
+            collect(sourceDir, mapper, "", files, names);
+        } catch (IOException e) {
+            throw rethrow(e);
+        }
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                new PreNameThreadFactory("zips-pack"));
+        Deque<Future<PreparedEntry>> pending = new ArrayDeque<>();
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(targetZip, defaultEncoding)) {
+            int window = parallelism * 2;
+            for (int i = 0; i < files.size(); i++) {
+                if (pending.size() >= window) {
+                    writePrepared(pending.poll(), writer);
+                }
+                File file = files.get(i);
+                String name = names.get(i);
+                pending.add(executor.submit(() -> PreparedEntry.prepare(name, file, compressionLevel, PACK_SPILL_THRESHOLD)));
+            }
+            while (!pending.isEmpty()) {
+                writePrepared(pending.poll(), writer);
+            }
+        } catch (IOException e) {
+            throw rethrow(e);
+        } finally {
+            executor.shutdownNow();
+            discardPrepared(executor, pending);
+        }
+    }
+
+    /**
+     * 取出一个压缩结果并写入ZIP
+     */
+    private void writePrepared(Future<PreparedEntry> future, ZipArchiveWriter writer) throws IOException {
+        PreparedEntry entry = await(future);
+        try {
+            log.trace("Writing entry '{}'.", entry.getRecord().getName());
+            entry.writeTo(writer);
+        } finally {
+            entry.close();
+        }
+    }
+
+    /**
+     * 等待后台任务完成，任务的IOException原样抛出
+     */
+    private <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a ZIP task");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new ZipException(cause instanceof Exception ? (Exception) cause : e);
+        }
+    }
+
+    /**
+     * 出错时删除尚未写入的压缩结果的临时文件
+     */
+    private void discardPrepared(ThreadPoolExecutor executor, Deque<Future<PreparedEntry>> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            // 压缩任务响应中断，很快就会结束
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Future<PreparedEntry> future : pending) {
+            if (future.isDone() && !future.isCancelled()) {
+                try {
+                    future.get().close();
+                } catch (InterruptedException | ExecutionException e) {
+                    // 压缩本身失败，没有临时文件
+                }
+            }
+        }
+    }
+
+    /**
+     * 按{@link #pack(File, ZipOutputStream, NameMapper, String)}的顺序列出要压缩的文件和对应的条目名称
+     */
+    private void collect(File dir, NameMapper mapper, String pathPrefix, List<File> files, List<String> names) throws IOException {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            throw new IOException("Given file is not a directory '" + dir + "'");
+        }
+        for (File file : children) {
+            boolean isDir = file.isDirectory();
+            String path = pathPrefix + file.getName();
+            if (isDir) {
+                path += PATH_SEPARATOR;
+            }
+            String name = mapper.map(path);
+            if (name != null) {
+                files.add(file);
+                names.add(name);
+            }
+            if (isDir) {
+                collect(file, mapper, path, files, names);
+            }
+        }
+    }
+
+    private void checkSourceDir(File sourceDir) {
         File[] listFiles = sourceDir.listFiles();
         if (listFiles == null) {
             if (!sourceDir.exists()) {
@@ -722,12 +1017,6 @@ public class Zips {
         } else if (listFiles.length == 0) {
             throw new ZipException("Given directory '" + sourceDir + "' doesn't contain any files!");
         }
-        try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(targetZip)), defaultEncoding)) {
-            out.setLevel(compressionLevel);
-            pack(sourceDir, out, mapper, "");
-        } catch (IOException e) {
-            throw rethrow(e);
-        }
     }
 
     /**
@@ -763,12 +1052,7 @@ public class Zips {
                 }
 
                 out.putNextEntry(zipEntry);
-
-                if (isDir) {
-                    log.info("directory :" + name);
-                } else {
-                    log.info("file :" + name);
-                }
+                log.trace("Compressing entry '{}'.", name);
 
                 // Copy the file content
                 if (!isDir) {
@@ -789,6 +1073,7 @@ public class Zips {
      * Repacks a provided ZIP file into a new ZIP with a given compression
      * level.
      * <p>
+     * 存储(STORED)的条目在新的压缩级别下仍然不压缩时（NO_COMPRESSION，或jpg、zip等已压缩的格式）原样复制，不经过解压
      *
      * @param srcZip           source ZIP file.
      * @param dstZip           destination ZIP file.
@@ -798,12 +1083,31 @@ public class Zips {
 
         log.debug("Repacking '{}' into '{}'.", srcZip, dstZip);
 
-        RepackZipEntryCallback callback = new RepackZipEntryCallback(dstZip, compressionLevel);
-
-        try {
-            iterate(srcZip, callback);
-        } finally {
-            callback.closeStream();
+        try (FileChannel channel = FileChannel.open(srcZip.toPath(), StandardOpenOption.READ); ZipFile zf = new ZipFile(srcZip, defaultEncoding);
+             ZipArchiveWriter writer = new ZipArchiveWriter(dstZip, defaultEncoding)) {
+            Set<String> names = new HashSet<>();
+            for (ZipRecord record : ZipCentralDirectory.read(channel, defaultEncoding).getRecords()) {
+                if (!names.add(record.getName())) {
+                    log.debug("Duplicate entry: {}", record.getName());
+                    continue;
+                }
+                if (record.isDirectory()) {
+                    writer.putDirectory(record.getName(), record.getTime());
+                    continue;
+                }
+                // 重新压缩后仍然是存储方式的条目直接复制，其余的按新的压缩级别重新压缩
+                boolean keepStored = compressionLevel == Deflater.NO_COMPRESSION || PreparedEntry.isCompressedFormat(record.getName());
+                if (record.getMethod() == ZipEntry.STORED && keepStored) {
+                    writer.putRaw(record, channel, ZipCentralDirectory.dataOffset(channel, record));
+                    continue;
+                }
+                try (InputStream in = zf.getInputStream(zf.getEntry(record.getName()));
+                     PreparedEntry entry = PreparedEntry.prepare(record.getName(), record.getTime(), in, compressionLevel, PACK_SPILL_THRESHOLD)) {
+                    entry.writeTo(writer);
+                }
+            }
+        } catch (IOException e) {
+            throw rethrow(e);
         }
     }
 
@@ -832,37 +1136,6 @@ public class Zips {
         }
     }
 
-    /**
-     * RepackZipEntryCallback used in repacking methods.
-     *
-     * @author Pavel Grigorenko
-     */
-    private class RepackZipEntryCallback implements ZipEntryCallback {
-
-        private ZipOutputStream out;
-
-        private RepackZipEntryCallback(File dstZip, int compressionLevel) {
-            try {
-                this.out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(dstZip)), defaultEncoding);
-                this.out.setLevel(compressionLevel);
-            } catch (IOException e) {
-                rethrow(e);
-            }
-        }
-
-        @Override
-        public void process(InputStream in, ZipEntry zipEntry) throws IOException {
-            if (log.isDebugEnabled()) {
-                log.info("repacking. entity name:" + zipEntry.getName() + "  size:" + zipEntry.getSize());
-            }
-            copyEntry(zipEntry, in, out);
-        }
-
-        private void closeStream() {
-            closeQuietly(out);
-        }
-    }
-
     /**
      * Compresses a given directory in its own location.
      * <p>
@@ -928,6 +1201,58 @@ public class Zips {
         }
     }
 
+    /**
+     * 把条目直接写到输出流（比如下载时的ServletOutputStream），不生成临时文件。out不会被关闭
+     *
+     * @param entries ZIP entries added.
+     * @param out     target stream.
+     * @see ZipStreamBuilder
+     */
+    public void pack(ZipEntrySource[] entries, OutputStream out) {
+        ZipStreamBuilder builder = stream();
+        for (ZipEntrySource entry : entries) {
+            builder.add(entry);
+        }
+        try {
+            builder.writeTo(out);
+        } catch (IOException e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * 把目录直接压缩到输出流（比如下载时的ServletOutputStream），不生成临时文件。文件在写到它时才打开，out不会被关闭
+     *
+     * @param sourceDir root directory.
+     * @param out       target stream.
+     * @param mapper    call-back for renaming the entries.
+     * @see ZipStreamBuilder
+     */
+    public void pack(File sourceDir, OutputStream out, NameMapper mapper) {
+        log.debug("Compressing '{}' into a stream.", sourceDir);
+
+        checkSourceDir(sourceDir);
+        List<File> files = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        ZipStreamBuilder builder = stream();
+        try {
+            collect(sourceDir, mapper, "", files, names);
+            for (int i = 0; i < files.size(); i++) {
+                builder.addFile(names.get(i), files.get(i));
+            }
+            builder.writeTo(out);
+        } catch (IOException e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * 创建写到输出流的ZIP
+     */
+    public ZipStreamBuilder stream() {
+        return new ZipStreamBuilder(defaultEncoding);
+    }
+
     /**
      * Copies an existing ZIP file and appends it with one new entry.
      *
@@ -948,13 +1273,7 @@ public class Zips {
      * @param file new entry to be added.
      */
     public void addEntry(final File zip, final String path, final File file) {
-        operateInPlace(zip, new BaseInPlaceAction() {
-            @Override
-            public boolean act(File tmpFile) {
-                addEntry(zip, path, file, tmpFile);
-                return true;
-            }
-        });
+        addEntries(zip, new ZipEntrySource[]{new FileSource(path, file)});
     }
 
     /**
@@ -977,13 +1296,7 @@ public class Zips {
      * @param bytes new entry bytes (or <code>null</code> if directory).
      */
     public void addEntry(final File zip, final String path, final byte[] bytes) {
-        operateInPlace(zip, new BaseInPlaceAction() {
-            @Override
-            public boolean act(File tmpFile) {
-                addEntry(zip, path, bytes, tmpFile);
-                return true;
-            }
-        });
+        addEntries(zip, new ZipEntrySource[]{new ByteSource(path, bytes)});
     }
 
     /**
@@ -1004,13 +1317,7 @@ public class Zips {
      * @param entry new ZIP entry appended.
      */
     public void addEntry(final File zip, final ZipEntrySource entry) {
-        operateInPlace(zip, new BaseInPlaceAction() {
-            @Override
-            public boolean act(File tmpFile) {
-                addEntry(zip, entry, tmpFile);
-                return true;
-            }
-        });
+        addEntries(zip, new ZipEntrySource[]{entry});
     }
 
     /**
@@ -1021,22 +1328,13 @@ public class Zips {
      * @param destZip new ZIP file created.
      */
     public void addEntries(File zip, ZipEntrySource[] entries, File destZip) {
-        if (log.isDebugEnabled()) {
-            log.info("Copying '" + zip + "' to '" + destZip + "' and adding " + Arrays.asList(entries) + ".");
-        }
+        log.debug("Copying '{}' to '{}' and adding {}.", zip, destZip, Arrays.asList(entries));
 
-        ZipOutputStream out = null;
-        try {
-            out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(destZip)), defaultEncoding);
-            copyEntries(zip, out);
-            for (int i = 0; i < entries.length; i++) {
-                addEntry(entries[i], out);
-            }
-        } catch (IOException e) {
-            throw rethrow(e);
-        } finally {
-            closeQuietly(out);
+        ZipEditor editor = edit(zip);
+        for (ZipEntrySource entry : entries) {
+            editor.add(entry);
         }
+        commitTo(editor, destZip);
     }
 
     /**
@@ -1046,13 +1344,11 @@ public class Zips {
      * @param entries new ZIP entries appended.
      */
     public void addEntries(final File zip, final ZipEntrySource[] entries) {
-        operateInPlace(zip, new BaseInPlaceAction() {
-            @Override
-            public boolean act(File tmpFile) {
-                addEntries(zip, entries, tmpFile);
-                return true;
-            }
-        });
+        ZipEditor editor = edit(zip);
+        for (ZipEntrySource entry : entries) {
+            editor.add(entry);
+        }
+        commit(editor);
     }
 
     /**
@@ -1075,13 +1371,7 @@ public class Zips {
      * @since 1.7
      */
     public void removeEntry(final File zip, final String path) {
-        operateInPlace(zip, new BaseInPlaceAction() {
-            @Override
-            public boolean act(File tmpFile) {
-                removeEntry(zip, path, tmpFile);
-                return true;
-            }
-        });
+        removeEntries(zip, new String[]{path});
     }
 
     /**
@@ -1093,19 +1383,13 @@ public class Zips {
      * @since 1.7
      */
     public void removeEntries(File zip, String[] paths, File destZip) {
-        if (log.isDebugEnabled()) {
-            log.info("Copying '" + zip + "' to '" + destZip + "' and removing paths " + Arrays.asList(paths) + ".");
-        }
+        log.debug("Copying '{}' to '{}' and removing paths {}.", zip, destZip, Arrays.asList(paths));
 
-        ZipOutputStream out = null;
-        try {
-            out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(destZip)), defaultEncoding);
-            copyEntries(zip, out, new HashSet(Arrays.asList(paths)));
-        } catch (IOException e) {
-            throw rethrow(e);
-        } finally {
-            closeQuietly(out);
+        ZipEditor editor = edit(zip);
+        for (String path : paths) {
+            editor.remove(path);
         }
+        commitTo(editor, destZip);
     }
 
     /**
@@ -1116,105 +1400,11 @@ public class Zips {
      * @since 1.7
      */
     public void removeEntries(final File zip, final String[] paths) {
-        operateInPlace(zip, new BaseInPlaceAction() {
-            @Override
-            public boolean act(File tmpFile) {
-                removeEntries(zip, paths, tmpFile);
-                return true;
-            }
-        });
-    }
-
-    /**
-     * Copies all entries from one ZIP file to another.
-     *
-     * @param zip source ZIP file.
-     * @param out target ZIP stream.
-     */
-    private void copyEntries(File zip, final ZipOutputStream out) {
-        // this one doesn't call copyEntries with ignoredEntries, because that
-        // has poorer performance
-        final Set names = new HashSet();
-        iterate(zip, new ZipEntryCallback() {
-            @Override
-            public void process(InputStream in, ZipEntry zipEntry) throws IOException {
-                String entryName = zipEntry.getName();
-                if (names.add(entryName)) {
-                    copyEntry(zipEntry, in, out);
-                } else if (log.isDebugEnabled()) {
-                    log.info("Duplicate entry: {}", entryName);
-                }
-            }
-        });
-    }
-
-    /**
-     * Copies all entries from one ZIP file to another, ignoring entries with
-     * path in ignoredEntries
-     *
-     * @param zip            source ZIP file.
-     * @param out            target ZIP stream.
-     * @param ignoredEntries paths of entries not to copy
-     */
-    private void copyEntries(File zip, final ZipOutputStream out, final Set ignoredEntries) {
-        final Set names = new HashSet();
-        final Set dirNames = filterDirEntries(zip, ignoredEntries);
-        iterate(zip, new ZipEntryCallback() {
-            @Override
-            public void process(InputStream in, ZipEntry zipEntry) throws IOException {
-                String entryName = zipEntry.getName();
-                if (ignoredEntries.contains(entryName)) {
-                    return;
-                }
-
-                Iterator iter = dirNames.iterator();
-                while (iter.hasNext()) {
-                    String dirName = (String) iter.next();
-                    if (entryName.startsWith(dirName)) {
-                        return;
-                    }
-                }
-
-                if (names.add(entryName)) {
-                    copyEntry(zipEntry, in, out);
-                } else if (log.isDebugEnabled()) {
-                    log.info("Duplicate entry: {}", entryName);
-                }
-            }
-        });
-    }
-
-    /**
-     * @param zip   zip file to traverse
-     * @param names names of entries to filter dirs from
-     * @return Set<String> names of entries that are dirs.
-     */
-    Set filterDirEntries(File zip, Collection names) {
-        Set dirs = new HashSet();
-        if (zip == null) {
-            return dirs;
-        }
-        ZipFile zf = null;
-        try {
-            zf = new ZipFile(zip, defaultEncoding);
-            Iterator iterator = names.iterator();
-            while (iterator.hasNext()) {
-                String entryName = (String) iterator.next();
-                ZipEntry entry = zf.getEntry(entryName);
-                if (entry.isDirectory()) {
-                    dirs.add(entry.getName());
-                } else if (zf.getInputStream(entry) == null) {
-                    // no input stream means that this is a dir.
-                    dirs.add(entry.getName() + PATH_SEPARATOR);
-                }
-            }
-
-        } catch (IOException e) {
-            throw rethrow(e);
-        } finally {
-            closeQuietly(zf);
+        ZipEditor editor = edit(zip);
+        for (String path : paths) {
+            editor.remove(path);
         }
-        return dirs;
+        commit(editor);
     }
 
     /**
@@ -1239,12 +1429,7 @@ public class Zips {
      * @return <code>true</code> if the entry was replaced.
      */
     public boolean replaceEntry(final File zip, final String path, final File file) {
-        return operateInPlace(zip, new BaseInPlaceAction() {
-            @Override
-            public boolean act(File tmpFile) {
-                return replaceEntry(zip, new FileSource(path, file), tmpFile);
-            }
-        });
+        return replaceEntries(zip, new ZipEntrySource[]{new FileSource(path, file)});
     }
 
     /**
@@ -1269,12 +1454,7 @@ public class Zips {
      * @return <code>true</code> if the entry was replaced.
      */
     public boolean replaceEntry(final File zip, final String path, final byte[] bytes) {
-        return operateInPlace(zip, new BaseInPlaceAction() {
-            @Override
-            public boolean act(File tmpFile) {
-                return replaceEntry(zip, new ByteSource(path, bytes), tmpFile);
-            }
-        });
+        return replaceEntries(zip, new ZipEntrySource[]{new ByteSource(path, bytes)});
     }
 
     /**
@@ -1297,12 +1477,7 @@ public class Zips {
      * @return <code>true</code> if the entry was replaced.
      */
     public boolean replaceEntry(final File zip, final ZipEntrySource entry) {
-        return operateInPlace(zip, new BaseInPlaceAction() {
-            @Override
-            public boolean act(File tmpFile) {
-                return replaceEntry(zip, entry, tmpFile);
-            }
-        });
+        return replaceEntries(zip, new ZipEntrySource[]{entry});
     }
 
     /**
@@ -1314,38 +1489,13 @@ public class Zips {
      * @return <code>true</code> if at least one entry was replaced.
      */
     public boolean replaceEntries(File zip, ZipEntrySource[] entries, File destZip) {
-        if (log.isDebugEnabled()) {
-            log.info("Copying '" + zip + "' to '" + destZip + "' and replacing entries " + Arrays.asList(entries) + ".");
-        }
+        log.debug("Copying '{}' to '{}' and replacing entries {}.", zip, destZip, Arrays.asList(entries));
 
-        final Map entryByPath = byPath(entries);
-        final int entryCount = entryByPath.size();
-        try {
-            final ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(destZip)), defaultEncoding);
-            try {
-                final Set names = new HashSet();
-                iterate(zip, new ZipEntryCallback() {
-                    @Override
-                    public void process(InputStream in, ZipEntry zipEntry) throws IOException {
-                        if (names.add(zipEntry.getName())) {
-                            ZipEntrySource entry = (ZipEntrySource) entryByPath.remove(zipEntry.getName());
-                            if (entry != null) {
-                                addEntry(entry, out);
-                            } else {
-                                copyEntry(zipEntry, in, out);
-                            }
-                        } else if (log.isDebugEnabled()) {
-                            log.info("Duplicate entry: {}", zipEntry.getName());
-                        }
-                    }
-                });
-            } finally {
-                closeQuietly(out);
-            }
-        } catch (IOException e) {
-            throw rethrow(e);
+        ZipEditor editor = edit(zip);
+        for (ZipEntrySource entry : entries) {
+            editor.replace(entry);
         }
-        return entryByPath.size() < entryCount;
+        return commitTo(editor, destZip);
     }
 
     /**
@@ -1356,12 +1506,11 @@ public class Zips {
      * @return <code>true</code> if at least one entry was replaced.
      */
     public boolean replaceEntries(final File zip, final ZipEntrySource[] entries) {
-        return operateInPlace(zip, new BaseInPlaceAction() {
-            @Override
-            public boolean act(File tmpFile) {
-                return replaceEntries(zip, entries, tmpFile);
-            }
-        });
+        ZipEditor editor = edit(zip);
+        for (ZipEntrySource entry : entries) {
+            editor.replace(entry);
+        }
+        return commit(editor);
     }
 
     /**
@@ -1372,42 +1521,13 @@ public class Zips {
      * @param destZip new ZIP file created.
      */
     public void addOrReplaceEntries(File zip, ZipEntrySource[] entries, File destZip) {
-        if (log.isDebugEnabled()) {
-            log.info("Copying '" + zip + "' to '" + destZip + "' and adding/replacing entries " + Arrays.asList(entries) + ".");
-        }
-
-        final Map entryByPath = byPath(entries);
-        try {
-            final ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(destZip)), defaultEncoding);
-            try {
-                // Copy and replace entries
-                final Set names = new HashSet();
-                iterate(zip, new ZipEntryCallback() {
-                    @Override
-                    public void process(InputStream in, ZipEntry zipEntry) throws IOException {
-                        if (names.add(zipEntry.getName())) {
-                            ZipEntrySource entry = (ZipEntrySource) entryByPath.remove(zipEntry.getName());
-                            if (entry != null) {
-                                addEntry(entry, out);
-                            } else {
-                                copyEntry(zipEntry, in, out);
-                            }
-                        } else if (log.isDebugEnabled()) {
-                            log.info("Duplicate entry: {}", zipEntry.getName());
-                        }
-                    }
-                });
+        log.debug("Copying '{}' to '{}' and adding/replacing entries {}.", zip, destZip, Arrays.asList(entries));
 
-                // Add new entries
-                for (Iterator it = entryByPath.values().iterator(); it.hasNext(); ) {
-                    addEntry((ZipEntrySource) it.next(), out);
-                }
-            } finally {
-                closeQuietly(out);
-            }
-        } catch (IOException e) {
-            throw rethrow(e);
+        ZipEditor editor = edit(zip);
+        for (ZipEntrySource entry : entries) {
+            editor.put(entry);
         }
+        commitTo(editor, destZip);
     }
 
     /**
@@ -1417,38 +1537,11 @@ public class Zips {
      * @param entries ZIP entries to be replaced or added.
      */
     public void addOrReplaceEntries(final File zip, final ZipEntrySource[] entries) {
-        operateInPlace(zip, new BaseInPlaceAction() {
-            @Override
-            public boolean act(File tmpFile) {
-                addOrReplaceEntries(zip, entries, tmpFile);
-                return true;
-            }
-        });
-    }
-
-    /**
-     * @return given entries indexed by path.
-     */
-    Map byPath(ZipEntrySource[] entries) {
-        Map result = new HashMap(entries.length);
-        for (int i = 0; i < entries.length; i++) {
-            ZipEntrySource source = entries[i];
-            result.put(source.getPath(), source);
-        }
-        return result;
-    }
-
-    /**
-     * @return given entries indexed by path.
-     */
-    Map byPath(Collection entries) {
-        Map result = new HashMap(entries.size());
-        Iterator iter = entries.iterator();
-        while (iter.hasNext()) {
-            ZipEntrySource source = (ZipEntrySource) iter.next();
-            result.put(source.getPath(), source);
+        ZipEditor editor = edit(zip);
+        for (ZipEntrySource entry : entries) {
+            editor.put(entry);
         }
-        return result;
+        commit(editor);
     }
 
     /**
@@ -1485,19 +1578,6 @@ public class Zips {
         out.closeEntry();
     }
 
-    /**
-     * Copies a given ZIP entry to a ZIP file.
-     *
-     * @param zipEntry a ZIP entry from existing ZIP file.
-     * @param in       contents of the ZIP entry.
-     * @param out      target ZIP stream.
-     */
-    void copyEntry(ZipEntry zipEntry, InputStream in, ZipOutputStream out) throws IOException {
-        ZipEntry copy = new ZipEntry(zipEntry.getName());
-        copy.setTime(zipEntry.getTime());
-        addEntry(copy, new BufferedInputStream(in), out);
-    }
-
     /* Comparing two ZIP files. */
 
     /**
@@ -1515,6 +1595,8 @@ public class Zips {
 
     /**
      * Compares two ZIP entries (byte-by-byte). .
+     * <p>
+     * 先比较中央目录中的大小和CRC，不同时直接返回false，不解压
      *
      * @param f1    first ZIP file.
      * @param f2    second ZIP file.
@@ -1523,24 +1605,30 @@ public class Zips {
      * @return <code>true</code> if the contents of the entries were same.
      */
     public boolean entryEquals(File f1, File f2, String path1, String path2) {
-        ZipFile zf1 = null;
-        ZipFile zf2 = null;
-
-        try {
-            zf1 = new ZipFile(f1, defaultEncoding);
-            zf2 = new ZipFile(f2, defaultEncoding);
-
-            return doEntryEquals(zf1, zf2, path1, path2);
+        ZipIndex index1 = index(f1);
+        ZipIndex index2 = index(f2);
+        ZipRecord r1 = index1.getRecord(path1);
+        ZipRecord r2 = index2.getRecord(path2);
+        if (r1 == null || r2 == null) {
+            return r1 == r2;
+        }
+        if (r1.getSize() != r2.getSize() || r1.getCrc() != r2.getCrc()) {
+            return false;
+        }
+        try (InputStream is1 = index1.getInputStream(path1); InputStream is2 = index2.getInputStream(path2)) {
+            if (is1 == null || is2 == null) {
+                return is1 == is2;
+            }
+            return IOUtils.contentEquals(is1, is2);
         } catch (IOException e) {
             throw rethrow(e);
-        } finally {
-            closeQuietly(zf1);
-            closeQuietly(zf2);
         }
     }
 
     /**
      * Compares two ZIP entries (byte-by-byte). .
+     * <p>
+     * 先比较中央目录中的大小和CRC，不同时直接返回false，不解压
      *
      * @param zf1   first ZIP file.
      * @param zf2   second ZIP file.
@@ -1579,6 +1667,10 @@ public class Zips {
             if (e1 == null || e2 == null) {
                 return false;
             }
+            // ZipFile的条目来自中央目录，大小和CRC总是已知的
+            if (e1.getSize() != e2.getSize() || e1.getCrc() != e2.getCrc()) {
+                return false;
+            }
 
             is1 = zf1.getInputStream(e1);
             is2 = zf2.getInputStream(e2);
@@ -1596,6 +1688,33 @@ public class Zips {
         }
     }
 
+    /**
+     * 比较两个ZIP，只读取中央目录：同名条目的大小或CRC不同即为修改，不解压任何数据
+     *
+     * @param from 原来的ZIP
+     * @param to   新的ZIP
+     * @see ZipDiff
+     */
+    public ZipDiff diff(File from, File to) {
+        return diff(from, to, false);
+    }
+
+    /**
+     * 比较两个ZIP，只读取中央目录。compareContent为true时，大小和CRC都相同的条目再逐字节比较，排除CRC碰撞
+     *
+     * @param from           原来的ZIP
+     * @param to             新的ZIP
+     * @param compareContent 大小和CRC都相同时是否再逐字节比较
+     * @see ZipDiff
+     */
+    public ZipDiff diff(File from, File to, boolean compareContent) {
+        try {
+            return ZipDiff.compare(index(from), index(to), compareContent);
+        } catch (IOException e) {
+            throw rethrow(e);
+        }
+    }
+
     /**
      * Closes the ZIP file while ignoring any errors.
      *
@@ -1618,45 +1737,29 @@ public class Zips {
     }
 
     /**
-     * Simple helper to make inplace operation easier
+     * 批量修改ZIP文件：登记要添加、替换、删除的条目，commit时一次完成。只添加新条目时直接追加在原文件中，
+     * 只重写中央目录；有替换或删除时未修改的条目原样复制压缩数据，不重新压缩
      *
-     * @author shelajev
+     * @param zip an existing ZIP file.
+     * @see ZipEditor
      */
-    private abstract class BaseInPlaceAction {
+    public ZipEditor edit(File zip) {
+        return new ZipEditor(zip, defaultEncoding);
+    }
 
-        /**
-         * act
-         *
-         * @param tmpFile 文件
-         * @return true if something has been changed during the action.
-         */
-        abstract boolean act(File tmpFile);
+    private boolean commit(ZipEditor editor) {
+        try {
+            return editor.commit();
+        } catch (IOException e) {
+            throw rethrow(e);
+        }
     }
 
-    /**
-     * This method provides a general infrastructure for in-place operations. It
-     * creates temp file as a destination, then invokes the action on source and
-     * destination. Then it copies the result back into src file.
-     *
-     * @param src    - source zip file we want to modify
-     * @param action - action which actually modifies the archives
-     * @return result of the action
-     */
-    private boolean operateInPlace(File src, BaseInPlaceAction action) {
-        File tmp = null;
+    private boolean commitTo(ZipEditor editor, File destZip) {
         try {
-            tmp = File.createTempFile("zt-zip-tmp", ".zip");
-            boolean result = action.act(tmp);
-            if (result) {
-                FileUtils.forceDelete(src);
-                FileUtils.moveFile(tmp, src);
-            }
-            // else nothing changes
-            return result;
+            return editor.commitTo(destZip);
         } catch (IOException e) {
             throw rethrow(e);
-        } finally {
-            FileUtils.deleteQuietly(tmp);
         }
     }
 
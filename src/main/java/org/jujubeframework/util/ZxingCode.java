@@ -1,27 +1,50 @@
 package org.jujubeframework.util;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
 import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatReader;
 import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
 import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitArray;
 import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.jujubeframework.util.support.JpegEncoder;
 
 import javax.imageio.ImageIO;
-import javax.imageio.stream.ImageOutputStream;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Hashtable;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 /**
  * 利用goole的jar，生成二维码
+ * <p>
+ * 生成的点阵按内容和尺寸缓存（LRU，按占用的内存限制总量），同一张票据重复生成时直接复用；
+ * PNG直接由点阵按1位灰度写出，不经过BufferedImage
  *
  * @author John Li
  */
@@ -30,19 +53,36 @@ import java.util.Map;
 public class ZxingCode {
 
     /**
-     * 生成二维码
+     * 点阵缓存占用内存的上限
      */
-    public static BufferedImage encode(String contents, int width, int height) {
-        Map<EncodeHintType, Object> hints = new Hashtable<>();
+    private static final long CACHE_MAX_BYTES = 16L * 1024 * 1024;
+    private static final Map<EncodeHintType, Object> ENCODE_HINTS;
+    private static final Map<DecodeHintType, Object> DECODE_HINTS;
+    private static final MultiFormatWriter WRITER = new MultiFormatWriter();
+    private static final Cache<String, BitMatrix> MATRIX_CACHE = CacheBuilder.newBuilder().maximumWeight(CACHE_MAX_BYTES)
+            .weigher((String key, BitMatrix matrix) -> key.length() * 2 + matrix.getRowSize() * matrix.getHeight() * 4).build();
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    static {
+        Map<EncodeHintType, Object> encodeHints = new EnumMap<>(EncodeHintType.class);
         // 指定纠错等级
-        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.L);
+        encodeHints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.L);
         // 指定编码格式
-        hints.put(EncodeHintType.CHARACTER_SET, "GBK");
-        try {
-            BitMatrix bitMatrix = new MultiFormatWriter().encode(contents, BarcodeFormat.QR_CODE, width, height, hints);
+        encodeHints.put(EncodeHintType.CHARACTER_SET, "GBK");
+        ENCODE_HINTS = Collections.unmodifiableMap(encodeHints);
 
-            return MatrixToImageWriter.toBufferedImage(bitMatrix);
+        Map<DecodeHintType, Object> decodeHints = new EnumMap<>(DecodeHintType.class);
+        decodeHints.put(DecodeHintType.CHARACTER_SET, "GBK");
+        decodeHints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        DECODE_HINTS = Collections.unmodifiableMap(decodeHints);
+    }
 
+    /**
+     * 生成二维码
+     */
+    public static BufferedImage encode(String contents, int width, int height) {
+        try {
+            return MatrixToImageWriter.toBufferedImage(matrix(contents, width, height));
         } catch (Exception e) {
             log.error("encode", e);
         }
@@ -50,20 +90,162 @@ public class ZxingCode {
     }
 
     /**
-     * 生成二维码
+     * 生成二维码（JPEG）
      */
     public static InputStream encodeToInputStream(String contents, int width, int height) {
-        InputStream in = null;
-        ImageOutputStream outputStream;
-        BufferedImage image = encode(contents, width, height);
-        ByteArrayOutputStream bs = new ByteArrayOutputStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
         try {
-            outputStream = ImageIO.createImageOutputStream(bs);
-            ImageIO.write(image, "jpg", outputStream);
-            in = new ByteArrayInputStream(bs.toByteArray());
+            encode(contents, width, height, out);
         } catch (IOException e) {
             log.error("encode", e);
+            return null;
         }
-        return in;
+        // 直接基于已写入的缓冲区，不再复制一份字节数组
+        return out.toInputStream();
+    }
+
+    /**
+     * 生成二维码（JPEG），直接写入out。out不会被关闭
+     */
+    public static void encode(String contents, int width, int height, OutputStream out) throws IOException {
+        BufferedImage image = encode(contents, width, height);
+        if (image == null) {
+            throw new IOException("encode failed: " + contents);
+        }
+        JpegEncoder.DEFAULT.encode(image, out);
+    }
+
+    /**
+     * 生成二维码（PNG），直接写入out。out不会被关闭
+     */
+    public static void encodeToPng(String contents, int width, int height, OutputStream out) throws IOException {
+        writePng(matrix(contents, width, height), out);
+    }
+
+    /**
+     * 生成二维码（PNG）
+     */
+    public static byte[] encodeToPng(String contents, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        encodeToPng(contents, width, height, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 批量并行生成二维码（PNG）
+     *
+     * @return 内容 -> PNG字节，顺序和contents一致。生成失败的内容会记录日志并被跳过
+     */
+    public static Map<String, byte[]> encodeAllToPng(Collection<String> contents, int width, int height) {
+        List<byte[]> images = contents.parallelStream().map(content -> {
+            try {
+                return encodeToPng(content, width, height);
+            } catch (IOException e) {
+                log.error("encode", e);
+                return null;
+            }
+        }).collect(Collectors.toList());
+        Map<String, byte[]> result = new LinkedHashMap<>(contents.size() * 2);
+        int i = 0;
+        for (String content : contents) {
+            byte[] image = images.get(i++);
+            if (image != null) {
+                result.put(content, image);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 识别图片中的二维码（或条形码）
+     *
+     * @return 识别出的内容，没有识别到时返回null
+     */
+    public static String decode(BufferedImage image) {
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image)));
+        try {
+            return new MultiFormatReader().decode(bitmap, DECODE_HINTS).getText();
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 识别上传的图片中的二维码（或条形码）。in不会被关闭
+     *
+     * @return 识别出的内容，没有识别到时返回null
+     * @throws IOException 不是能识别的图片格式
+     */
+    public static String decode(InputStream in) throws IOException {
+        BufferedImage image = ImageIO.read(in);
+        if (image == null) {
+            throw new IOException("unsupported image format");
+        }
+        return decode(image);
+    }
+
+    /**
+     * 获得点阵，先从缓存中取。返回的点阵是共享的，只能读取
+     */
+    private static BitMatrix matrix(String contents, int width, int height) throws IOException {
+        String key = width + "x" + height + "\n" + contents;
+        try {
+            return MATRIX_CACHE.get(key, () -> WRITER.encode(contents, BarcodeFormat.QR_CODE, width, height, ENCODE_HINTS));
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof WriterException ? new IOException(e.getCause()) : new IOException(e);
+        }
+    }
+
+    /**
+     * 把点阵写成1位灰度的PNG：置位的点为黑色(0)，其余为白色(1)
+     */
+    private static void writePng(BitMatrix matrix, OutputStream out) throws IOException {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(PNG_SIGNATURE);
+
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(13);
+        DataOutputStream header = new DataOutputStream(chunk);
+        header.writeInt(width);
+        header.writeInt(height);
+        // 位深1，灰度，deflate压缩，标准过滤，不隔行
+        header.write(new byte[]{1, 0, 0, 0, 0});
+        writeChunk(data, "IHDR", chunk.toByteArray());
+
+        chunk = new ByteArrayOutputStream(height * 4);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(chunk, deflater)) {
+            int rowBytes = (width + 7) / 8;
+            byte[] line = new byte[rowBytes + 1];
+            BitArray row = new BitArray(width);
+            for (int y = 0; y < height; y++) {
+                int[] bits = matrix.getRow(y, row).getBitArray();
+                // 每行以过滤类型0开头
+                line[0] = 0;
+                for (int i = 0; i < rowBytes; i++) {
+                    // BitArray中第x位是bits[x / 32]的第(x % 32)个低位，PNG要求每个字节从高位开始
+                    int word = Integer.reverse(bits[i >>> 2]);
+                    line[i + 1] = (byte) ~(word >>> (24 - (i & 3) * 8));
+                }
+                deflate.write(line);
+            }
+        } finally {
+            deflater.end();
+        }
+        writeChunk(data, "IDAT", chunk.toByteArray());
+        writeChunk(data, "IEND", new byte[0]);
+        data.flush();
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] content) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(content);
+        out.writeInt(content.length);
+        out.write(typeBytes);
+        out.write(content);
+        out.writeInt((int) crc.getValue());
     }
 }
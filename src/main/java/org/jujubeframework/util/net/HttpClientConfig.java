@@ -0,0 +1,117 @@
+package org.jujubeframework.util.net;
+
+/**
+ * {@link PooledHttpClient}的配置：连接池大小、超时、keep-alive和异步线程数
+ * <p>
+ * 时间单位都是毫秒，0表示不超时
+ *
+ * <pre>
+ *  HttpClientRegistry.register("catalog", new HttpClientConfig().maxTotal(50).maxPerRoute(50).socketTimeout(2000));
+ * </pre>
+ *
+ * @author John Li
+ */
+public class HttpClientConfig {
+
+    private int connectTimeout = 5000;
+    private int socketTimeout = 30000;
+    private int connectionRequestTimeout = 5000;
+    private int maxTotal = 20;
+    private int maxPerRoute = 10;
+    private long keepAlive = 30000;
+    private int asyncThreads;
+    private String userAgent;
+
+    /**
+     * 建立连接的超时时间
+     */
+    public HttpClientConfig connectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    /**
+     * 等待数据的超时时间
+     */
+    public HttpClientConfig socketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+        return this;
+    }
+
+    /**
+     * 从连接池中获取连接的超时时间，连接池满时最多等待这么久
+     */
+    public HttpClientConfig connectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+        return this;
+    }
+
+    /**
+     * 连接池的最大连接数
+     */
+    public HttpClientConfig maxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+        return this;
+    }
+
+    /**
+     * 每个主机的最大连接数
+     */
+    public HttpClientConfig maxPerRoute(int maxPerRoute) {
+        this.maxPerRoute = maxPerRoute;
+        return this;
+    }
+
+    /**
+     * 空闲连接的保持时间，服务器在Keep-Alive头中指定了更短的时间时以服务器为准；超过这个时间的空闲连接会被后台线程关闭
+     */
+    public HttpClientConfig keepAlive(long keepAlive) {
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    /**
+     * 执行异步请求的线程数，默认和最大连接数相同
+     */
+    public HttpClientConfig asyncThreads(int asyncThreads) {
+        this.asyncThreads = asyncThreads;
+        return this;
+    }
+
+    public HttpClientConfig userAgent(String userAgent) {
+        this.userAgent = userAgent;
+        return this;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public long getKeepAlive() {
+        return keepAlive;
+    }
+
+    public int getAsyncThreads() {
+        return asyncThreads > 0 ? asyncThreads : maxTotal;
+    }
+
+    public String getUserAgent() {
+        return userAgent;
+    }
+}
@@ -0,0 +1,102 @@
+package org.jujubeframework.util.net;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按名称管理的HTTP客户端
+ * <p>
+ * 每个上游注册一个客户端，各自有独立的连接池、超时和keep-alive，延迟差别很大的上游之间互不影响。
+ * 和{@link Https#setTimeouts(long, long)}不同，配置可以随时修改：重新注册同名的客户端后，之前获得的旧实例把新的请求转给新的客户端，
+ * 旧实例上正在进行的请求完成后才关闭它的连接池，因此保存了客户端实例的代码不受影响。没有注册过的名称使用默认配置创建
+ *
+ * <pre>
+ *  HttpClientRegistry.register("search", new HttpClientConfig().socketTimeout(500).maxPerRoute(100));
+ *  HttpClientRegistry.register("report", new HttpClientConfig().socketTimeout(60000).maxPerRoute(4));
+ *  HttpResult result = HttpClientRegistry.get("search").get(url);
+ * </pre>
+ *
+ * @author John Li
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class HttpClientRegistry {
+
+    /**
+     * 默认客户端的名称
+     */
+    public static final String DEFAULT = "default";
+
+    private static final ConcurrentMap<String, PooledHttpClient> CLIENTS = new ConcurrentHashMap<>();
+
+    /**
+     * 注册客户端，替换同名的旧客户端：旧客户端之后的请求转给新的客户端，正在进行的请求完成后关闭
+     */
+    public static PooledHttpClient register(String name, HttpClientConfig config) {
+        PooledHttpClient client = new PooledHttpClient(name, config);
+        PooledHttpClient old = CLIENTS.put(name, client);
+        if (old != null) {
+            old.retire(client);
+        }
+        return client;
+    }
+
+    /**
+     * 获得客户端，没有注册过时使用默认配置创建
+     */
+    public static PooledHttpClient get(String name) {
+        return CLIENTS.computeIfAbsent(name, key -> new PooledHttpClient(key, new HttpClientConfig()));
+    }
+
+    /**
+     * 默认客户端
+     */
+    public static PooledHttpClient getDefault() {
+        return get(DEFAULT);
+    }
+
+    public static boolean contains(String name) {
+        return CLIENTS.containsKey(name);
+    }
+
+    /**
+     * 所有已注册的名称
+     */
+    public static Set<String> names() {
+        return Collections.unmodifiableSet(CLIENTS.keySet());
+    }
+
+    /**
+     * 立即关闭并移除客户端，之后使用它的调用抛出IOException
+     */
+    public static void close(String name) {
+        closeQuietly(CLIENTS.remove(name));
+    }
+
+    /**
+     * 关闭并移除所有客户端
+     */
+    public static void closeAll() {
+        List<String> names = new ArrayList<>(CLIENTS.keySet());
+        for (String name : names) {
+            close(name);
+        }
+    }
+
+    private static void closeQuietly(PooledHttpClient client) {
+        if (client != null) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,534 @@
+package org.jujubeframework.util.net;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import org.apache.commons.io.FileUtils;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.DateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 客户端的HTTP响应缓存，只缓存GET请求的200响应
+ * <p>
+ * <ul>
+ * <li>新鲜度按Cache-Control的max-age（或Expires）计算，no-store不缓存，no-cache每次都重新验证；
+ * 都没有时按Last-Modified估算（距今时间的10%，最多1天）</li>
+ * <li>过期后带If-None-Match/If-Modified-Since重新验证，服务器返回304时继续使用缓存的内容，只更新响应头</li>
+ * <li>同一个请求同时只有一个发往服务器，其余的线程等待它的结果</li>
+ * <li>内存中按响应体的字节数限制大小，最近最少使用的先被淘汰；可选的磁盘缓存超出大小时删除最早写入的文件</li>
+ * </ul>
+ * 线程安全
+ *
+ * <pre>
+ *  HttpResponseCache cache = new HttpResponseCache("config", 64 * 1024 * 1024);
+ *  String body = cache.get(url).getBodyAsString();
+ * </pre>
+ *
+ * @author John Li
+ */
+public class HttpResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpResponseCache.class);
+
+    private static final int DISK_FORMAT_VERSION = 1;
+    private static final long MAX_HEURISTIC_LIFETIME = 24 * 60 * 60 * 1000L;
+
+    /**
+     * 发出请求的客户端在{@link HttpClientRegistry}中的名称，每次请求时获取，客户端被重新注册或关闭后不受影响
+     */
+    private final String clientName;
+    private final Cache<String, Entry> memory;
+    private final File diskDir;
+    private final long maxDiskBytes;
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final ConcurrentMap<String, CompletableFuture<HttpResult>> inflight = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder diskHitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder revalidatedCount = new LongAdder();
+    private final LongAdder collapsedCount = new LongAdder();
+
+    /**
+     * 只使用内存缓存
+     *
+     * @param clientName     发出请求的客户端在{@link HttpClientRegistry}中的名称
+     * @param maxMemoryBytes 内存中缓存的响应体总字节数上限
+     */
+    public HttpResponseCache(String clientName, long maxMemoryBytes) {
+        this(clientName, maxMemoryBytes, null, 0);
+    }
+
+    /**
+     * @param clientName     发出请求的客户端在{@link HttpClientRegistry}中的名称
+     * @param maxMemoryBytes 内存中缓存的响应体总字节数上限
+     * @param diskDir        磁盘缓存的目录，为null时不使用磁盘缓存
+     * @param maxDiskBytes   磁盘缓存的字节数上限
+     */
+    public HttpResponseCache(String clientName, long maxMemoryBytes, File diskDir, long maxDiskBytes) {
+        this.clientName = clientName;
+        this.memory = CacheBuilder.newBuilder().maximumWeight(maxMemoryBytes).weigher((String key, Entry entry) -> entry.weight(key)).build();
+        this.diskDir = diskDir;
+        this.maxDiskBytes = maxDiskBytes;
+        if (diskDir != null) {
+            try {
+                FileUtils.forceMkdir(diskDir);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot create cache directory " + diskDir, e);
+            }
+            diskBytes.set(FileUtils.sizeOfDirectory(diskDir));
+        }
+    }
+
+    public HttpResult get(String url) throws IOException {
+        return get(url, null);
+    }
+
+    /**
+     * GET请求，优先使用缓存
+     *
+     * @param headers 请求头，是缓存键的一部分
+     */
+    public HttpResult get(String url, Map<String, String> headers) throws IOException {
+        String key = key(url, headers);
+        Entry entry = lookup(key);
+        if (entry != null && entry.isFresh(System.currentTimeMillis())) {
+            hitCount.increment();
+            return entry.result;
+        }
+        CompletableFuture<HttpResult> future = new CompletableFuture<>();
+        CompletableFuture<HttpResult> existing = inflight.putIfAbsent(key, future);
+        if (existing != null) {
+            collapsedCount.increment();
+            return await(existing);
+        }
+        try {
+            // 可能在查找之后刚有另一个线程完成了请求
+            Entry current = lookup(key);
+            if (current != null && current.isFresh(System.currentTimeMillis())) {
+                hitCount.increment();
+                future.complete(current.result);
+                return current.result;
+            }
+            HttpResult result = fetch(key, url, headers, current != null ? current : entry);
+            future.complete(result);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, future);
+        }
+    }
+
+    private HttpResult fetch(String key, String url, Map<String, String> headers, Entry entry) throws IOException {
+        HttpGet request = new HttpGet(url);
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                request.setHeader(header.getKey(), header.getValue());
+            }
+        }
+        if (entry != null) {
+            String etag = entry.result.getHeader("ETag");
+            String lastModified = entry.result.getHeader("Last-Modified");
+            if (etag != null) {
+                request.setHeader("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                request.setHeader("If-Modified-Since", lastModified);
+            }
+        }
+        HttpResult response = HttpClientRegistry.get(clientName).execute(request);
+        long now = System.currentTimeMillis();
+        if (response.getStatus() == 304 && entry != null) {
+            revalidatedCount.increment();
+            Entry refreshed = Entry.create(merge(entry.result, response), now);
+            if (refreshed == null) {
+                invalidateKey(key);
+                return entry.result;
+            }
+            store(key, refreshed);
+            return refreshed.result;
+        }
+        missCount.increment();
+        Entry created = response.getStatus() == 200 ? Entry.create(response, now) : null;
+        if (created != null) {
+            store(key, created);
+        } else if (entry != null) {
+            invalidateKey(key);
+        }
+        return response;
+    }
+
+    /**
+     * 304响应中的响应头替换缓存中的同名响应头
+     */
+    private static HttpResult merge(HttpResult cached, HttpResult notModified) {
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(cached.getHeaders());
+        for (Map.Entry<String, List<String>> header : notModified.getHeaders().entrySet()) {
+            if (!"Content-Length".equalsIgnoreCase(header.getKey())) {
+                headers.put(header.getKey(), header.getValue());
+            }
+        }
+        return new HttpResult(cached.getStatus(), headers, cached.getBody());
+    }
+
+    private static HttpResult await(CompletableFuture<HttpResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a collapsed request");
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 从缓存中移除
+     */
+    public void invalidate(String url) {
+        invalidateKey(key(url, null));
+    }
+
+    private void invalidateKey(String key) {
+        memory.invalidate(key);
+        if (diskDir != null) {
+            File file = diskFile(key);
+            long length = file.length();
+            if (file.delete()) {
+                diskBytes.addAndGet(-length);
+            }
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        memory.invalidateAll();
+        if (diskDir != null) {
+            File[] files = diskDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    FileUtils.deleteQuietly(file);
+                }
+            }
+            diskBytes.set(0);
+        }
+    }
+
+    private Entry lookup(String key) {
+        Entry entry = memory.getIfPresent(key);
+        if (entry == null && diskDir != null) {
+            entry = readDisk(key);
+            if (entry != null) {
+                diskHitCount.increment();
+                memory.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    private void store(String key, Entry entry) {
+        memory.put(key, entry);
+        if (diskDir != null) {
+            writeDisk(key, entry);
+        }
+    }
+
+    private static String key(String url, Map<String, String> headers) {
+        if (headers == null || headers.isEmpty()) {
+            return url;
+        }
+        StringBuilder key = new StringBuilder(url);
+        for (Map.Entry<String, String> header : new TreeMap<>(headers).entrySet()) {
+            key.append('\n').append(header.getKey().toLowerCase(Locale.ENGLISH)).append(": ").append(header.getValue());
+        }
+        return key.toString();
+    }
+
+    private File diskFile(String key) {
+        return new File(diskDir, Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString());
+    }
+
+    private Entry readDisk(String key) {
+        File file = diskFile(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != DISK_FORMAT_VERSION || !key.equals(in.readUTF())) {
+                return null;
+            }
+            long expires = in.readLong();
+            int status = in.readInt();
+            int headerCount = in.readInt();
+            Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = 0; i < headerCount; i++) {
+                String name = in.readUTF();
+                int valueCount = in.readInt();
+                List<String> values = new ArrayList<>(valueCount);
+                for (int j = 0; j < valueCount; j++) {
+                    values.add(in.readUTF());
+                }
+                headers.put(name, values);
+            }
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Entry(new HttpResult(status, headers, body), expires);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("Discarding unreadable HTTP cache file {}: {}", file, e.toString());
+            FileUtils.deleteQuietly(file);
+            return null;
+        }
+    }
+
+    /**
+     * 写入临时文件再改名，读取的线程不会看到写了一半的文件
+     */
+    private void writeDisk(String key, Entry entry) {
+        File file = diskFile(key);
+        File tmp = new File(diskDir, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(DISK_FORMAT_VERSION);
+                out.writeUTF(key);
+                out.writeLong(entry.expires);
+                out.writeInt(entry.result.getStatus());
+                out.writeInt(entry.result.getHeaders().size());
+                for (Map.Entry<String, List<String>> header : entry.result.getHeaders().entrySet()) {
+                    out.writeUTF(header.getKey());
+                    out.writeInt(header.getValue().size());
+                    for (String value : header.getValue()) {
+                        out.writeUTF(value);
+                    }
+                }
+                out.writeInt(entry.result.getBody().length);
+                out.write(entry.result.getBody());
+            }
+            long oldLength = file.length();
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (diskBytes.addAndGet(file.length() - oldLength) > maxDiskBytes) {
+                trimDisk();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write HTTP cache file {}: {}", file, e.toString());
+            FileUtils.deleteQuietly(tmp);
+        }
+    }
+
+    /**
+     * 删除最早写入的文件，直到低于上限的90%
+     */
+    private synchronized void trimDisk() {
+        File[] files = diskDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        long target = maxDiskBytes / 10 * 9;
+        for (int i = 0; i < files.length && total > target; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                total -= length;
+            }
+        }
+        diskBytes.set(total);
+    }
+
+    /**
+     * 直接从缓存中返回的次数（包括从磁盘读取的）
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * 从磁盘缓存中读取的次数
+     */
+    public long getDiskHitCount() {
+        return diskHitCount.sum();
+    }
+
+    /**
+     * 向服务器请求了完整响应的次数
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * 重新验证后服务器返回304、继续使用缓存的次数
+     */
+    public long getRevalidatedCount() {
+        return revalidatedCount.sum();
+    }
+
+    /**
+     * 等待同时进行的相同请求、没有自己发出请求的次数
+     */
+    public long getCollapsedCount() {
+        return collapsedCount.sum();
+    }
+
+    /**
+     * 不需要下载响应体的请求所占的比例
+     */
+    public double getHitRate() {
+        long hits = getHitCount() + getRevalidatedCount() + getCollapsedCount();
+        long total = hits + getMissCount();
+        return total == 0 ? 1.0 : (double) hits / total;
+    }
+
+    /**
+     * 内存中缓存的响应数
+     */
+    public long size() {
+        return memory.size();
+    }
+
+    @Override
+    public String toString() {
+        return "HttpResponseCache[hits=" + getHitCount() + ", misses=" + getMissCount() + ", revalidated=" + getRevalidatedCount() + ", collapsed="
+                + getCollapsedCount() + "]";
+    }
+
+    /**
+     * 缓存的响应和它的过期时间
+     */
+    private static final class Entry {
+
+        private final HttpResult result;
+        private final long expires;
+
+        Entry(HttpResult result, long expires) {
+            this.result = result;
+            this.expires = expires;
+        }
+
+        /**
+         * 按响应头计算过期时间，不能缓存时返回null
+         */
+        static Entry create(HttpResult result, long now) {
+            boolean noCache = false;
+            long maxAge = -1;
+            List<String> cacheControl = result.getHeaders().get("Cache-Control");
+            if (cacheControl != null) {
+                for (String value : cacheControl) {
+                    for (String directive : value.split(",")) {
+                        String d = directive.trim().toLowerCase(Locale.ENGLISH);
+                        if (d.equals("no-store")) {
+                            return null;
+                        } else if (d.equals("no-cache") || d.startsWith("no-cache=")) {
+                            noCache = true;
+                        } else if (d.startsWith("max-age=")) {
+                            maxAge = parseSeconds(d.substring("max-age=".length()));
+                        }
+                    }
+                }
+            }
+            if ("*".equals(result.getHeader("Vary"))) {
+                return null;
+            }
+            boolean validatable = result.getHeader("ETag") != null || result.getHeader("Last-Modified") != null;
+            long lifetime = noCache ? 0 : maxAge >= 0 ? maxAge * 1000 : lifetime(result, now);
+            long age = parseSeconds(result.getHeader("Age"));
+            lifetime -= Math.max(age, 0) * 1000;
+            if (lifetime <= 0 && !validatable) {
+                return null;
+            }
+            return new Entry(result, now + Math.max(lifetime, 0));
+        }
+
+        /**
+         * 没有max-age时按Expires计算，再没有时按Last-Modified估算
+         */
+        private static long lifetime(HttpResult result, long now) {
+            Date date = parseDate(result.getHeader("Date"));
+            long base = date == null ? now : date.getTime();
+            String expires = result.getHeader("Expires");
+            if (expires != null) {
+                Date expiresDate = parseDate(expires);
+                // 无法解析的Expires（比如0）表示已经过期
+                return expiresDate == null ? 0 : expiresDate.getTime() - base;
+            }
+            Date lastModified = parseDate(result.getHeader("Last-Modified"));
+            if (lastModified != null && lastModified.getTime() < base) {
+                return Math.min((base - lastModified.getTime()) / 10, MAX_HEURISTIC_LIFETIME);
+            }
+            return 0;
+        }
+
+        private static Date parseDate(String value) {
+            return value == null ? null : DateUtils.parseDate(value);
+        }
+
+        private static long parseSeconds(String value) {
+            if (value == null) {
+                return -1;
+            }
+            try {
+                return Long.parseLong(value.trim().replace("\"", ""));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        boolean isFresh(long now) {
+            return now < expires;
+        }
+
+        int weight(String key) {
+            long weight = result.getBody().length + key.length() * 2L + result.getHeaders().size() * 64L;
+            return (int) Math.min(weight, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.jujubeframework.util.net;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 已经完整读取的HTTP响应：状态码、响应头和响应体
+ * <p>
+ * 任何状态码都是正常的结果，由调用方判断；只有网络错误才是异常
+ *
+ * @author John Li
+ */
+public class HttpResult {
+
+    private final int status;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+
+    /**
+     * @param headers 响应头，名称不区分大小写
+     */
+    public HttpResult(int status, Map<String, List<String>> headers, byte[] body) {
+        this.status = status;
+        TreeMap<String, List<String>> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        copy.putAll(headers);
+        this.headers = Collections.unmodifiableMap(copy);
+        this.body = body;
+    }
+
+    /**
+     * 取出响应中的所有响应头，名称不区分大小写
+     */
+    static Map<String, List<String>> headers(HttpResponse response) {
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Header header : response.getAllHeaders()) {
+            headers.computeIfAbsent(header.getName(), name -> new ArrayList<>(1)).add(header.getValue());
+        }
+        return headers;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * 状态码是否是2xx
+     */
+    public boolean isSuccess() {
+        return status >= 200 && status < 300;
+    }
+
+    /**
+     * 所有响应头，名称不区分大小写
+     */
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * 响应头的第一个值，没有时为null
+     */
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * 按Content-Type中的字符集解码响应体，没有指定时按UTF-8
+     */
+    public String getBodyAsString() {
+        return new String(body, charset(getHeader("Content-Type")));
+    }
+
+    static Charset charset(String contentType) {
+        if (contentType != null) {
+            try {
+                Charset charset = ContentType.parse(contentType).getCharset();
+                if (charset != null) {
+                    return charset;
+                }
+            } catch (RuntimeException e) {
+                // 无法解析的Content-Type按默认字符集
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpResult[" + status + ", " + body.length + " bytes]";
+    }
+}
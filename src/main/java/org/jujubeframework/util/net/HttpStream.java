@@ -0,0 +1,88 @@
+package org.jujubeframework.util.net;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 没有读取响应体的HTTP响应，响应体边读边从网络接收，不会整个缓存在内存中
+ * <p>
+ * 占用着连接池中的一个连接，用完后必须{@link #close()}。响应体读完后关闭，连接回到连接池；没有读完就关闭时连接会被断开，不会读取剩余的数据
+ *
+ * <pre>
+ *  try (HttpStream stream = client.stream(new HttpGet(url))) {
+ *      Files.copy(stream.getBody(), target);
+ *  }
+ * </pre>
+ *
+ * @author John Li
+ */
+public class HttpStream implements Closeable {
+
+    private final CloseableHttpResponse response;
+    private final Map<String, List<String>> headers;
+    /**
+     * 关闭后通知客户端，只调用一次
+     */
+    private final Runnable onClose;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    HttpStream(CloseableHttpResponse response, Runnable onClose) {
+        this.response = response;
+        this.headers = HttpResult.headers(response);
+        this.onClose = onClose;
+    }
+
+    public int getStatus() {
+        return response.getStatusLine().getStatusCode();
+    }
+
+    /**
+     * 所有响应头，名称不区分大小写
+     */
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * 响应头的第一个值，没有时为null
+     */
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    /**
+     * 响应体的长度，未知时为-1
+     */
+    public long getContentLength() {
+        HttpEntity entity = response.getEntity();
+        return entity == null ? 0 : entity.getContentLength();
+    }
+
+    /**
+     * 响应体，只能读取一次
+     */
+    public InputStream getBody() throws IOException {
+        HttpEntity entity = response.getEntity();
+        return entity == null ? new ByteArrayInputStream(new byte[0]) : entity.getContent();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed.compareAndSet(false, true)) {
+            try {
+                response.close();
+            } finally {
+                onClose.run();
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.mashape.unirest.http.exceptions.UnirestException;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -19,6 +20,7 @@ public class Https {
     public static final String SET_TIMEOUTS = "setTimeouts";
     public static final String SET_CONCURRENCY = "setConcurrency";
     private static ConcurrentMap<String, Boolean> GLOB_BOOL = new ConcurrentHashMap<>();
+    private static volatile HttpResponseCache responseCache;
 
     /**
      * 获得页面返回码
@@ -35,6 +37,14 @@ public class Https {
      * get请求获得页面内容.如果报错，则返回空字符串
      */
     public static String getAsString(String href) {
+        HttpResponseCache cache = responseCache;
+        if (cache != null) {
+            try {
+                return cache.get(href).getBodyAsString();
+            } catch (IOException | RuntimeException e) {
+                return "";
+            }
+        }
         try {
             return Unirest.get(href).asString().getBody();
         } catch (UnirestException e) {
@@ -54,7 +64,29 @@ public class Https {
     }
 
     /**
-     * 设置全局的超时时间(全局设置，一个JVM中只允许设置一次)
+     * 获得命名的HTTP客户端，有独立的连接池和超时设置，提供异步和流式的接口，出错时抛出异常
+     *
+     * @see HttpClientRegistry
+     */
+    public static PooledHttpClient client(String name) {
+        return HttpClientRegistry.get(name);
+    }
+
+    /**
+     * 设置{@link #getAsString(String)}使用的响应缓存，为null时不使用缓存。设置后请求通过缓存所用的客户端发出
+     *
+     * @see HttpResponseCache
+     */
+    public static void setResponseCache(HttpResponseCache cache) {
+        responseCache = cache;
+    }
+
+    public static HttpResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * 设置全局的超时时间(全局设置，一个JVM中只允许设置一次)。需要按上游分别设置时使用{@link #client(String)}
      */
     public static void setTimeouts(long connectionTimeout, long socketTimeout) {
         // Unirest.refresh()如果多次调用，会生成多个SyncIdleConnectionMonitorThread线程，所以这里做一下处理
@@ -65,7 +97,7 @@ public class Https {
     }
 
     /**
-     * 设置全局的并发数(全局设置，一个JVM中只允许设置一次)
+     * 设置全局的并发数(全局设置，一个JVM中只允许设置一次)。需要按上游分别设置时使用{@link #client(String)}
      */
     public static void setConcurrency(int maxTotal, int maxPerRoute) {
         // Unirest.refresh()如果多次调用，会生成多个SyncIdleConnectionMonitorThread线程，所以这里做一下处理
@@ -0,0 +1,331 @@
+package org.jujubeframework.util.net;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.NoConnectionReuseStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+import org.jujubeframework.util.support.concurrent.PreNameThreadFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 有独立连接池的HTTP客户端
+ * <p>
+ * 每个实例有自己的连接池、超时、keep-alive和执行异步请求的线程池，一个慢的上游占满自己的连接池时不影响其他上游。
+ * 同步方法在网络错误时抛出IOException，异步方法返回的CompletableFuture以同样的异常结束；任何状态码都是正常的结果。
+ * 取消异步请求返回的Future会中断正在进行的请求。关闭之后的调用同样抛出IOException（异步时以IOException结束）。
+ * 在{@link HttpClientRegistry}中被同名的新客户端替换后，新的请求转给新的客户端，正在进行的请求和未关闭的HttpStream用完后才关闭连接池。
+ * 线程安全，一般通过{@link HttpClientRegistry}按名称获取
+ *
+ * <pre>
+ *  PooledHttpClient client = HttpClientRegistry.get("catalog");
+ *  client.getAsync(url).thenAccept(result -> ...);
+ * </pre>
+ *
+ * @author John Li
+ */
+public class PooledHttpClient implements Closeable {
+
+    private interface IoCallable<T> {
+        T call() throws IOException;
+    }
+
+    private final String name;
+    private final HttpClientConfig config;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private final ThreadPoolExecutor executor;
+    /**
+     * 正在进行的同步请求和未关闭的HttpStream数
+     */
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    /**
+     * 替换此客户端的新客户端，不为null时新的请求都转给它
+     */
+    private volatile PooledHttpClient successor;
+
+    public PooledHttpClient(String name, HttpClientConfig config) {
+        this.name = name;
+        this.config = config;
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(config.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxPerRoute());
+        RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(config.getConnectTimeout()).setSocketTimeout(config.getSocketTimeout())
+                .setConnectionRequestTimeout(config.getConnectionRequestTimeout()).build();
+        HttpClientBuilder builder = HttpClients.custom().setConnectionManager(connectionManager).setDefaultRequestConfig(requestConfig);
+        long keepAlive = config.getKeepAlive();
+        if (keepAlive > 0) {
+            builder.setKeepAliveStrategy((response, context) -> {
+                long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                return duration > 0 && duration < keepAlive ? duration : keepAlive;
+            });
+            builder.evictExpiredConnections().evictIdleConnections(keepAlive, TimeUnit.MILLISECONDS);
+        } else {
+            builder.setConnectionReuseStrategy(NoConnectionReuseStrategy.INSTANCE);
+        }
+        if (config.getUserAgent() != null) {
+            builder.setUserAgent(config.getUserAgent());
+        }
+        client = builder.build();
+        int threads = config.getAsyncThreads();
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new PreNameThreadFactory("http-" + name));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public HttpClientConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * 连接池的当前状态：使用中、空闲、等待连接的请求数
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * 执行请求并读取完整的响应
+     */
+    public HttpResult execute(HttpUriRequest request) throws IOException {
+        PooledHttpClient target = acquire();
+        if (target != this) {
+            return target.execute(request);
+        }
+        try (CloseableHttpResponse response = client.execute(request)) {
+            HttpEntity entity = response.getEntity();
+            byte[] body = entity == null ? new byte[0] : EntityUtils.toByteArray(entity);
+            return new HttpResult(response.getStatusLine().getStatusCode(), HttpResult.headers(response), body);
+        } catch (IllegalStateException e) {
+            // 连接池已关闭
+            if (closed.get()) {
+                throw closedException(e);
+            }
+            throw e;
+        } finally {
+            release();
+        }
+    }
+
+    public HttpResult get(String url) throws IOException {
+        return execute(new HttpGet(url));
+    }
+
+    /**
+     * @param headers 请求头
+     */
+    public HttpResult get(String url, Map<String, String> headers) throws IOException {
+        return execute(withHeaders(new HttpGet(url), headers));
+    }
+
+    /**
+     * @param entity 请求体，可以为null
+     */
+    public HttpResult post(String url, HttpEntity entity) throws IOException {
+        HttpPost post = new HttpPost(url);
+        post.setEntity(entity);
+        return execute(post);
+    }
+
+    /**
+     * 执行请求，不读取响应体，响应体由调用方边读边接收。返回的HttpStream必须关闭
+     */
+    public HttpStream stream(HttpUriRequest request) throws IOException {
+        PooledHttpClient target = acquire();
+        if (target != this) {
+            return target.stream(request);
+        }
+        try {
+            return new HttpStream(client.execute(request), this::release);
+        } catch (IllegalStateException e) {
+            release();
+            if (closed.get()) {
+                throw closedException(e);
+            }
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            release();
+            throw e;
+        }
+    }
+
+    /**
+     * 在线程池中执行请求并读取完整的响应
+     */
+    public CompletableFuture<HttpResult> executeAsync(HttpUriRequest request) {
+        return submit(request, () -> execute(request));
+    }
+
+    public CompletableFuture<HttpResult> getAsync(String url) {
+        return executeAsync(new HttpGet(url));
+    }
+
+    /**
+     * @param entity 请求体，可以为null
+     */
+    public CompletableFuture<HttpResult> postAsync(String url, HttpEntity entity) {
+        HttpPost post = new HttpPost(url);
+        post.setEntity(entity);
+        return executeAsync(post);
+    }
+
+    /**
+     * 在线程池中执行请求，收到响应头后即完成，响应体由调用方边读边接收。返回的HttpStream必须关闭
+     */
+    public CompletableFuture<HttpStream> streamAsync(HttpUriRequest request) {
+        return submit(request, () -> stream(request));
+    }
+
+    private <T> CompletableFuture<T> submit(HttpUriRequest request, IoCallable<T> call) {
+        PooledHttpClient next = successor;
+        if (next != null) {
+            return next.submit(request, call);
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled()) {
+                request.abort();
+            }
+        });
+        try {
+            executor.execute(new Task<>(future, call));
+        } catch (RejectedExecutionException e) {
+            next = successor;
+            if (next != null) {
+                return next.submit(request, call);
+            }
+            future.completeExceptionally(closedException(e));
+        }
+        return future;
+    }
+
+    /**
+     * 开始一个请求：已被替换时返回新的客户端，已关闭时抛出IOException，否则计数并返回自己，请求结束后必须{@link #release()}
+     */
+    private PooledHttpClient acquire() throws IOException {
+        active.incrementAndGet();
+        PooledHttpClient next = successor;
+        if (next != null || closed.get()) {
+            release();
+            if (next == null) {
+                throw closedException(null);
+            }
+            return next;
+        }
+        return this;
+    }
+
+    private void release() {
+        if (active.decrementAndGet() == 0 && successor != null) {
+            shutdown();
+        }
+    }
+
+    /**
+     * 被同名的新客户端替换：之后的请求转给successor，还在排队的异步请求照常执行，正在进行的请求都结束后关闭连接池
+     */
+    void retire(PooledHttpClient successor) {
+        this.successor = successor;
+        executor.shutdown();
+        if (active.get() == 0) {
+            shutdown();
+        }
+    }
+
+    private void shutdown() {
+        if (closed.compareAndSet(false, true)) {
+            closeQuietly(client);
+        }
+    }
+
+    private IOException closedException(Exception cause) {
+        return new IOException("HTTP client " + name + " closed", cause);
+    }
+
+    /**
+     * 异步请求，关闭客户端时还在排队的任务以异常结束
+     */
+    private static class Task<T> implements Runnable {
+
+        private final CompletableFuture<T> future;
+        private final IoCallable<T> call;
+
+        Task(CompletableFuture<T> future, IoCallable<T> call) {
+            this.future = future;
+            this.call = call;
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                T result = call.call();
+                // 已经被取消时没有人会关闭结果
+                if (!future.complete(result) && result instanceof Closeable) {
+                    closeQuietly((Closeable) result);
+                }
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static HttpUriRequest withHeaders(HttpUriRequest request, Map<String, String> headers) {
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                request.setHeader(header.getKey(), header.getValue());
+            }
+        }
+        return request;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * 立即关闭连接池和线程池，未完成的请求以IOException结束
+     */
+    @Override
+    public void close() throws IOException {
+        closed.set(true);
+        for (Runnable task : executor.shutdownNow()) {
+            ((Task<?>) task).future.completeExceptionally(closedException(null));
+        }
+        client.close();
+    }
+
+    @Override
+    public String toString() {
+        return "PooledHttpClient[" + name + "]";
+    }
+}
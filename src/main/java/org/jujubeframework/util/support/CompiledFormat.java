@@ -0,0 +1,263 @@
+package org.jujubeframework.util.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 预编译的格式化模板
+ * <p>
+ * 模板只解析一次，拆分为文本片段和参数槽位，之后每次格式化只需按顺序拼接。支持两种占位符：
+ * <ul>
+ * <li>{0}、{1}这种带序号的形式，参数个数必须和占位符个数一致</li>
+ * <li>{}这种顺序形式，参数不足时用空字符串补齐</li>
+ * </ul>
+ * 两种形式同时出现时，以带序号的形式为准，{}按普通文本处理
+ *
+ * @author John Li
+ * @see org.jujubeframework.util.Texts#format(String, String...)
+ */
+public final class CompiledFormat {
+
+    /**
+     * 缓存的模板数量上限。超出后不再缓存，防止动态拼接的模板撑爆内存
+     */
+    private static final int MAX_CACHE_SIZE = 2048;
+    private static final ConcurrentMap<String, CompiledFormat> CACHE = new ConcurrentHashMap<>();
+
+    private static final int LITERAL = -1;
+
+    private final String pattern;
+    /**
+     * 文本片段，和slots一一对应。slots[i]为LITERAL时，literals[i]为文本
+     */
+    private final String[] literals;
+    private final int[] slots;
+    /**
+     * 占位符个数
+     */
+    private final int slotCount;
+    /**
+     * 是否是{0}这种带序号的形式
+     */
+    private final boolean indexed;
+    /**
+     * 所有文本片段的长度之和，用于预估结果长度
+     */
+    private final int literalLength;
+
+    private CompiledFormat(String pattern, String[] literals, int[] slots, int slotCount, boolean indexed) {
+        this.pattern = pattern;
+        this.literals = literals;
+        this.slots = slots;
+        this.slotCount = slotCount;
+        this.indexed = indexed;
+        int length = 0;
+        for (String literal : literals) {
+            if (literal != null) {
+                length += literal.length();
+            }
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * 获得编译后的模板（带缓存）
+     */
+    public static CompiledFormat compile(String pattern) {
+        CompiledFormat format = CACHE.get(pattern);
+        if (format == null) {
+            format = parse(pattern);
+            if (CACHE.size() < MAX_CACHE_SIZE) {
+                CACHE.putIfAbsent(pattern, format);
+            }
+        }
+        return format;
+    }
+
+    /**
+     * 格式化
+     *
+     * @param params 参数数组
+     * @throws IllegalArgumentException 带序号的形式下，参数个数跟占位符个数不对应
+     */
+    public String format(String... params) {
+        if (slotCount == 0) {
+            return pattern;
+        }
+        return formatTo(new StringBuilder(estimateLength(params)), params).toString();
+    }
+
+    /**
+     * 格式化，结果追加到builder中
+     *
+     * @return builder本身
+     */
+    public StringBuilder formatTo(StringBuilder builder, String... params) {
+        if (indexed && params.length != slotCount) {
+            throw new IllegalArgumentException("模式匹配跟参数个数不对应");
+        }
+        int seq = 0;
+        for (int i = 0; i < slots.length; i++) {
+            int slot = slots[i];
+            if (slot == LITERAL) {
+                builder.append(literals[i]);
+            } else if (indexed) {
+                String param = params[slot];
+                if (param != null) {
+                    builder.append(param);
+                }
+            } else {
+                if (seq < params.length) {
+                    builder.append(params[seq]);
+                }
+                seq++;
+            }
+        }
+        return builder;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    private int estimateLength(String[] params) {
+        int length = literalLength;
+        for (String param : params) {
+            if (param != null) {
+                length += param.length();
+            }
+        }
+        return length;
+    }
+
+    static CompiledFormat parse(String pattern) {
+        CompiledFormat format = parseIndexed(pattern);
+        if (format == null) {
+            format = parseSequential(pattern);
+        }
+        return format;
+    }
+
+    /**
+     * 解析{0}这种形式。没有此类占位符时返回null
+     */
+    private static CompiledFormat parseIndexed(String pattern) {
+        // 先找出所有占位符的位置：[start, end, index]
+        List<int[]> found = new ArrayList<>();
+        int length = pattern.length();
+        int from = 0;
+        while (from < length) {
+            int open = pattern.indexOf('{', from);
+            if (open < 0) {
+                break;
+            }
+            int end = open + 1;
+            while (end < length && isDigit(pattern.charAt(end))) {
+                end++;
+            }
+            if (end > open + 1 && end < length && pattern.charAt(end) == '}') {
+                found.add(new int[]{open, end + 1, parseIndex(pattern, open + 1, end)});
+                from = end + 1;
+            } else {
+                from = open + 1;
+            }
+        }
+        if (found.isEmpty()) {
+            return null;
+        }
+        int count = found.size();
+        List<String> literals = new ArrayList<>(count * 2 + 1);
+        List<Integer> slots = new ArrayList<>(count * 2 + 1);
+        StringBuilder text = new StringBuilder();
+        int last = 0;
+        for (int[] item : found) {
+            text.append(pattern, last, item[0]);
+            // 序号超出占位符个数，或有前导0的，都按普通文本处理
+            if (item[2] < 0 || item[2] >= count) {
+                text.append(pattern, item[0], item[1]);
+            } else {
+                flush(text, literals, slots);
+                literals.add(null);
+                slots.add(item[2]);
+            }
+            last = item[1];
+        }
+        text.append(pattern, last, length);
+        flush(text, literals, slots);
+        return new CompiledFormat(pattern, literals.toArray(new String[0]), toIntArray(slots), count, true);
+    }
+
+    /**
+     * 解析{}这种形式
+     */
+    private static CompiledFormat parseSequential(String pattern) {
+        String symbol = "{}";
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        int count = 0;
+        int last = 0;
+        int index;
+        while ((index = pattern.indexOf(symbol, last)) >= 0) {
+            if (index > last) {
+                literals.add(pattern.substring(last, index));
+                slots.add(LITERAL);
+            }
+            literals.add(null);
+            slots.add(count++);
+            last = index + symbol.length();
+        }
+        if (last < pattern.length()) {
+            literals.add(pattern.substring(last));
+            slots.add(LITERAL);
+        }
+        return new CompiledFormat(pattern, literals.toArray(new String[0]), toIntArray(slots), count, false);
+    }
+
+    private static void flush(StringBuilder text, List<String> literals, List<Integer> slots) {
+        if (text.length() > 0) {
+            literals.add(text.toString());
+            slots.add(LITERAL);
+            text.setLength(0);
+        }
+    }
+
+    /**
+     * 解析序号。有前导0或者溢出时返回-1
+     */
+    private static int parseIndex(String pattern, int start, int end) {
+        if (end - start > 1 && pattern.charAt(start) == '0') {
+            return -1;
+        }
+        long index = 0;
+        for (int i = start; i < end; i++) {
+            index = index * 10 + (pattern.charAt(i) - '0');
+            if (index > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        return (int) index;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int[] toIntArray(List<Integer> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -0,0 +1,122 @@
+package org.jujubeframework.util.support;
+
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * DateTimeFormatter是不可变、线程安全的，按SimpleDateFormat风格的pattern缓存起来复用
+ * <p>
+ * 只有含义和SimpleDateFormat完全一致的pattern才会被转换（y、M、d、H、m、s、SSS及普通分隔符），
+ * 其他pattern返回null，调用方应退回SimpleDateFormat处理，以保持原有的解析结果
+ *
+ * @author John Li
+ */
+public final class DateTimeFormatterHolder {
+    private static final int MAX_CACHE_SIZE = 512;
+    private static final ConcurrentMap<String, DateTimeFormatter> FORMATTERS = new ConcurrentHashMap<>();
+    /**
+     * 不能转换的pattern的占位符（ConcurrentHashMap不能存null）
+     */
+    private static final DateTimeFormatter UNSUPPORTED = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private DateTimeFormatterHolder() {
+    }
+
+    /**
+     * 获得pattern对应的formatter，不能安全转换时返回null
+     */
+    public static DateTimeFormatter getFormatter(String pattern) {
+        DateTimeFormatter formatter = FORMATTERS.get(pattern);
+        if (formatter == null) {
+            String converted = convert(pattern);
+            formatter = converted == null ? UNSUPPORTED : DateTimeFormatter.ofPattern(converted).withResolverStyle(ResolverStyle.STRICT);
+            if (FORMATTERS.size() < MAX_CACHE_SIZE) {
+                FORMATTERS.putIfAbsent(pattern, formatter);
+            }
+        }
+        return formatter == UNSUPPORTED ? null : formatter;
+    }
+
+    /**
+     * 把SimpleDateFormat的pattern转换为DateTimeFormatter的pattern。
+     * y转为u，这样STRICT模式下不需要纪元字段；非法日期（如2月30日）会解析失败，交由宽松的SimpleDateFormat处理
+     */
+    static String convert(String pattern) {
+        StringBuilder result = new StringBuilder(pattern.length());
+        boolean inQuote = false;
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                inQuote = !inQuote;
+                result.append(c);
+                i++;
+                continue;
+            }
+            if (inQuote) {
+                result.append(c);
+                i++;
+                continue;
+            }
+            int run = 1;
+            while (i + run < pattern.length() && pattern.charAt(i + run) == c) {
+                run++;
+            }
+            switch (c) {
+                case 'y':
+                    // yy在两者中的世纪处理不同
+                    if (run == 2) {
+                        return null;
+                    }
+                    repeat(result, 'u', run);
+                    break;
+                case 'M':
+                    // MMM以上是月份文本，和locale相关
+                    if (run > 2) {
+                        return null;
+                    }
+                    repeat(result, c, run);
+                    break;
+                case 'S':
+                    // SimpleDateFormat中S是毫秒数，DateTimeFormatter中是小数，只有SSS时含义相同
+                    if (run != 3) {
+                        return null;
+                    }
+                    repeat(result, c, run);
+                    break;
+                case 'd':
+                case 'H':
+                case 'm':
+                case 's':
+                    if (run > 2) {
+                        return null;
+                    }
+                    repeat(result, c, run);
+                    break;
+                case '[':
+                case ']':
+                case '{':
+                case '}':
+                case '#':
+                    // DateTimeFormatter的保留字符
+                    return null;
+                default:
+                    if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                        return null;
+                    }
+                    repeat(result, c, run);
+                    break;
+            }
+            i += run;
+        }
+        return inQuote ? null : result.toString();
+    }
+
+    private static void repeat(StringBuilder sb, char c, int count) {
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.jujubeframework.util.support;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按pattern缓存DecimalFormat
+ * <p>
+ * DecimalFormat不是线程安全的，而每次new并applyPattern的代价较高。这里每个pattern只解析一次作为原型，
+ * 每个线程持有自己的克隆，取用时不需要加锁。取得的实例只能在当前线程中立即使用，不能修改其设置，也不能保存下来跨线程使用。
+ * 和new DecimalFormat(pattern)一样使用默认Locale的数字符号，默认Locale变化后重新创建
+ *
+ * @author John Li
+ */
+public final class DecimalFormatPool {
+
+    /**
+     * 原型和每个线程缓存的pattern数量上限，pattern可能来自外部输入，缓存必须有上限
+     */
+    private static final int MAX_PATTERNS = 256;
+    private static final ConcurrentMap<Locale, ConcurrentMap<String, DecimalFormat>> PROTOTYPES = new ConcurrentHashMap<>();
+    private static final ThreadLocal<LocalFormats> LOCAL_FORMATS = ThreadLocal.withInitial(LocalFormats::new);
+
+    private DecimalFormatPool() {
+    }
+
+    /**
+     * 获得当前线程的pattern对应的DecimalFormat
+     *
+     * @throws IllegalArgumentException pattern不合法
+     */
+    public static DecimalFormat get(String pattern) {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        LocalFormats formats = LOCAL_FORMATS.get();
+        if (formats.locale != locale) {
+            formats.locale = locale;
+            formats.formats.clear();
+        }
+        Map<String, DecimalFormat> local = formats.formats;
+        DecimalFormat format = local.get(pattern);
+        if (format == null) {
+            format = (DecimalFormat) prototype(pattern, locale).clone();
+            if (local.size() >= MAX_PATTERNS) {
+                local.clear();
+            }
+            local.put(pattern, format);
+        }
+        return format;
+    }
+
+    /**
+     * 按pattern格式化数字
+     */
+    public static String format(Number number, String pattern) {
+        return get(pattern).format(number);
+    }
+
+    private static DecimalFormat prototype(String pattern, Locale locale) {
+        ConcurrentMap<String, DecimalFormat> prototypes = PROTOTYPES.computeIfAbsent(locale, key -> new ConcurrentHashMap<>());
+        DecimalFormat prototype = prototypes.get(pattern);
+        if (prototype == null) {
+            prototype = new DecimalFormat(pattern, DecimalFormatSymbols.getInstance(locale));
+            if (prototypes.size() < MAX_PATTERNS) {
+                prototypes.putIfAbsent(pattern, prototype);
+            }
+        }
+        return prototype;
+    }
+
+    /**
+     * 当前线程的DecimalFormat，属于同一个Locale
+     */
+    private static final class LocalFormats {
+        private Locale locale;
+        private final Map<String, DecimalFormat> formats = new HashMap<>();
+    }
+}
@@ -0,0 +1,197 @@
+package org.jujubeframework.util.support;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * 以yyyy-MM-dd HH:mm:ss格式高速格式化epoch毫秒值
+ * <p>
+ * 缓存当天的日期前缀（yyyy-MM-dd ），在同一天且时区偏移不变的区间内，时分秒直接用算术求出，不创建任何Date/Calendar对象；
+ * 同一秒内重复格式化时直接返回上次的结果。缓存都是不可变对象，多线程共享不需要加锁
+ *
+ * @author John Li
+ */
+public final class EpochMillisFormatter {
+
+    /**
+     * 格式化结果的长度
+     */
+    public static final int LENGTH = 19;
+
+    private static final long MILLIS_PER_DAY = 86400000L;
+    /**
+     * 1900-01-02T00:00:00Z。更早的时间TimeZone和java.time的历史时区数据（地方平时等）不一致，不在快速路径处理
+     */
+    private static final long MIN_MILLIS = -2208902400000L;
+    /**
+     * 9999-12-30T00:00:00Z。再往后任何时区下年份都可能超过4位，不在快速路径处理
+     */
+    private static final long MAX_MILLIS = 253402128000000L;
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private volatile Day day;
+    private volatile Second second;
+
+    public EpochMillisFormatter(ZoneId zone) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+    }
+
+    /**
+     * 是否能用快速路径格式化。超出范围的值调用方应使用常规的格式化方式
+     */
+    public static boolean isSupported(long millis) {
+        return millis >= MIN_MILLIS && millis < MAX_MILLIS;
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * 格式化为字符串。同一秒内重复调用返回同一个实例
+     */
+    public String format(long millis) {
+        long epochSecond = Math.floorDiv(millis, 1000L);
+        Second cached = second;
+        if (cached != null && cached.epochSecond == epochSecond) {
+            return cached.text;
+        }
+        char[] buf = new char[LENGTH];
+        formatTo(millis, buf, 0);
+        String text = new String(buf);
+        second = new Second(epochSecond, text);
+        return text;
+    }
+
+    /**
+     * 格式化到char数组中
+     *
+     * @param buf    目标数组，从offset开始至少要有{@link #LENGTH}个位置
+     * @param offset 开始位置
+     * @return 写入的字符数
+     */
+    public int formatTo(long millis, char[] buf, int offset) {
+        Day current = dayOf(millis);
+        System.arraycopy(current.prefix, 0, buf, offset, current.prefix.length);
+        int secondOfDay = (int) ((Math.floorDiv(millis, 1000L) + current.offsetSeconds) - current.localEpochDay * 86400L);
+        int pos = offset + current.prefix.length;
+        pos = write2(buf, pos, secondOfDay / 3600);
+        buf[pos++] = ':';
+        pos = write2(buf, pos, secondOfDay / 60 % 60);
+        buf[pos++] = ':';
+        write2(buf, pos, secondOfDay % 60);
+        return LENGTH;
+    }
+
+    /**
+     * 格式化并追加到builder中
+     *
+     * @return builder本身
+     */
+    public StringBuilder formatTo(long millis, StringBuilder builder) {
+        Second cached = second;
+        if (cached != null && cached.epochSecond == Math.floorDiv(millis, 1000L)) {
+            return builder.append(cached.text);
+        }
+        char[] buf = new char[LENGTH];
+        formatTo(millis, buf, 0);
+        return builder.append(buf);
+    }
+
+    /**
+     * 格式化并追加到appendable中（例如Writer）
+     */
+    public void formatTo(long millis, Appendable appendable) throws IOException {
+        appendable.append(format(millis));
+    }
+
+    private Day dayOf(long millis) {
+        Day current = day;
+        if (current == null || millis < current.from || millis >= current.to) {
+            current = computeDay(millis);
+            day = current;
+        }
+        return current;
+    }
+
+    /**
+     * 计算millis所在的当地日期，以及在该日期内偏移不变的区间
+     */
+    private Day computeDay(long millis) {
+        Instant instant = Instant.ofEpochMilli(millis);
+        ZoneOffset offset = rules.getOffset(instant);
+        int offsetSeconds = offset.getTotalSeconds();
+        long localEpochDay = Math.floorDiv(Math.floorDiv(millis, 1000L) + offsetSeconds, 86400L);
+        long dayStart = localEpochDay * MILLIS_PER_DAY - offsetSeconds * 1000L;
+        long from = dayStart;
+        long to = dayStart + MILLIS_PER_DAY;
+        // 区间不能跨过时区偏移的变化（如夏令时切换）
+        ZoneOffsetTransition previous = rules.previousTransition(instant.plusMillis(1));
+        if (previous != null) {
+            from = Math.max(from, previous.getInstant().toEpochMilli());
+        }
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+        if (next != null) {
+            to = Math.min(to, next.getInstant().toEpochMilli());
+        }
+
+        LocalDate date = LocalDate.ofEpochDay(localEpochDay);
+        char[] prefix = new char[11];
+        int year = date.getYear();
+        prefix[0] = (char) ('0' + year / 1000);
+        prefix[1] = (char) ('0' + year / 100 % 10);
+        prefix[2] = (char) ('0' + year / 10 % 10);
+        prefix[3] = (char) ('0' + year % 10);
+        prefix[4] = '-';
+        write2(prefix, 5, date.getMonthValue());
+        prefix[7] = '-';
+        write2(prefix, 8, date.getDayOfMonth());
+        prefix[10] = ' ';
+        return new Day(from, to, offsetSeconds, localEpochDay, prefix);
+    }
+
+    private static int write2(char[] buf, int pos, int value) {
+        buf[pos] = (char) ('0' + value / 10);
+        buf[pos + 1] = (char) ('0' + value % 10);
+        return pos + 2;
+    }
+
+    /**
+     * 缓存的日期信息：[from, to)区间内当地日期和时区偏移都不变
+     */
+    private static final class Day {
+        final long from;
+        final long to;
+        final int offsetSeconds;
+        final long localEpochDay;
+        final char[] prefix;
+
+        Day(long from, long to, int offsetSeconds, long localEpochDay, char[] prefix) {
+            this.from = from;
+            this.to = to;
+            this.offsetSeconds = offsetSeconds;
+            this.localEpochDay = localEpochDay;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * 缓存的上一秒的格式化结果
+     */
+    private static final class Second {
+        final long epochSecond;
+        final String text;
+
+        Second(long epochSecond, String text) {
+            this.epochSecond = epochSecond;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package org.jujubeframework.util.support;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 定点小数运算（金额计算）
+ * <p>
+ * 小数用“未缩放值 + 小数位数”表示，例如12.34表示为(1234, 2)，全部运算都在long上完成，舍入方式为ROUND_HALF_UP，和BigDecimal的结果完全一致。
+ * 溢出时抛出ArithmeticException，调用方可以据此退回BigDecimal计算
+ *
+ * @author John Li
+ */
+public final class FixedDecimal {
+
+    /**
+     * 支持的最大小数位数
+     */
+    public static final int MAX_SCALE = 18;
+
+    private static final long[] POW10 = new long[MAX_SCALE + 1];
+    private static final double[] POW10_DOUBLE = new double[MAX_SCALE + 1];
+    /**
+     * 2^53，超过它的整数double不能精确表示
+     */
+    private static final double EXACT_DOUBLE_LIMIT = 9007199254740992D;
+    /**
+     * double精确小数位数的最大探测位数
+     */
+    private static final int MAX_DOUBLE_SCALE = 15;
+
+    static {
+        long p = 1;
+        for (int i = 0; i <= MAX_SCALE; i++) {
+            POW10[i] = p;
+            POW10_DOUBLE[i] = p;
+            p *= 10;
+        }
+    }
+
+    private FixedDecimal() {
+    }
+
+    // ----------------------------------------------- 转换
+
+    /**
+     * 获得数字字符串的小数位数。只支持[+-]digits[.digits]的形式且有效数字不超过18位，否则返回-1
+     */
+    public static int scaleOf(String value) {
+        int length = value.length();
+        int i = 0;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            i++;
+        }
+        int digits = 0;
+        int scale = -1;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return -1;
+            }
+        }
+        if (digits == 0 || digits > MAX_SCALE) {
+            return -1;
+        }
+        return scale < 0 ? 0 : scale;
+    }
+
+    /**
+     * 把数字字符串转为指定小数位数的未缩放值。scale不能小于{@link #scaleOf(String)}
+     */
+    public static long unscaled(String value, int scale) {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (value.charAt(0) == '-' || value.charAt(0) == '+') {
+            negative = value.charAt(0) == '-';
+            i++;
+        }
+        long result = 0;
+        int fraction = -1;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '.') {
+                fraction = 0;
+                continue;
+            }
+            result = result * 10 + (c - '0');
+            if (fraction >= 0) {
+                fraction++;
+            }
+        }
+        result = rescale(result, Math.max(fraction, 0), scale);
+        return negative ? -result : result;
+    }
+
+    /**
+     * 获得数字的精确小数位数（和String.valueOf(number)表示的值一致）。
+     * 只支持Integer、Long、Short、Byte和能用不超过15位小数精确表示的Double，否则返回-1
+     */
+    public static int scaleOf(Number number) {
+        if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+            return 0;
+        }
+        if (number instanceof Double) {
+            return scaleOf(number.doubleValue());
+        }
+        return -1;
+    }
+
+    /**
+     * 把数字转为指定小数位数的未缩放值。scale不能小于{@link #scaleOf(Number)}
+     */
+    public static long unscaled(Number number, int scale) {
+        if (number instanceof Double) {
+            double value = number.doubleValue();
+            int exact = scaleOf(value);
+            return rescale((long) Math.rint(value * POW10_DOUBLE[exact]), exact, scale);
+        }
+        return rescale(number.longValue(), 0, scale);
+    }
+
+    /**
+     * 获得double的精确小数位数：最小的k，使得value正好是唯一的某个整数n除以10^k后舍入得到的double。找不到时返回-1
+     */
+    public static int scaleOf(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return -1;
+        }
+        for (int k = 0; k <= MAX_DOUBLE_SCALE; k++) {
+            double x = value * POW10_DOUBLE[k];
+            if (Math.abs(x) >= EXACT_DOUBLE_LIMIT) {
+                return -1;
+            }
+            double n = Math.rint(x);
+            if (n / POW10_DOUBLE[k] == value) {
+                // 相邻的整数也能得到同一个double时，无法确定String.valueOf给出的是哪一个
+                if ((n - 1) / POW10_DOUBLE[k] == value || (n + 1) / POW10_DOUBLE[k] == value) {
+                    return -1;
+                }
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 把double按ROUND_HALF_UP转为指定小数位数的未缩放值，和new BigDecimal(String.valueOf(value)).setScale(scale, HALF_UP)一致
+     */
+    public static long toUnscaled(double value, int scale) {
+        int exact = scaleOf(value);
+        if (exact >= 0) {
+            return rescale((long) Math.rint(value * POW10_DOUBLE[exact]), exact, scale);
+        }
+        return BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * 未缩放值转为double，和Double.parseDouble(toPlainString(unscaled, scale))一致
+     */
+    public static double toDouble(long unscaled, int scale) {
+        if (Math.abs(unscaled) < EXACT_DOUBLE_LIMIT) {
+            return unscaled / POW10_DOUBLE[scale];
+        }
+        return Double.parseDouble(toPlainString(unscaled, scale));
+    }
+
+    /**
+     * 未缩放值转为非科学计数法的字符串，和BigDecimal.toPlainString()一致，例如(1230, 3)为1.230
+     */
+    public static String toPlainString(long unscaled, int scale) {
+        if (scale == 0) {
+            return Long.toString(unscaled);
+        }
+        if (unscaled == Long.MIN_VALUE) {
+            return BigDecimal.valueOf(unscaled, scale).toPlainString();
+        }
+        StringBuilder sb = new StringBuilder(21 + scale);
+        if (unscaled < 0) {
+            sb.append('-');
+        }
+        String digits = Long.toString(Math.abs(unscaled));
+        int integerLength = digits.length() - scale;
+        if (integerLength > 0) {
+            sb.append(digits, 0, integerLength).append('.').append(digits, integerLength, digits.length());
+        } else {
+            sb.append("0.");
+            for (int i = integerLength; i < 0; i++) {
+                sb.append('0');
+            }
+            sb.append(digits);
+        }
+        return sb.toString();
+    }
+
+    // ----------------------------------------------- 运算
+
+    /**
+     * 改变小数位数，位数减少时按ROUND_HALF_UP舍入
+     */
+    public static long rescale(long unscaled, int fromScale, int toScale) {
+        if (toScale >= fromScale) {
+            return Math.multiplyExact(unscaled, pow10(toScale - fromScale));
+        }
+        long p = pow10(fromScale - toScale);
+        long q = unscaled / p;
+        long r = unscaled % p;
+        if (Math.abs(r) * 2 >= p) {
+            q += unscaled < 0 ? -1 : 1;
+        }
+        return q;
+    }
+
+    /**
+     * 加法，结果按ROUND_HALF_UP保留scale位小数
+     */
+    public static long add(long a, int aScale, long b, int bScale, int scale) {
+        int common = Math.max(aScale, bScale);
+        long sum = Math.addExact(rescale(a, aScale, common), rescale(b, bScale, common));
+        return rescale(sum, common, scale);
+    }
+
+    /**
+     * 减法，结果按ROUND_HALF_UP保留scale位小数
+     */
+    public static long subtract(long a, int aScale, long b, int bScale, int scale) {
+        int common = Math.max(aScale, bScale);
+        long difference = Math.subtractExact(rescale(a, aScale, common), rescale(b, bScale, common));
+        return rescale(difference, common, scale);
+    }
+
+    /**
+     * 乘法，结果按ROUND_HALF_UP保留scale位小数
+     */
+    public static long multiply(long a, int aScale, long b, int bScale, int scale) {
+        return rescale(Math.multiplyExact(a, b), aScale + bScale, scale);
+    }
+
+    /**
+     * 除法，结果按ROUND_HALF_UP保留scale位小数
+     *
+     * @throws ArithmeticException 除数为0或溢出
+     */
+    public static long divide(long a, int aScale, long b, int bScale, int scale) {
+        // a/10^as ÷ b/10^bs = a*10^(bs+s-as) / b / 10^s
+        int shift = bScale + scale - aScale;
+        long dividend = a;
+        long divisor = b;
+        if (shift >= 0) {
+            dividend = Math.multiplyExact(a, pow10(shift));
+        } else {
+            divisor = Math.multiplyExact(b, pow10(-shift));
+        }
+        return divideHalfUp(dividend, divisor);
+    }
+
+    /**
+     * 比较大小。对齐小数位数溢出时按BigDecimal比较，因此不会抛出异常
+     */
+    public static int compare(long a, int aScale, long b, int bScale) {
+        int common = Math.max(aScale, bScale);
+        try {
+            return Long.compare(rescale(a, aScale, common), rescale(b, bScale, common));
+        } catch (ArithmeticException e) {
+            return BigDecimal.valueOf(a, aScale).compareTo(BigDecimal.valueOf(b, bScale));
+        }
+    }
+
+    // ----------------------------------------------- 批量运算
+
+    /**
+     * 把一列double转为指定小数位数的未缩放值
+     */
+    public static long[] toUnscaled(double[] values, int scale) {
+        long[] result = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = toUnscaled(values[i], scale);
+        }
+        return result;
+    }
+
+    /**
+     * 把一列未缩放值转为double
+     */
+    public static double[] toDouble(long[] values, int scale) {
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = toDouble(values[i], scale);
+        }
+        return result;
+    }
+
+    /**
+     * 求和（小数位数不变）
+     *
+     * @throws ArithmeticException 溢出
+     */
+    public static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum = Math.addExact(sum, value);
+        }
+        return sum;
+    }
+
+    /**
+     * 逐个相加：out[i] = a[i] + b[i]，三者小数位数相同。out可以是a或b本身
+     */
+    public static void add(long[] a, long[] b, long[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = Math.addExact(a[i], b[i]);
+        }
+    }
+
+    /**
+     * 逐个相乘：out[i] = a[i] * b[i]，三者小数位数都为scale，按ROUND_HALF_UP舍入。out可以是a或b本身
+     */
+    public static void multiply(long[] a, long[] b, int scale, long[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = multiply(a[i], scale, b[i], scale, scale);
+        }
+    }
+
+    /**
+     * 金额乘数量后求和，例如购物车总价。结果和amounts的小数位数相同
+     *
+     * @param amounts    金额（未缩放值）
+     * @param quantities 数量（整数）
+     */
+    public static long sumProduct(long[] amounts, long[] quantities) {
+        long sum = 0;
+        for (int i = 0; i < amounts.length; i++) {
+            sum = Math.addExact(sum, Math.multiplyExact(amounts[i], quantities[i]));
+        }
+        return sum;
+    }
+
+    private static long pow10(int n) {
+        if (n > MAX_SCALE) {
+            throw new ArithmeticException("scale overflow");
+        }
+        return POW10[n];
+    }
+
+    private static long divideHalfUp(long dividend, long divisor) {
+        if (dividend == Long.MIN_VALUE || divisor == Long.MIN_VALUE) {
+            throw new ArithmeticException("long overflow");
+        }
+        long q = dividend / divisor;
+        long r = Math.abs(dividend % divisor);
+        long d = Math.abs(divisor);
+        if (r >= d - r) {
+            q += (dividend < 0) == (divisor < 0) ? 1 : -1;
+        }
+        return q;
+    }
+}
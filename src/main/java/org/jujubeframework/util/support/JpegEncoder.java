@@ -0,0 +1,176 @@
+package org.jujubeframework.util.support;
+
+import org.apache.commons.lang3.Validate;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * JPEG编码器
+ * <p>
+ * 编码参数（质量、渐进式、优化的Huffman表）在创建时确定，实例不可变、线程安全。ImageWriter用完后reset并放回池中复用，
+ * 池满或编码出错时dispose释放native资源。直接写入OutputStream，不经过中间的字节数组，也不使用ImageIO的磁盘缓存
+ *
+ * <pre>
+ *  JpegEncoder.DEFAULT.encode(image, response.getOutputStream());
+ *  new JpegEncoder(0.7f, true, true).encode(image, file);
+ * </pre>
+ *
+ * @author John Li
+ */
+public final class JpegEncoder {
+
+    /**
+     * 每个编码器缓存的ImageWriter数量上限（必须在DEFAULT之前初始化）
+     */
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * 默认的编码器：质量0.85，非渐进式，优化Huffman表。和质量1.0相比，文件通常只有其1/3左右，肉眼几乎看不出差别
+     */
+    public static final JpegEncoder DEFAULT = new JpegEncoder(0.85f, false, true);
+
+    private final float quality;
+    private final boolean progressive;
+    private final boolean optimizeHuffman;
+    private final BlockingQueue<ImageWriter> writers = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    /**
+     * @param quality         质量，0 ~ 1，1.0最高
+     * @param progressive     是否生成渐进式JPEG（网页上由模糊到清晰逐步显示）
+     * @param optimizeHuffman 是否为每张图片计算最优的Huffman表，文件更小，编码稍慢
+     */
+    public JpegEncoder(float quality, boolean progressive, boolean optimizeHuffman) {
+        Validate.isTrue(quality >= 0 && quality <= 1, "quality必须在0 ~ 1之间");
+        this.quality = quality;
+        this.progressive = progressive;
+        this.optimizeHuffman = optimizeHuffman;
+    }
+
+    public float getQuality() {
+        return quality;
+    }
+
+    public boolean isProgressive() {
+        return progressive;
+    }
+
+    public boolean isOptimizeHuffman() {
+        return optimizeHuffman;
+    }
+
+    /**
+     * 编码并写入out。out不会被关闭
+     */
+    public void encode(RenderedImage image, OutputStream out) throws IOException {
+        RenderedImage opaque = withoutAlpha(image);
+        ImageWriter writer = borrow();
+        boolean reusable = false;
+        try (ImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(opaque, null, null), createParam(writer));
+            reusable = true;
+        } finally {
+            release(writer, reusable);
+        }
+    }
+
+    /**
+     * 编码并写入文件
+     */
+    public void encode(RenderedImage image, File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            encode(image, out);
+        }
+    }
+
+    /**
+     * 编码为字节数组
+     */
+    public byte[] toByteArray(RenderedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encode(image, out);
+        return out.toByteArray();
+    }
+
+    private ImageWriteParam createParam(ImageWriter writer) {
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        if (param.canWriteProgressive()) {
+            param.setProgressiveMode(progressive ? ImageWriteParam.MODE_DEFAULT : ImageWriteParam.MODE_DISABLED);
+        }
+        if (param instanceof JPEGImageWriteParam) {
+            ((JPEGImageWriteParam) param).setOptimizeHuffmanTables(optimizeHuffman);
+        }
+        return param;
+    }
+
+    private ImageWriter borrow() throws IIOException {
+        ImageWriter writer = writers.poll();
+        if (writer != null) {
+            return writer;
+        }
+        Iterator<ImageWriter> iterator = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!iterator.hasNext()) {
+            throw new IIOException("No JPEG ImageWriter available");
+        }
+        return iterator.next();
+    }
+
+    /**
+     * 正常完成的writer放回池中；出错的或池已满时释放
+     */
+    private void release(ImageWriter writer, boolean reusable) {
+        if (reusable) {
+            writer.reset();
+            if (writers.offer(writer)) {
+                return;
+            }
+        }
+        writer.dispose();
+    }
+
+    /**
+     * JPEG不支持透明通道，带透明通道的图像先画到白色背景上
+     */
+    private static RenderedImage withoutAlpha(RenderedImage image) {
+        if (!image.getColorModel().hasAlpha()) {
+            return image;
+        }
+        BufferedImage source = image instanceof BufferedImage ? (BufferedImage) image : null;
+        BufferedImage result = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = result.createGraphics();
+        try {
+            g2.setColor(Color.WHITE);
+            g2.fillRect(0, 0, image.getWidth(), image.getHeight());
+            if (source != null) {
+                g2.drawImage(source, 0, 0, null);
+            } else {
+                g2.drawRenderedImage(image, null);
+            }
+        } finally {
+            g2.dispose();
+        }
+        return result;
+    }
+}
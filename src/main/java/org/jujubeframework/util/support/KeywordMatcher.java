@@ -0,0 +1,375 @@
+package org.jujubeframework.util.support;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多关键字匹配器（Aho–Corasick自动机）
+ * <p>
+ * 关键字集合只编译一次，之后对文本的查找、高亮、敏感词过滤都只需扫描一遍文本，和关键字个数无关。
+ * 多个关键字重叠时，查找和高亮按“最左最长”的原则选取互不重叠的匹配；敏感词过滤则屏蔽所有命中的字符。<br>
+ * 编译后的对象是只读的，可以在多线程中共享
+ *
+ * <pre>
+ *     KeywordMatcher matcher = KeywordMatcher.compile(Arrays.asList("java", "jvm"));
+ *     matcher.highlight("Java on JVM", "&lt;em&gt;", "&lt;/em&gt;") = "&lt;em&gt;Java&lt;/em&gt; on &lt;em&gt;JVM&lt;/em&gt;"
+ *     matcher.replace("java and jvm", '*') = "**** and ***"
+ * </pre>
+ *
+ * @author John Li
+ */
+public final class KeywordMatcher {
+
+    private static final int ROOT = 0;
+
+    private final boolean ignoreCase;
+    private final String[] keywords;
+    /**
+     * 每个状态的转移：keys[offsets[s] .. offsets[s+1])有序存放转移字符，targets中对应转移的目标状态
+     */
+    private final int[] offsets;
+    private final char[] keys;
+    private final int[] targets;
+    private final int[] fail;
+    /**
+     * 以该状态结尾的关键字下标，没有则为-1
+     */
+    private final int[] word;
+    /**
+     * 该状态（含失败链）能输出的最长关键字长度，没有则为0
+     */
+    private final int[] longest;
+    /**
+     * 失败链上下一个能输出关键字的状态，没有则为-1
+     */
+    private final int[] dict;
+    private final int[] depth;
+
+    private KeywordMatcher(boolean ignoreCase, String[] keywords, int[] offsets, char[] keys, int[] targets, int[] fail, int[] word, int[] longest, int[] dict, int[] depth) {
+        this.ignoreCase = ignoreCase;
+        this.keywords = keywords;
+        this.offsets = offsets;
+        this.keys = keys;
+        this.targets = targets;
+        this.fail = fail;
+        this.word = word;
+        this.longest = longest;
+        this.dict = dict;
+        this.depth = depth;
+    }
+
+    /**
+     * 编译关键字集合（忽略大小写）
+     */
+    public static KeywordMatcher compile(Collection<String> keywords) {
+        return compile(keywords, true);
+    }
+
+    /**
+     * 编译关键字集合。null和空字符串会被忽略
+     *
+     * @param keywords   关键字
+     * @param ignoreCase 是否忽略大小写
+     */
+    public static KeywordMatcher compile(Collection<String> keywords, boolean ignoreCase) {
+        // 先构建字典树
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<Integer> words = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        List<String> accepted = new ArrayList<>();
+        children.add(new HashMap<>());
+        words.add(-1);
+        depths.add(0);
+        for (String keyword : keywords) {
+            if (keyword == null || keyword.isEmpty()) {
+                continue;
+            }
+            int state = ROOT;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = ignoreCase ? fold(keyword.charAt(i)) : keyword.charAt(i);
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.get(state).put(c, next);
+                    children.add(new HashMap<>());
+                    words.add(-1);
+                    depths.add(depths.get(state) + 1);
+                }
+                state = next;
+            }
+            // 重复的关键字只保留第一个
+            if (words.get(state) < 0) {
+                words.set(state, accepted.size());
+                accepted.add(keyword);
+            }
+        }
+
+        // 压缩为数组
+        int size = children.size();
+        int[] offsets = new int[size + 1];
+        for (int s = 0; s < size; s++) {
+            offsets[s + 1] = offsets[s] + children.get(s).size();
+        }
+        char[] keys = new char[offsets[size]];
+        int[] targets = new int[offsets[size]];
+        for (int s = 0; s < size; s++) {
+            Character[] sorted = children.get(s).keySet().toArray(new Character[0]);
+            Arrays.sort(sorted);
+            for (int i = 0; i < sorted.length; i++) {
+                keys[offsets[s] + i] = sorted[i];
+                targets[offsets[s] + i] = children.get(s).get(sorted[i]);
+            }
+        }
+        int[] word = new int[size];
+        int[] depth = new int[size];
+        for (int s = 0; s < size; s++) {
+            word[s] = words.get(s);
+            depth[s] = depths.get(s);
+        }
+
+        // 广度优先计算失败链
+        int[] fail = new int[size];
+        int[] longest = new int[size];
+        int[] dict = new int[size];
+        dict[ROOT] = -1;
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int i = offsets[ROOT]; i < offsets[ROOT + 1]; i++) {
+            int child = targets[i];
+            fail[child] = ROOT;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            int f = fail[s];
+            dict[s] = word[f] >= 0 ? f : dict[f];
+            longest[s] = word[s] >= 0 ? depth[s] : longest[f];
+            for (int i = offsets[s]; i < offsets[s + 1]; i++) {
+                char c = keys[i];
+                int child = targets[i];
+                int state = fail[s];
+                int next;
+                while ((next = transition(offsets, keys, targets, state, c)) < 0 && state != ROOT) {
+                    state = fail[state];
+                }
+                fail[child] = next < 0 ? ROOT : next;
+                queue.add(child);
+            }
+        }
+        return new KeywordMatcher(ignoreCase, accepted.toArray(new String[0]), offsets, keys, targets, fail, word, longest, dict, depth);
+    }
+
+    /**
+     * 文本中是否包含任意一个关键字
+     */
+    public boolean containsAny(CharSequence text) {
+        if (keywords.length == 0 || text == null) {
+            return false;
+        }
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, text.charAt(i));
+            if (longest[state] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 查找文本中所有的关键字（最左最长，互不重叠）
+     */
+    public List<Match> findAll(CharSequence text) {
+        int[] lengths = longestAtStart(text);
+        if (lengths == null) {
+            return Collections.emptyList();
+        }
+        List<Match> matches = new ArrayList<>();
+        int i = 0;
+        while (i < lengths.length) {
+            int length = lengths[i];
+            if (length > 0) {
+                matches.add(new Match(i, i + length, text.subSequence(i, i + length).toString()));
+                i += length;
+            } else {
+                i++;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * 高亮显示所有关键字，关键字保持原文本中的大小写
+     *
+     * @param text        原文本
+     * @param styleBefore 样式前，例如&lt;font class='red'&gt;
+     * @param styleAfter  样式后，例如&lt;/font&gt;
+     */
+    public String highlight(String text, String styleBefore, String styleAfter) {
+        int[] lengths = longestAtStart(text);
+        if (lengths == null) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length() + (styleBefore.length() + styleAfter.length()) * 8);
+        int last = 0;
+        int i = 0;
+        while (i < lengths.length) {
+            int length = lengths[i];
+            if (length > 0) {
+                sb.append(text, last, i).append(styleBefore).append(text, i, i + length).append(styleAfter);
+                i += length;
+                last = i;
+            } else {
+                i++;
+            }
+        }
+        return sb.append(text, last, text.length()).toString();
+    }
+
+    /**
+     * 敏感词过滤：命中关键字的每个字符都替换为mask
+     * <p>
+     * 没有命中时返回原文本
+     */
+    public String replace(String text, char mask) {
+        int[] lengths = longestAtStart(text);
+        if (lengths == null) {
+            return text;
+        }
+        char[] chars = text.toCharArray();
+        int coverEnd = 0;
+        for (int i = 0; i < chars.length; i++) {
+            coverEnd = Math.max(coverEnd, i + lengths[i]);
+            if (i < coverEnd) {
+                chars[i] = mask;
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 敏感词过滤：命中的关键字整体替换为replacement
+     */
+    public String replace(String text, String replacement) {
+        int[] lengths = longestAtStart(text);
+        if (lengths == null) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        int i = 0;
+        while (i < lengths.length) {
+            // 合并重叠的命中区间
+            int coverEnd = i + lengths[i];
+            if (coverEnd > i) {
+                for (int j = i + 1; j < coverEnd; j++) {
+                    coverEnd = Math.max(coverEnd, j + lengths[j]);
+                }
+                sb.append(replacement);
+                i = coverEnd;
+            } else {
+                sb.append(text.charAt(i++));
+            }
+        }
+        return sb.toString();
+    }
+
+    public int size() {
+        return keywords.length;
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    /**
+     * 计算每个位置开始的最长关键字长度。没有任何命中时返回null
+     */
+    private int[] longestAtStart(CharSequence text) {
+        if (keywords.length == 0 || text == null) {
+            return null;
+        }
+        int[] lengths = null;
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, text.charAt(i));
+            if (longest[state] == 0) {
+                continue;
+            }
+            if (lengths == null) {
+                lengths = new int[text.length()];
+            }
+            // 沿字典链取出以i结尾的所有关键字
+            for (int s = word[state] >= 0 ? state : dict[state]; s > ROOT; s = dict[s]) {
+                int start = i + 1 - depth[s];
+                if (depth[s] > lengths[start]) {
+                    lengths[start] = depth[s];
+                }
+            }
+        }
+        return lengths;
+    }
+
+    private int next(int state, char c) {
+        if (ignoreCase) {
+            c = fold(c);
+        }
+        int next;
+        while ((next = transition(offsets, keys, targets, state, c)) < 0 && state != ROOT) {
+            state = fail[state];
+        }
+        return next < 0 ? ROOT : next;
+    }
+
+    private static int transition(int[] offsets, char[] keys, int[] targets, int state, char c) {
+        int index = Arrays.binarySearch(keys, offsets[state], offsets[state + 1], c);
+        return index < 0 ? -1 : targets[index];
+    }
+
+    /**
+     * 和String.equalsIgnoreCase相同的大小写折叠规则
+     */
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * 一次匹配的信息
+     */
+    public static final class Match {
+        private final int start;
+        private final int end;
+        /**
+         * 原文本中匹配到的字符（保持原文本的大小写）
+         */
+        private final String text;
+
+        Match(int start, int end, String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return text + "[" + start + "," + end + ")";
+        }
+    }
+}
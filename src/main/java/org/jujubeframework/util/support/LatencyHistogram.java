@@ -0,0 +1,191 @@
+package org.jujubeframework.util.support;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 估算百分位数的直方图（耗时统计等）
+ * <p>
+ * 类似HdrHistogram的对数-线性分桶：每个2的幂区间再等分为2^precisionBits个桶，相对误差不超过1/2^precisionBits，
+ * 覆盖0 ~ Long.MAX_VALUE的全部非负值。内存占用固定，不随记录的数据量增长，适合在埋点中长期累计。
+ * 记录和读取都是线程安全的，记录时没有锁
+ *
+ * <pre>
+ *  LatencyHistogram histogram = new LatencyHistogram();
+ *  long start = System.nanoTime();
+ *  ...
+ *  histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+ *  histogram.getPercentile(99);
+ * </pre>
+ *
+ * @author John Li
+ */
+public class LatencyHistogram {
+
+    /**
+     * 默认精度：相对误差不超过1/128（约0.8%）
+     */
+    public static final int DEFAULT_PRECISION_BITS = 7;
+
+    private final int precisionBits;
+    private final int subBucketCount;
+    private final AtomicLongArray counts;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    public LatencyHistogram() {
+        this(DEFAULT_PRECISION_BITS);
+    }
+
+    /**
+     * @param precisionBits 精度，1 ~ 12。每增加1，误差减半，内存翻倍
+     */
+    public LatencyHistogram(int precisionBits) {
+        Validate.isTrue(precisionBits >= 1 && precisionBits <= 12, "precisionBits必须在1 ~ 12之间");
+        this.precisionBits = precisionBits;
+        this.subBucketCount = 1 << precisionBits;
+        this.counts = new AtomicLongArray(subBucketCount * (64 - precisionBits));
+    }
+
+    /**
+     * 记录一个值，负数按0记录
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        min.accumulateAndGet(value, Math::min);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * 合并另一个直方图的数据，两者精度必须相同
+     */
+    public void merge(LatencyHistogram other) {
+        Validate.isTrue(other.precisionBits == precisionBits, "精度不同的直方图不能合并");
+        for (int i = 0; i < counts.length(); i++) {
+            long c = other.counts.get(i);
+            if (c != 0) {
+                counts.addAndGet(i, c);
+            }
+        }
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        min.accumulateAndGet(other.min.get(), Math::min);
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /**
+     * 清空数据。和并发的record同时进行时，个别记录可能只被部分清除
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        min.set(Long.MAX_VALUE);
+        max.set(Long.MIN_VALUE);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 最小值，没有数据时为0
+     */
+    public long getMin() {
+        long value = min.get();
+        return value == Long.MAX_VALUE ? 0 : value;
+    }
+
+    /**
+     * 最大值，没有数据时为0
+     */
+    public long getMax() {
+        long value = max.get();
+        return value == Long.MIN_VALUE ? 0 : value;
+    }
+
+    /**
+     * 平均数（精确值），没有数据时为NaN
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? Double.NaN : (double) sum.sum() / n;
+    }
+
+    /**
+     * 估算百分位数
+     *
+     * @param percentile 0 ~ 100，例如99表示P99
+     * @return 估算值，没有数据时为0
+     */
+    public long getPercentile(double percentile) {
+        Validate.isTrue(percentile >= 0 && percentile <= 100, "percentile必须在0 ~ 100之间");
+        long total = 0;
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        // 两端直接返回精确值
+        if (rank >= total) {
+            return getMax();
+        }
+        if (percentile == 0) {
+            return getMin();
+        }
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                long value = middleOf(i);
+                return Math.max(getMin(), Math.min(getMax(), value));
+            }
+        }
+        return getMax();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", mean=" + getMean() + ", min=" + getMin() + ", p50=" + getPercentile(50) + ", p90=" + getPercentile(90) + ", p99=" + getPercentile(99) + ", max=" + getMax();
+    }
+
+    /**
+     * 小于subBucketCount的值每个值一个桶；其余的值按所在的2的幂区间分组，每组subBucketCount个桶
+     */
+    private int indexOf(long value) {
+        if (value < subBucketCount) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - precisionBits;
+        return subBucketCount * (shift + 1) + (int) ((value >>> shift) - subBucketCount);
+    }
+
+    /**
+     * 桶的中间值
+     */
+    private long middleOf(int index) {
+        if (index < subBucketCount) {
+            return index;
+        }
+        int shift = index / subBucketCount - 1;
+        long lower = ((long) (index % subBucketCount + subBucketCount)) << shift;
+        return lower + ((1L << shift) >>> 1);
+    }
+}
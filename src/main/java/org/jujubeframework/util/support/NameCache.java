@@ -0,0 +1,54 @@
+package org.jujubeframework.util.support;
+
+import java.util.function.Function;
+
+/**
+ * 定长、无锁的字符串转换缓存
+ * <p>
+ * 采用直接映射的方式：按key的hash定位到固定槽位，冲突时直接覆盖旧值。容量固定，不会因为key的种类无限增多而撑爆内存；
+ * 槽位中存放的是不可变对象，多线程读写不需要加锁，最坏情况只是重复计算一次
+ *
+ * @author John Li
+ */
+public final class NameCache {
+
+    private final Entry[] table;
+    private final int mask;
+    private final Function<String, String> converter;
+
+    /**
+     * @param capacity  容量，会向上取整为2的幂
+     * @param converter 缓存未命中时的转换方法
+     */
+    public NameCache(int capacity, Function<String, String> converter) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.table = new Entry[size];
+        this.mask = size - 1;
+        this.converter = converter;
+    }
+
+    /**
+     * 获得转换后的值。同一个key在未被挤出缓存前，返回的是同一个实例
+     */
+    public String get(String key) {
+        int hash = key.hashCode();
+        int index = (hash ^ (hash >>> 16)) & mask;
+        Entry entry = table[index];
+        if (entry != null && entry.key.equals(key)) {
+            return entry.value;
+        }
+        String value = converter.apply(key);
+        table[index] = new Entry(key, value);
+        return value;
+    }
+
+    private static final class Entry {
+        final String key;
+        final String value;
+
+        Entry(String key, String value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.jujubeframework.util.support;
+
+/**
+ * 单遍统计：数量、和、最小值、最大值、平均数、方差
+ * <p>
+ * 使用Welford算法增量计算平均数和方差，不保存原始数据，数值稳定性好于“平方和减去和的平方”的算法。
+ * 多个分片（例如按商户分组）分别统计后可以用{@link #merge(StreamingStatistics)}合并。非线程安全
+ *
+ * @author John Li
+ */
+public class StreamingStatistics {
+
+    private long count;
+    private double mean;
+    /**
+     * 与平均数之差的平方和
+     */
+    private double m2;
+    private double sum;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    /**
+     * 加入一个值
+     *
+     * @return 本身
+     */
+    public StreamingStatistics add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        sum += value;
+        if (count == 1) {
+            min = value;
+            max = value;
+        } else {
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 加入一组值
+     *
+     * @return 本身
+     */
+    public StreamingStatistics addAll(double[] values) {
+        for (double value : values) {
+            add(value);
+        }
+        return this;
+    }
+
+    /**
+     * 合并另一个统计的结果（Chan的并行算法）
+     *
+     * @return 本身
+     */
+    public StreamingStatistics merge(StreamingStatistics other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            sum = other.sum;
+            min = other.min;
+            max = other.max;
+            return this;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * 最小值，没有数据时为NaN
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * 最大值，没有数据时为NaN
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * 平均数，没有数据时为NaN
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * 总体方差，没有数据时为NaN
+     */
+    public double getVariance() {
+        return count == 0 ? Double.NaN : m2 / count;
+    }
+
+    /**
+     * 样本方差（除以n-1），少于两个数据时为NaN
+     */
+    public double getSampleVariance() {
+        return count < 2 ? Double.NaN : m2 / (count - 1);
+    }
+
+    /**
+     * 总体标准差，没有数据时为NaN
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + ", mean=" + getMean() + ", stdDev=" + getStandardDeviation() + ", min=" + min + ", max=" + max;
+    }
+}
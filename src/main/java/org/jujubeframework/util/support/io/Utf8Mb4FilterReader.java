@@ -0,0 +1,97 @@
+package org.jujubeframework.util.support.io;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 过滤掉UTF-8中超过3个字节字符（emoji等，即Java中的代理对）的Reader
+ * <p>
+ * 适合大段文本边读边过滤，不需要把全文读入内存
+ *
+ * @author John Li
+ * @see org.jujubeframework.util.Texts#filterOffUtf8Mb4(String)
+ */
+public class Utf8Mb4FilterReader extends FilterReader {
+
+    public Utf8Mb4FilterReader(Reader in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int c;
+        do {
+            c = in.read();
+        } while (c != -1 && Character.isSurrogate((char) c));
+        return c;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n;
+        do {
+            n = in.read(cbuf, off, len);
+            if (n == -1) {
+                return -1;
+            }
+            n = compact(cbuf, off, n);
+            // 整段都被过滤掉时继续读，避免返回0
+        } while (n == 0);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n < 0L) {
+            throw new IllegalArgumentException("skip value is negative");
+        }
+        char[] buffer = new char[(int) Math.min(n, 8192)];
+        long remaining = n;
+        while (remaining > 0) {
+            int read = read(buffer, 0, (int) Math.min(remaining, buffer.length));
+            if (read == -1) {
+                break;
+            }
+            remaining -= read;
+        }
+        return n - remaining;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark() not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset() not supported");
+    }
+
+    /**
+     * 原地去掉代理字符，返回剩余字符数
+     */
+    private static int compact(char[] cbuf, int off, int len) {
+        int end = off + len;
+        int i = off;
+        while (i < end && !Character.isSurrogate(cbuf[i])) {
+            i++;
+        }
+        int w = i;
+        for (; i < end; i++) {
+            char c = cbuf[i];
+            if (!Character.isSurrogate(c)) {
+                cbuf[w++] = c;
+            }
+        }
+        return w - off;
+    }
+}
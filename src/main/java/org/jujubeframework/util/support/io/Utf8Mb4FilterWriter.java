@@ -0,0 +1,61 @@
+package org.jujubeframework.util.support.io;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 过滤掉UTF-8中超过3个字节字符（emoji等，即Java中的代理对）的Writer
+ * <p>
+ * 不含此类字符的片段直接整段写出，不做复制
+ *
+ * @author John Li
+ * @see org.jujubeframework.util.Texts#filterOffUtf8Mb4(String)
+ */
+public class Utf8Mb4FilterWriter extends FilterWriter {
+
+    public Utf8Mb4FilterWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (!Character.isSurrogate((char) c)) {
+            out.write(c);
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        int end = off + len;
+        int start = off;
+        for (int i = off; i < end; i++) {
+            if (Character.isSurrogate(cbuf[i])) {
+                if (i > start) {
+                    out.write(cbuf, start, i - start);
+                }
+                start = i + 1;
+            }
+        }
+        if (end > start) {
+            out.write(cbuf, start, end - start);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        int end = off + len;
+        int start = off;
+        for (int i = off; i < end; i++) {
+            if (Character.isSurrogate(str.charAt(i))) {
+                if (i > start) {
+                    out.write(str, start, i - start);
+                }
+                start = i + 1;
+            }
+        }
+        if (end > start) {
+            out.write(str, start, end - start);
+        }
+    }
+}
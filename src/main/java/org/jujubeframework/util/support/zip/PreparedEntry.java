@@ -0,0 +1,196 @@
+package org.jujubeframework.util.support.zip;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * 预先压缩好、等待写入ZIP的条目
+ * <p>
+ * 压缩（或计算CRC）可以在任意线程中进行，写入时只是原样复制数据，因此多个条目可以并行压缩、再按顺序写入同一个ZIP。
+ * 压缩后的数据不超过spillThreshold时保存在内存中，否则写入临时文件；本身已经压缩过的格式（jpg、png、zip等）和压缩后反而更大的文件
+ * 直接存储(STORED)，写入时从源文件复制。用完后必须{@link #close()}以删除临时文件
+ *
+ * @author John Li
+ */
+public final class PreparedEntry implements Closeable {
+
+    /**
+     * 本身已经压缩过、再用deflate压缩几乎没有收益的格式
+     */
+    private static final Set<String> COMPRESSED_EXTENSIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("jpg", "jpeg", "png", "gif", "webp",
+            "zip", "jar", "war", "gz", "tgz", "bz2", "xz", "7z", "rar", "mp3", "mp4", "m4a", "aac", "ogg", "avi", "mov", "mkv", "flv", "woff", "woff2",
+            "docx", "xlsx", "pptx", "apk")));
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ZipRecord record;
+    private final byte[] data;
+    private final File spillFile;
+    private final File sourceFile;
+
+    private PreparedEntry(ZipRecord record, byte[] data, File spillFile, File sourceFile) {
+        this.record = record;
+        this.data = data;
+        this.spillFile = spillFile;
+        this.sourceFile = sourceFile;
+    }
+
+    /**
+     * 是否是本身已经压缩过的格式（按扩展名判断）
+     */
+    public static boolean isCompressedFormat(String name) {
+        return COMPRESSED_EXTENSIONS.contains(FilenameUtils.getExtension(name).toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * 压缩一个文件（或目录）
+     *
+     * @param name             条目名称，目录以/结尾
+     * @param file             文件或目录
+     * @param compressionLevel 压缩级别，{@link Deflater#NO_COMPRESSION}时直接存储
+     * @param spillThreshold   压缩后的数据超过此字节数时写入临时文件
+     */
+    public static PreparedEntry prepare(String name, File file, int compressionLevel, int spillThreshold) throws IOException {
+        if (file.isDirectory()) {
+            return new PreparedEntry(ZipRecord.directory(name, file.lastModified()), new byte[0], null, null);
+        }
+        long dosTime = ZipRecord.toDosTime(file.lastModified());
+        if (compressionLevel == Deflater.NO_COMPRESSION || isCompressedFormat(name)) {
+            return stored(name, file, dosTime);
+        }
+        PreparedEntry entry;
+        try (InputStream in = new FileInputStream(file)) {
+            entry = compress(name, dosTime, in, compressionLevel, spillThreshold);
+        }
+        if (entry.record.getCompressedSize() >= entry.record.getSize()) {
+            // 压缩后反而更大，改为直接存储，写入时从源文件复制
+            entry.close();
+            ZipRecord record = entry.record;
+            return new PreparedEntry(new ZipRecord(name, ZipEntry.STORED, dosTime, record.getCrc(), record.getSize(), record.getSize(), -1), null, null,
+                    file);
+        }
+        return entry;
+    }
+
+    /**
+     * 压缩一个流的内容
+     *
+     * @param name             条目名称，目录以/结尾
+     * @param time             修改时间（毫秒）
+     * @param in               内容，为null时表示目录。不会被关闭
+     * @param compressionLevel 压缩级别，{@link Deflater#NO_COMPRESSION}或者本身已经压缩过的格式时直接存储
+     * @param spillThreshold   压缩后的数据超过此字节数时写入临时文件
+     */
+    public static PreparedEntry prepare(String name, long time, InputStream in, int compressionLevel, int spillThreshold) throws IOException {
+        if (in == null) {
+            return new PreparedEntry(ZipRecord.directory(name, time), new byte[0], null, null);
+        }
+        boolean store = compressionLevel == Deflater.NO_COMPRESSION || isCompressedFormat(name);
+        return compress(name, ZipRecord.toDosTime(time), in, store ? Deflater.NO_COMPRESSION : compressionLevel, spillThreshold);
+    }
+
+    /**
+     * 压缩（NO_COMPRESSION时原样保存）到内存或临时文件
+     */
+    private static PreparedEntry compress(String name, long dosTime, InputStream in, int compressionLevel, int spillThreshold) throws IOException {
+        boolean store = compressionLevel == Deflater.NO_COMPRESSION;
+        CRC32 crc = new CRC32();
+        long size = 0;
+        Deflater deflater = store ? null : new Deflater(compressionLevel, true);
+        DeferredFileOutputStream buffer = new DeferredFileOutputStream(spillThreshold, "zip-entry", ".tmp", null);
+        try (OutputStream out = store ? buffer : new DeflaterOutputStream(buffer, deflater, BUFFER_SIZE)) {
+            byte[] b = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(b)) != -1) {
+                checkInterrupted();
+                crc.update(b, 0, n);
+                out.write(b, 0, n);
+                size += n;
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteSpill(buffer);
+            throw e;
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        ZipRecord record = new ZipRecord(name, store ? ZipEntry.STORED : ZipEntry.DEFLATED, dosTime, crc.getValue(), buffer.getByteCount(), size, -1);
+        return buffer.isInMemory() ? new PreparedEntry(record, buffer.getData(), null, null) : new PreparedEntry(record, null, buffer.getFile(), null);
+    }
+
+    /**
+     * 不压缩，只计算CRC
+     */
+    private static PreparedEntry stored(String name, File file, long dosTime) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] b = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(b)) != -1) {
+                checkInterrupted();
+                crc.update(b, 0, n);
+                size += n;
+            }
+        }
+        return new PreparedEntry(new ZipRecord(name, ZipEntry.STORED, dosTime, crc.getValue(), size, size, -1), null, null, file);
+    }
+
+    public ZipRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * 写入writer
+     */
+    public void writeTo(ZipArchiveWriter writer) throws IOException {
+        if (data != null) {
+            writer.putRaw(record, data, 0, data.length);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open((spillFile != null ? spillFile : sourceFile).toPath(), StandardOpenOption.READ)) {
+            writer.putRaw(record, channel, 0);
+        }
+    }
+
+    /**
+     * 删除临时文件
+     */
+    @Override
+    public void close() {
+        FileUtils.deleteQuietly(spillFile);
+    }
+
+    private static void deleteSpill(DeferredFileOutputStream buffer) {
+        if (!buffer.isInMemory()) {
+            FileUtils.deleteQuietly(buffer.getFile());
+        }
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Compression interrupted");
+        }
+    }
+}
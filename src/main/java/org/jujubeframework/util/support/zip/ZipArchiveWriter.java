@@ -0,0 +1,419 @@
+package org.jujubeframework.util.support.zip;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * 直接写ZIP格式的writer
+ * <p>
+ * 和ZipOutputStream不同，条目的数据由调用方给出：已经压缩好的deflate数据（并行压缩的结果、从另一个ZIP原样复制的数据），
+ * 或者不压缩(STORED)的原始内容。CRC和大小事先已知，直接写在本地文件头中，不需要数据描述符。
+ * 事先不知道CRC和大小时用{@link #putStream(String, long, InputStream, int)}边读边压缩，CRC和大小写在数据之后的数据描述符中。
+ * 写入文件时，来自FileChannel的数据用transferTo复制，不经过Java堆。条目大小、偏移量或条目数超出限制时自动使用ZIP64格式。非线程安全
+ *
+ * <pre>
+ *  try (ZipArchiveWriter writer = new ZipArchiveWriter(file, charset)) {
+ *      writer.putDirectory("images/", time);
+ *      writer.putRaw(record, deflatedBytes, 0, deflatedBytes.length);
+ *  }
+ * </pre>
+ *
+ * @author John Li
+ */
+public class ZipArchiveWriter implements Closeable {
+
+    static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    static final int END_SIGNATURE = 0x06054b50;
+    static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    static final int ZIP64_EXTRA_ID = 0x0001;
+    static final int UTF8_FLAG = 0x800;
+    static final int DATA_DESCRIPTOR_FLAG = 0x8;
+    static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final FileChannel channel;
+    private final Charset charset;
+    private final int flags;
+    private final List<ZipRecord> records = new ArrayList<>();
+    /**
+     * 使用了数据描述符的条目在records中的下标
+     */
+    private final BitSet descriptors = new BitSet();
+    private final byte[] scratch = new byte[8];
+    private long position;
+    private boolean finished;
+
+    /**
+     * 创建（或覆盖）ZIP文件
+     */
+    public ZipArchiveWriter(File file, Charset charset) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), 0, charset);
+    }
+
+    /**
+     * 写入FileChannel，从position开始。关闭writer时会关闭channel
+     */
+    public ZipArchiveWriter(FileChannel channel, long position, Charset charset) throws IOException {
+        this.channel = channel;
+        this.channel.position(position);
+        this.out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        this.position = position;
+        this.charset = charset;
+        this.flags = StandardCharsets.UTF_8.equals(charset) ? UTF8_FLAG : 0;
+    }
+
+    /**
+     * 写入OutputStream。关闭writer时会关闭out
+     */
+    public ZipArchiveWriter(OutputStream out, Charset charset) {
+        this.channel = null;
+        this.out = out instanceof BufferedOutputStream ? out : new BufferedOutputStream(out, BUFFER_SIZE);
+        this.charset = charset;
+        this.flags = StandardCharsets.UTF_8.equals(charset) ? UTF8_FLAG : 0;
+    }
+
+    /**
+     * 已写入的字节数（写入FileChannel时为channel中的位置）
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * 已写入的条目
+     */
+    public List<ZipRecord> getRecords() {
+        return records;
+    }
+
+    /**
+     * 登记当前位置之前已经存在的条目（在已有的ZIP后追加时），只会写入中央目录
+     */
+    public void putExisting(ZipRecord record) {
+        if (record.getOffset() < 0 || record.getOffset() >= position) {
+            throw new IllegalArgumentException("Entry " + record.getName() + " is not before position " + position);
+        }
+        records.add(record);
+    }
+
+    /**
+     * 写入目录条目
+     */
+    public void putDirectory(String name, long time) throws IOException {
+        String dirName = name.endsWith("/") ? name : name + "/";
+        putRaw(ZipRecord.directory(dirName, time), new byte[0], 0, 0);
+    }
+
+    /**
+     * 写入一个条目，data是按entry的压缩方式压缩好的数据（deflate数据不带zlib头）
+     */
+    public void putRaw(ZipRecord entry, byte[] data, int off, int len) throws IOException {
+        checkLength(entry, len);
+        writeLocalHeader(entry);
+        writeBytes(data, off, len);
+    }
+
+    /**
+     * 写入一个条目，数据为source中从sourcePosition开始的entry.getCompressedSize()个字节
+     */
+    public void putRaw(ZipRecord entry, FileChannel source, long sourcePosition) throws IOException {
+        writeLocalHeader(entry);
+        transferFrom(source, sourcePosition, entry.getCompressedSize());
+    }
+
+    /**
+     * 写入一个条目，数据为in中接下来的entry.getCompressedSize()个字节。in不会被关闭
+     */
+    public void putRaw(ZipRecord entry, InputStream in) throws IOException {
+        writeLocalHeader(entry);
+        byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(entry.getCompressedSize(), 1))];
+        long done = 0;
+        while (done < entry.getCompressedSize()) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, entry.getCompressedSize() - done));
+            if (n < 0) {
+                throw new EOFException("Unexpected end of " + entry.getName() + ", expected " + entry.getCompressedSize() + " bytes, got " + done);
+            }
+            writeBytes(buffer, 0, n);
+            done += n;
+        }
+    }
+
+    /**
+     * 边读边压缩写入一个条目(DEFLATED)，不需要事先知道CRC和大小，也不需要缓冲整个条目。in不会被关闭
+     *
+     * @param time             修改时间（毫秒）
+     * @param compressionLevel 压缩级别，{@link Deflater#NO_COMPRESSION}时只是按deflate格式分块存储
+     * @return 写入的条目
+     */
+    public ZipRecord putStream(String name, long time, InputStream in, int compressionLevel) throws IOException {
+        int index = records.size();
+        writeLocalHeader(new ZipRecord(name, ZipEntry.DEFLATED, ZipRecord.toDosTime(time), 0, 0, 0, -1), DATA_DESCRIPTOR_FLAG);
+        long dataOffset = position;
+        CRC32 crc = new CRC32();
+        long size = 0;
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            byte[] input = new byte[BUFFER_SIZE];
+            byte[] output = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(input)) != -1) {
+                crc.update(input, 0, n);
+                size += n;
+                deflater.setInput(input, 0, n);
+                while (!deflater.needsInput()) {
+                    writeBytes(output, 0, deflater.deflate(output));
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                writeBytes(output, 0, deflater.deflate(output));
+            }
+        } finally {
+            deflater.end();
+        }
+        ZipRecord record = new ZipRecord(name, ZipEntry.DEFLATED, ZipRecord.toDosTime(time), crc.getValue(), position - dataOffset, size,
+                records.get(index).getOffset());
+        records.set(index, record);
+        descriptors.set(index);
+        writeInt(DATA_DESCRIPTOR_SIGNATURE);
+        writeInt(record.getCrc());
+        if (record.getSize() >= ZIP64_MAGIC || record.getCompressedSize() >= ZIP64_MAGIC) {
+            writeLong(record.getCompressedSize());
+            writeLong(record.getSize());
+        } else {
+            writeInt(record.getCompressedSize());
+            writeInt(record.getSize());
+        }
+        return record;
+    }
+
+    /**
+     * 把缓冲的数据写出
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * 写入中央目录和结束记录。之后不能再写入条目
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        long centralOffset = position;
+        for (int i = 0; i < records.size(); i++) {
+            writeCentralHeader(records.get(i), descriptors.get(i) ? flags | DATA_DESCRIPTOR_FLAG : flags);
+        }
+        long centralSize = position - centralOffset;
+        writeEnd(centralOffset, centralSize);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void checkLength(ZipRecord entry, long len) {
+        if (entry.getCompressedSize() != len) {
+            throw new IllegalArgumentException("Compressed size of " + entry.getName() + " is " + entry.getCompressedSize() + ", but got " + len + " bytes");
+        }
+    }
+
+    private void writeLocalHeader(ZipRecord entry) throws IOException {
+        writeLocalHeader(entry, 0);
+    }
+
+    private void writeLocalHeader(ZipRecord entry, int extraFlags) throws IOException {
+        if (finished) {
+            throw new IOException("ZIP archive already finished");
+        }
+        byte[] name = entry.getName().getBytes(charset);
+        boolean zip64 = entry.getSize() >= ZIP64_MAGIC || entry.getCompressedSize() >= ZIP64_MAGIC;
+        records.add(entry.withOffset(position));
+        writeInt(LOCAL_HEADER_SIGNATURE);
+        writeShort(versionNeeded(entry, zip64));
+        writeShort(flags | extraFlags);
+        writeShort(entry.getMethod());
+        writeInt(entry.getDosTime());
+        writeInt(entry.getCrc());
+        writeInt(zip64 ? ZIP64_MAGIC : entry.getCompressedSize());
+        writeInt(zip64 ? ZIP64_MAGIC : entry.getSize());
+        writeShort(name.length);
+        writeShort(zip64 ? 20 : 0);
+        writeBytes(name, 0, name.length);
+        if (zip64) {
+            writeShort(ZIP64_EXTRA_ID);
+            writeShort(16);
+            writeLong(entry.getSize());
+            writeLong(entry.getCompressedSize());
+        }
+    }
+
+    private void writeCentralHeader(ZipRecord record, int flags) throws IOException {
+        byte[] name = record.getName().getBytes(charset);
+        boolean sizeOverflow = record.getSize() >= ZIP64_MAGIC;
+        boolean compressedOverflow = record.getCompressedSize() >= ZIP64_MAGIC;
+        boolean offsetOverflow = record.getOffset() >= ZIP64_MAGIC;
+        // ZIP64扩展字段只包含溢出的值，顺序固定
+        int extraLength = (sizeOverflow ? 8 : 0) + (compressedOverflow ? 8 : 0) + (offsetOverflow ? 8 : 0);
+        boolean zip64 = extraLength > 0;
+        int version = versionNeeded(record, zip64);
+        writeInt(CENTRAL_HEADER_SIGNATURE);
+        writeShort(version);
+        writeShort(version);
+        writeShort(flags);
+        writeShort(record.getMethod());
+        writeInt(record.getDosTime());
+        writeInt(record.getCrc());
+        writeInt(compressedOverflow ? ZIP64_MAGIC : record.getCompressedSize());
+        writeInt(sizeOverflow ? ZIP64_MAGIC : record.getSize());
+        writeShort(name.length);
+        writeShort(zip64 ? extraLength + 4 : 0);
+        // 注释长度、起始磁盘号、内部属性、外部属性
+        writeShort(0);
+        writeShort(0);
+        writeShort(0);
+        writeInt(0);
+        writeInt(offsetOverflow ? ZIP64_MAGIC : record.getOffset());
+        writeBytes(name, 0, name.length);
+        if (zip64) {
+            writeShort(ZIP64_EXTRA_ID);
+            writeShort(extraLength);
+            if (sizeOverflow) {
+                writeLong(record.getSize());
+            }
+            if (compressedOverflow) {
+                writeLong(record.getCompressedSize());
+            }
+            if (offsetOverflow) {
+                writeLong(record.getOffset());
+            }
+        }
+    }
+
+    private void writeEnd(long centralOffset, long centralSize) throws IOException {
+        int count = records.size();
+        boolean zip64 = count >= ZIP64_MAGIC_COUNT || centralOffset >= ZIP64_MAGIC || centralSize >= ZIP64_MAGIC;
+        if (zip64) {
+            long zip64EndOffset = position;
+            writeInt(ZIP64_END_SIGNATURE);
+            writeLong(44);
+            writeShort(45);
+            writeShort(45);
+            writeInt(0);
+            writeInt(0);
+            writeLong(count);
+            writeLong(count);
+            writeLong(centralSize);
+            writeLong(centralOffset);
+
+            writeInt(ZIP64_LOCATOR_SIGNATURE);
+            writeInt(0);
+            writeLong(zip64EndOffset);
+            writeInt(1);
+        }
+        writeInt(END_SIGNATURE);
+        writeShort(0);
+        writeShort(0);
+        writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+        writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+        writeInt(Math.min(centralSize, ZIP64_MAGIC));
+        writeInt(Math.min(centralOffset, ZIP64_MAGIC));
+        writeShort(0);
+    }
+
+    private static int versionNeeded(ZipRecord entry, boolean zip64) {
+        if (zip64) {
+            return 45;
+        }
+        return entry.getMethod() == ZipEntry.DEFLATED || entry.isDirectory() ? 20 : 10;
+    }
+
+    private void transferFrom(FileChannel source, long sourcePosition, long count) throws IOException {
+        if (channel != null) {
+            out.flush();
+            long done = 0;
+            while (done < count) {
+                long n = source.transferTo(sourcePosition + done, count - done, channel);
+                if (n <= 0) {
+                    // transferTo在到达源文件末尾时返回0
+                    if (sourcePosition + done >= source.size()) {
+                        throw new EOFException("Unexpected end of source, expected " + count + " bytes, got " + done);
+                    }
+                    continue;
+                }
+                done += n;
+            }
+            position += count;
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(count, 1)));
+        long done = 0;
+        while (done < count) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), count - done));
+            int n = source.read(buffer, sourcePosition + done);
+            if (n < 0) {
+                throw new EOFException("Unexpected end of source, expected " + count + " bytes, got " + done);
+            }
+            writeBytes(buffer.array(), 0, n);
+            done += n;
+        }
+    }
+
+    private void writeBytes(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        position += len;
+    }
+
+    private void writeShort(int v) throws IOException {
+        scratch[0] = (byte) v;
+        scratch[1] = (byte) (v >>> 8);
+        writeBytes(scratch, 0, 2);
+    }
+
+    private void writeInt(long v) throws IOException {
+        scratch[0] = (byte) v;
+        scratch[1] = (byte) (v >>> 8);
+        scratch[2] = (byte) (v >>> 16);
+        scratch[3] = (byte) (v >>> 24);
+        writeBytes(scratch, 0, 4);
+    }
+
+    private void writeLong(long v) throws IOException {
+        for (int i = 0; i < 8; i++) {
+            scratch[i] = (byte) (v >>> (i * 8));
+        }
+        writeBytes(scratch, 0, 8);
+    }
+}
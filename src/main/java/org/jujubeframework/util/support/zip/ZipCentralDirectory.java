@@ -0,0 +1,244 @@
+package org.jujubeframework.util.support.zip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipException;
+
+import static org.jujubeframework.util.support.zip.ZipArchiveWriter.*;
+
+/**
+ * ZIP的中央目录
+ * <p>
+ * 只读取文件末尾的结束记录和中央目录，不读取条目数据，得到每个条目的名称、CRC、大小和本地文件头的偏移量，支持ZIP64。
+ * 有了偏移量就可以原样复制某个条目的压缩数据，或者在中央目录的位置追加新的条目。
+ * <p>
+ * 和{@link java.util.zip.ZipFile}一样支持前面附加了其他数据的ZIP（如自解压脚本）：记录中的偏移量是相对ZIP开头的，
+ * 这里都换算成文件中的实际位置
+ *
+ * @author John Li
+ */
+public final class ZipCentralDirectory {
+
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int ZIP64_END_SIZE = 56;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+
+    private final List<ZipRecord> records;
+    private final long centralOffset;
+    private final long centralSize;
+
+    private ZipCentralDirectory(List<ZipRecord> records, long centralOffset, long centralSize) {
+        this.records = records;
+        this.centralOffset = centralOffset;
+        this.centralSize = centralSize;
+    }
+
+    /**
+     * 读取中央目录
+     *
+     * @param charset 文件名编码，标记为UTF-8的条目总是按UTF-8解码
+     */
+    public static ZipCentralDirectory read(FileChannel channel, Charset charset) throws IOException {
+        return read(channel, charset, locate(channel));
+    }
+
+    /**
+     * 读取已经定位的中央目录
+     *
+     * @param location {@link #locate(FileChannel)}的结果
+     */
+    static ZipCentralDirectory read(FileChannel channel, Charset charset, long[] location) throws IOException {
+        long centralOffset = location[0];
+        long centralSize = location[1];
+        if (centralSize > Integer.MAX_VALUE) {
+            throw new ZipException("Central directory too large: " + centralSize);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) centralSize);
+        readFully(channel, buffer, centralOffset);
+        buffer.flip();
+        return new ZipCentralDirectory(parse(buffer, (int) location[2], charset, location[3]), centralOffset, centralSize);
+    }
+
+    /**
+     * 定位中央目录
+     *
+     * @return {中央目录在文件中的位置, 中央目录的大小, 条目数, ZIP前面附加的字节数}
+     */
+    static long[] locate(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < END_SIZE) {
+            throw new ZipException("Not a ZIP file, size: " + size);
+        }
+        // 绝大多数ZIP没有注释，先只读取最后的22字节
+        int tailSize = END_SIZE;
+        ByteBuffer tail = ByteBuffer.allocate(tailSize).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, tail, size - tailSize);
+        int end = tail.getInt(0) == END_SIGNATURE && tail.getShort(20) == 0 ? 0 : -1;
+        if (end < 0) {
+            tailSize = (int) Math.min(size, END_SIZE + MAX_COMMENT_LENGTH);
+            tail = ByteBuffer.allocate(tailSize).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, tail, size - tailSize);
+            for (int i = tailSize - END_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) == END_SIGNATURE && i + END_SIZE + (tail.getShort(i + 20) & 0xFFFF) <= tailSize) {
+                    end = i;
+                    break;
+                }
+            }
+        }
+        if (end < 0) {
+            throw new ZipException("End of central directory not found, not a ZIP file");
+        }
+        long count = tail.getShort(end + 10) & 0xFFFF;
+        long centralSize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+        long centralOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+        // 中央目录紧挨在结束记录（ZIP64时为ZIP64结束记录）之前
+        long endOffset = size - tailSize + end;
+        if (endOffset >= ZIP64_LOCATOR_SIZE + ZIP64_END_SIZE) {
+            ByteBuffer locator = ByteBuffer.allocate(ZIP64_LOCATOR_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, locator, endOffset - ZIP64_LOCATOR_SIZE);
+            if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+                // 定位记录中的偏移量同样不包括前面附加的数据，先按紧挨在定位记录之前的位置读取
+                long zip64Offset = endOffset - ZIP64_LOCATOR_SIZE - ZIP64_END_SIZE;
+                ByteBuffer zip64End = ByteBuffer.allocate(ZIP64_END_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, zip64End, zip64Offset);
+                if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+                    zip64Offset = locator.getLong(8);
+                    zip64End.clear();
+                    readFully(channel, zip64End, zip64Offset);
+                    if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+                        throw new ZipException("Invalid ZIP64 end of central directory record");
+                    }
+                }
+                count = zip64End.getLong(32);
+                centralSize = zip64End.getLong(40);
+                centralOffset = zip64End.getLong(48);
+                endOffset = zip64Offset;
+            }
+        }
+        long prefixSize = endOffset - centralSize - centralOffset;
+        if (prefixSize < 0 || count > Integer.MAX_VALUE) {
+            throw new ZipException("Invalid end of central directory record");
+        }
+        return new long[]{centralOffset + prefixSize, centralSize, count, prefixSize};
+    }
+
+    /**
+     * 解析中央目录，buffer的position在中央目录的开始
+     *
+     * @param prefixSize ZIP前面附加的字节数，加到本地文件头的偏移量上
+     */
+    static List<ZipRecord> parse(ByteBuffer buffer, int count, Charset charset, long prefixSize) throws ZipException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        List<ZipRecord> records = new ArrayList<>(count);
+        int pos = buffer.position();
+        for (int i = 0; i < count; i++) {
+            if (pos + CENTRAL_HEADER_SIZE > buffer.limit() || buffer.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory header at entry " + i);
+            }
+            int flags = buffer.getShort(pos + 8) & 0xFFFF;
+            if ((flags & 1) != 0) {
+                throw new ZipException("Encrypted entries are not supported");
+            }
+            int method = buffer.getShort(pos + 10) & 0xFFFF;
+            long dosTime = buffer.getInt(pos + 12) & 0xFFFFFFFFL;
+            long crc = buffer.getInt(pos + 16) & 0xFFFFFFFFL;
+            long compressedSize = buffer.getInt(pos + 20) & 0xFFFFFFFFL;
+            long size = buffer.getInt(pos + 24) & 0xFFFFFFFFL;
+            int nameLength = buffer.getShort(pos + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(pos + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(pos + 32) & 0xFFFF;
+            long offset = buffer.getInt(pos + 42) & 0xFFFFFFFFL;
+            byte[] name = new byte[nameLength];
+            for (int j = 0; j < nameLength; j++) {
+                name[j] = buffer.get(pos + CENTRAL_HEADER_SIZE + j);
+            }
+            // ZIP64扩展字段只包含溢出的值，顺序固定
+            int extra = pos + CENTRAL_HEADER_SIZE + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = buffer.getShort(extra) & 0xFFFF;
+                int length = buffer.getShort(extra + 2) & 0xFFFF;
+                if (id == ZIP64_EXTRA_ID) {
+                    int field = extra + 4;
+                    if (size == ZIP64_MAGIC) {
+                        size = buffer.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == ZIP64_MAGIC) {
+                        compressedSize = buffer.getLong(field);
+                        field += 8;
+                    }
+                    if (offset == ZIP64_MAGIC) {
+                        offset = buffer.getLong(field);
+                    }
+                }
+                extra += 4 + length;
+            }
+            Charset nameCharset = (flags & UTF8_FLAG) != 0 ? StandardCharsets.UTF_8 : charset;
+            records.add(new ZipRecord(new String(name, nameCharset), method, dosTime, crc, compressedSize, size, offset + prefixSize));
+            pos = extraEnd + commentLength;
+        }
+        return Collections.unmodifiableList(records);
+    }
+
+    /**
+     * 条目压缩数据的起始位置（跳过本地文件头）
+     */
+    public static long dataOffset(FileChannel channel, ZipRecord record) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, record.getOffset());
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header of " + record.getName());
+        }
+        return record.getOffset() + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new EOFException("Unexpected end of ZIP file");
+            }
+        }
+    }
+
+    /**
+     * 所有条目，按中央目录中的顺序
+     */
+    public List<ZipRecord> getRecords() {
+        return records;
+    }
+
+    /**
+     * 中央目录在文件中的位置，也就是最后一个条目数据的结束位置
+     */
+    public long getCentralOffset() {
+        return centralOffset;
+    }
+
+    public long getCentralSize() {
+        return centralSize;
+    }
+
+    /**
+     * 第一个条目之前的数据（如自解压脚本）的字节数，没有时为0
+     */
+    public long getPrefixSize() {
+        long prefixSize = centralOffset;
+        for (ZipRecord record : records) {
+            prefixSize = Math.min(prefixSize, record.getOffset());
+        }
+        return prefixSize;
+    }
+}
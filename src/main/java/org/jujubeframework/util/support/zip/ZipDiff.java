@@ -0,0 +1,115 @@
+package org.jujubeframework.util.support.zip;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 两个ZIP的差异：新增、删除、修改的条目
+ * <p>
+ * 只比较中央目录中的元数据：同名条目的大小或CRC-32不同即为修改，不解压任何数据；修改时间、压缩方式不同但内容相同的条目不算修改。
+ * CRC相同时内容几乎总是相同的，需要完全排除CRC碰撞时，可以要求对大小和CRC都相同的条目再逐字节比较
+ *
+ * @author John Li
+ */
+public final class ZipDiff {
+
+    private final List<String> added;
+    private final List<String> removed;
+    private final List<String> changed;
+
+    private ZipDiff(List<String> added, List<String> removed, List<String> changed) {
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.changed = Collections.unmodifiableList(changed);
+    }
+
+    /**
+     * 比较两个ZIP，同名的条目只比较第一个
+     *
+     * @param from           原来的ZIP
+     * @param to             新的ZIP
+     * @param compareContent 大小和CRC都相同时是否再逐字节比较
+     */
+    public static ZipDiff compare(ZipIndex from, ZipIndex to, boolean compareContent) throws IOException {
+        List<ZipRecord> records1 = from.getRecords();
+        List<ZipRecord> records2 = to.getRecords();
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        // 两边都按名称排序，一次归并
+        int i = 0;
+        int j = 0;
+        while (i < records1.size() || j < records2.size()) {
+            ZipRecord r1 = i < records1.size() ? records1.get(i) : null;
+            ZipRecord r2 = j < records2.size() ? records2.get(j) : null;
+            int c = r1 == null ? 1 : r2 == null ? -1 : r1.getName().compareTo(r2.getName());
+            if (c < 0) {
+                removed.add(r1.getName());
+            } else if (c > 0) {
+                added.add(r2.getName());
+            } else if (r1.getSize() != r2.getSize() || r1.getCrc() != r2.getCrc()
+                    || compareContent && !r1.isDirectory() && !contentEquals(from, to, r1.getName())) {
+                changed.add(r1.getName());
+            }
+            if (c <= 0) {
+                i = skipDuplicates(records1, i);
+            }
+            if (c >= 0) {
+                j = skipDuplicates(records2, j);
+            }
+        }
+        return new ZipDiff(added, removed, changed);
+    }
+
+    private static int skipDuplicates(List<ZipRecord> records, int i) {
+        String name = records.get(i).getName();
+        do {
+            i++;
+        } while (i < records.size() && records.get(i).getName().equals(name));
+        return i;
+    }
+
+    private static boolean contentEquals(ZipIndex from, ZipIndex to, String name) throws IOException {
+        try (InputStream in1 = from.getInputStream(name); InputStream in2 = to.getInputStream(name)) {
+            return IOUtils.contentEquals(in1, in2);
+        }
+    }
+
+    /**
+     * 只在新的ZIP中存在的条目，按名称排序
+     */
+    public List<String> getAdded() {
+        return added;
+    }
+
+    /**
+     * 只在原来的ZIP中存在的条目，按名称排序
+     */
+    public List<String> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * 两边都有但内容不同的条目，按名称排序
+     */
+    public List<String> getChanged() {
+        return changed;
+    }
+
+    /**
+     * 两个ZIP的内容是否相同
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ZipDiff[added=" + added + ", removed=" + removed + ", changed=" + changed + "]";
+    }
+}
@@ -0,0 +1,325 @@
+package org.jujubeframework.util.support.zip;
+
+import org.apache.commons.io.FileUtils;
+import org.jujubeframework.util.Zips.ZipEntrySource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * 批量修改已有的ZIP文件
+ * <p>
+ * 先登记要添加、替换、删除的条目，{@link #commit()}时一次完成：
+ * <ul>
+ * <li>只添加新条目时，新条目直接写在原有条目数据之后（覆盖原来的中央目录），再重写中央目录，原有条目一个字节都不动。
+ * 写入失败时恢复原来的中央目录</li>
+ * <li>有替换或删除时，写到同一目录下的临时文件再替换原文件。没有变化的条目原样复制压缩数据(transferTo)，不解压也不重新压缩；
+ * 被删除的数据不会残留在文件中</li>
+ * </ul>
+ * 新条目在commit开始时压缩，压缩失败不会修改原文件。也可以用{@link #commitTo(File)}把结果写入另一个文件。
+ * ZIP前面附加的数据（如自解压脚本）会保留，修改后的ZIP中的偏移量都是文件中的实际位置。非线程安全
+ *
+ * <pre>
+ *  new ZipEditor(zip, charset).add(source1).replace(source2).remove("a/b.txt").commit();
+ * </pre>
+ *
+ * @author John Li
+ */
+public class ZipEditor {
+
+    private static final int SPILL_THRESHOLD = 4 * 1024 * 1024;
+
+    private enum Mode {
+        /**
+         * 添加，已存在时报错
+         */
+        ADD,
+        /**
+         * 替换，不存在时忽略
+         */
+        REPLACE,
+        /**
+         * 添加或替换
+         */
+        PUT
+    }
+
+    private final File zip;
+    private final Charset charset;
+    private final Map<String, ZipEntrySource> sources = new LinkedHashMap<>();
+    private final Map<String, Mode> modes = new LinkedHashMap<>();
+    private final List<String> removals = new ArrayList<>();
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    public ZipEditor(File zip, Charset charset) {
+        this.zip = zip;
+        this.charset = charset;
+    }
+
+    /**
+     * 新条目的压缩级别
+     */
+    public ZipEditor compressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    /**
+     * 添加条目，ZIP中已有同名条目时commit会抛出ZipException
+     */
+    public ZipEditor add(ZipEntrySource source) {
+        return register(source, Mode.ADD);
+    }
+
+    /**
+     * 替换条目，ZIP中没有同名条目时忽略
+     */
+    public ZipEditor replace(ZipEntrySource source) {
+        return register(source, Mode.REPLACE);
+    }
+
+    /**
+     * 添加或替换条目
+     */
+    public ZipEditor put(ZipEntrySource source) {
+        return register(source, Mode.PUT);
+    }
+
+    /**
+     * 删除条目。如果是目录，同时删除其下所有条目；不存在时忽略
+     */
+    public ZipEditor remove(String path) {
+        removals.add(path);
+        return this;
+    }
+
+    private ZipEditor register(ZipEntrySource source, Mode mode) {
+        sources.put(source.getPath(), source);
+        modes.put(source.getPath(), mode);
+        return this;
+    }
+
+    /**
+     * 执行所有修改
+     *
+     * @return ZIP文件是否有变化
+     */
+    public boolean commit() throws IOException {
+        return apply(null);
+    }
+
+    /**
+     * 把修改后的结果写入另一个文件，原文件不变。没有任何修改时也会写入target
+     *
+     * @param target 目标文件，不能是原文件
+     * @return 和原文件相比是否有变化
+     */
+    public boolean commitTo(File target) throws IOException {
+        if (target.getCanonicalFile().equals(zip.getCanonicalFile())) {
+            throw new IllegalArgumentException("Target must differ from the source ZIP, use commit() instead");
+        }
+        return apply(target);
+    }
+
+    /**
+     * @param target 为null时修改原文件
+     */
+    private boolean apply(File target) throws IOException {
+        File tmp = null;
+        boolean changed;
+        StandardOpenOption[] options = target == null ? new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ};
+        try (FileChannel channel = FileChannel.open(zip.toPath(), options)) {
+            ZipCentralDirectory directory = ZipCentralDirectory.read(channel, charset);
+            Map<String, ZipRecord> existing = new LinkedHashMap<>();
+            for (ZipRecord record : directory.getRecords()) {
+                existing.putIfAbsent(record.getName(), record);
+            }
+            boolean removed = applyRemovals(existing);
+
+            // 被替换的条目保持原来的位置，其余的新条目追加在最后
+            Map<String, ZipEntrySource> replaced = new LinkedHashMap<>();
+            List<ZipEntrySource> appended = new ArrayList<>();
+            for (Map.Entry<String, ZipEntrySource> entry : sources.entrySet()) {
+                String name = entry.getKey();
+                Mode mode = modes.get(name);
+                if (!existing.containsKey(name)) {
+                    if (mode != Mode.REPLACE) {
+                        appended.add(entry.getValue());
+                    }
+                } else if (mode == Mode.ADD) {
+                    throw new ZipException("duplicate entry: " + name);
+                } else {
+                    replaced.put(name, entry.getValue());
+                }
+            }
+            changed = removed || !replaced.isEmpty() || !appended.isEmpty();
+            if (!changed && target == null) {
+                return false;
+            }
+
+            Map<String, PreparedEntry> prepared = new LinkedHashMap<>();
+            try {
+                for (ZipEntrySource source : replaced.values()) {
+                    prepared.put(source.getPath(), prepare(source));
+                }
+                for (ZipEntrySource source : appended) {
+                    prepared.put(source.getPath(), prepare(source));
+                }
+                if (target == null && !removed && replaced.isEmpty()) {
+                    append(channel, directory, prepared.values());
+                    ZipIndex.invalidate(zip);
+                    return true;
+                }
+                if (target == null) {
+                    tmp = File.createTempFile(zip.getName(), ".tmp", zip.getAbsoluteFile().getParentFile());
+                }
+                rewrite(channel, directory.getPrefixSize(), existing, prepared, target == null ? tmp : target);
+            } finally {
+                for (PreparedEntry entry : prepared.values()) {
+                    entry.close();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            FileUtils.deleteQuietly(tmp);
+            throw e;
+        }
+        if (tmp != null) {
+            // 原文件关闭后再替换
+            replaceFile(tmp, zip);
+        }
+        ZipIndex.invalidate(target == null ? zip : target);
+        return changed;
+    }
+
+    /**
+     * @return 是否删除了条目
+     */
+    private boolean applyRemovals(Map<String, ZipRecord> existing) {
+        boolean removed = false;
+        for (String path : removals) {
+            ZipRecord record = existing.get(path);
+            if (record == null && !path.endsWith("/")) {
+                record = existing.get(path + "/");
+            }
+            if (record == null) {
+                continue;
+            }
+            if (record.isDirectory()) {
+                Iterator<String> iterator = existing.keySet().iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().startsWith(record.getName())) {
+                        iterator.remove();
+                    }
+                }
+            } else {
+                existing.remove(record.getName());
+            }
+            removed = true;
+        }
+        return removed;
+    }
+
+    private PreparedEntry prepare(ZipEntrySource source) throws IOException {
+        long time = source.getEntry().getTime();
+        if (time == -1) {
+            time = System.currentTimeMillis();
+        }
+        InputStream in = source.getInputStream();
+        try {
+            return PreparedEntry.prepare(source.getPath(), time, in, compressionLevel, SPILL_THRESHOLD);
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * 在原有条目数据之后追加，重写中央目录。失败时恢复原来的中央目录
+     */
+    private void append(FileChannel channel, ZipCentralDirectory directory, Iterable<PreparedEntry> entries) throws IOException {
+        long originalSize = channel.size();
+        long centralOffset = directory.getCentralOffset();
+        ByteBuffer tail = ByteBuffer.allocate((int) (originalSize - centralOffset));
+        ZipCentralDirectory.readFully(channel, tail, centralOffset);
+        ZipArchiveWriter writer = new ZipArchiveWriter(channel, centralOffset, charset);
+        try {
+            for (ZipRecord record : directory.getRecords()) {
+                writer.putExisting(record);
+            }
+            for (PreparedEntry entry : entries) {
+                entry.writeTo(writer);
+            }
+            writer.finish();
+            channel.truncate(writer.getPosition());
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            tail.flip();
+            while (tail.hasRemaining()) {
+                channel.write(tail, centralOffset + tail.position());
+            }
+            channel.truncate(originalSize);
+            throw e;
+        }
+    }
+
+    /**
+     * 写入新文件：先复制ZIP前面附加的数据，未修改的条目原样复制压缩数据
+     */
+    private void rewrite(FileChannel channel, long prefixSize, Map<String, ZipRecord> existing, Map<String, PreparedEntry> prepared, File target)
+            throws IOException {
+        FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            for (long done = 0; done < prefixSize; ) {
+                done += channel.transferTo(done, prefixSize - done, out);
+            }
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            throw e;
+        }
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(out, prefixSize, charset)) {
+            for (ZipRecord record : existing.values()) {
+                PreparedEntry replacement = prepared.remove(record.getName());
+                if (replacement != null) {
+                    try {
+                        replacement.writeTo(writer);
+                    } finally {
+                        replacement.close();
+                    }
+                } else {
+                    writer.putRaw(record, channel, ZipCentralDirectory.dataOffset(channel, record));
+                }
+            }
+            for (PreparedEntry entry : prepared.values()) {
+                entry.writeTo(writer);
+            }
+        }
+    }
+
+    private static void replaceFile(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(source);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package org.jujubeframework.util.support.zip;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * ZIP的只读索引
+ * <p>
+ * 打开时解析一次中央目录，按名称排序保存在几个数组中，之后的查找都是二分查找；读取条目时只打开文件按位置读取数据，不再解析中央目录。
+ * 索引本身不持有打开的文件，每个{@link #getInputStream(String)}返回的流单独打开文件，关闭流时关闭文件，因此不影响删除、替换文件。
+ * 实例不可变，可以被任意多个线程同时使用。
+ * <p>
+ * {@link #get(File, Charset)}从缓存中获取：按路径缓存最近使用的{@link #MAX_CACHED}个ZIP，每次获取时比较文件标识、修改时间、大小以及中央目录的位置和大小，
+ * 任何一项变化都重新加载。读取时文件大小已经和建立索引时不同会抛出ZipException
+ *
+ * <pre>
+ *  ZipIndex index = ZipIndex.get(zip, StandardCharsets.UTF_8);
+ *  try (InputStream in = index.getInputStream("config/app.properties")) {
+ *      ...
+ *  }
+ * </pre>
+ *
+ * @author John Li
+ */
+public final class ZipIndex {
+
+    /**
+     * 缓存的ZIP数量上限
+     */
+    public static final int MAX_CACHED = 64;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    private static final Cache<String, ZipIndex> CACHE = CacheBuilder.newBuilder().maximumSize(MAX_CACHED).build();
+
+    private final File file;
+    /**
+     * 文件系统的文件标识（如inode），不支持时为null
+     */
+    private final Object fileKey;
+    private final long lastModified;
+    private final long length;
+    private final long centralOffset;
+    private final long centralSize;
+    private final String[] names;
+    private final int[] methods;
+    private final int[] dosTimes;
+    private final int[] crcs;
+    private final long[] compressedSizes;
+    private final long[] sizes;
+    private final long[] offsets;
+    /**
+     * 压缩数据的起始位置，第一次读取时才从本地文件头计算，-1表示还未计算
+     */
+    private final long[] dataOffsets;
+
+    private ZipIndex(File file, BasicFileAttributes attributes, long length, ZipCentralDirectory directory) {
+        this.file = file;
+        this.fileKey = attributes.fileKey();
+        this.lastModified = attributes.lastModifiedTime().toMillis();
+        this.length = length;
+        this.centralOffset = directory.getCentralOffset();
+        this.centralSize = directory.getCentralSize();
+        List<ZipRecord> sorted = new ArrayList<>(directory.getRecords());
+        // 稳定排序，同名条目中第一个在前
+        sorted.sort(Comparator.comparing(ZipRecord::getName));
+        int count = sorted.size();
+        names = new String[count];
+        methods = new int[count];
+        dosTimes = new int[count];
+        crcs = new int[count];
+        compressedSizes = new long[count];
+        sizes = new long[count];
+        offsets = new long[count];
+        dataOffsets = new long[count];
+        for (int i = 0; i < count; i++) {
+            ZipRecord record = sorted.get(i);
+            names[i] = record.getName();
+            methods[i] = record.getMethod();
+            dosTimes[i] = (int) record.getDosTime();
+            crcs[i] = (int) record.getCrc();
+            compressedSizes[i] = record.getCompressedSize();
+            sizes[i] = record.getSize();
+            offsets[i] = record.getOffset();
+            dataOffsets[i] = -1;
+        }
+    }
+
+    /**
+     * 从缓存中获取ZIP的索引，没有缓存或文件已变化时重新加载
+     */
+    public static ZipIndex get(File file, Charset charset) throws IOException {
+        File canonical = file.getCanonicalFile();
+        String key = canonical.getPath() + '\n' + charset.name();
+        try (FileChannel channel = FileChannel.open(canonical.toPath(), StandardOpenOption.READ)) {
+            BasicFileAttributes attributes = Files.readAttributes(canonical.toPath(), BasicFileAttributes.class);
+            long length = channel.size();
+            long[] location = ZipCentralDirectory.locate(channel);
+            ZipIndex index = CACHE.getIfPresent(key);
+            if (index == null || !index.matches(attributes, length, location)) {
+                index = new ZipIndex(canonical, attributes, length, ZipCentralDirectory.read(channel, charset, location));
+                CACHE.put(key, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * 从缓存中移除
+     */
+    public static void invalidate(File file) throws IOException {
+        String prefix = file.getCanonicalPath() + '\n';
+        CACHE.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * 打开ZIP并建立索引，不使用缓存
+     */
+    public static ZipIndex open(File file, Charset charset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            return new ZipIndex(file, attributes, channel.size(), ZipCentralDirectory.read(channel, charset));
+        }
+    }
+
+    private boolean matches(BasicFileAttributes attributes, long length, long[] location) {
+        return Objects.equals(fileKey, attributes.fileKey()) && lastModified == attributes.lastModifiedTime().toMillis() && this.length == length
+                && centralOffset == location[0] && centralSize == location[1];
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 条目数
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * 所有条目的名称，按名称排序
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * 是否包含条目。和ZipFile.getEntry一样，找不到name时也查找name/
+     */
+    public boolean contains(String name) {
+        return find(name) >= 0;
+    }
+
+    /**
+     * 条目的元数据，没有时为null
+     */
+    public ZipRecord getRecord(String name) {
+        int i = find(name);
+        return i < 0 ? null : record(i);
+    }
+
+    /**
+     * 所有条目的元数据，按名称排序
+     */
+    public List<ZipRecord> getRecords() {
+        List<ZipRecord> records = new ArrayList<>(names.length);
+        for (int i = 0; i < names.length; i++) {
+            records.add(record(i));
+        }
+        return records;
+    }
+
+    /**
+     * 读取条目的内容，调用方负责关闭。没有此条目时返回null
+     */
+    public InputStream getInputStream(String name) throws IOException {
+        int i = find(name);
+        if (i < 0) {
+            return null;
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        InputStream raw;
+        try {
+            if (channel.size() != length) {
+                throw new ZipException("ZIP file changed since it was indexed: " + file);
+            }
+            raw = new ChannelInputStream(channel, dataOffset(channel, i), compressedSizes[i]);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        switch (methods[i]) {
+            case ZipEntry.STORED:
+                return raw;
+            case ZipEntry.DEFLATED:
+                return new RawInflaterInputStream(raw, (int) Math.max(512, Math.min(sizes[i], 64 * 1024)));
+            default:
+                raw.close();
+                throw new ZipException("Unsupported compression method " + methods[i] + " of " + name);
+        }
+    }
+
+    /**
+     * 读取条目的全部内容，没有此条目时返回null
+     */
+    public byte[] read(String name) throws IOException {
+        int i = find(name);
+        if (i < 0) {
+            return null;
+        }
+        if (sizes[i] > Integer.MAX_VALUE - 8) {
+            throw new ZipException("Entry too large: " + name);
+        }
+        byte[] bytes = new byte[(int) sizes[i]];
+        try (InputStream in = getInputStream(name)) {
+            int done = 0;
+            while (done < bytes.length) {
+                int n = in.read(bytes, done, bytes.length - done);
+                if (n < 0) {
+                    throw new EOFException("Unexpected end of entry " + name);
+                }
+                done += n;
+            }
+        }
+        return bytes;
+    }
+
+    private int find(String name) {
+        int i = indexOf(name);
+        if (i < 0 && !name.endsWith("/")) {
+            i = indexOf(name + "/");
+        }
+        return i;
+    }
+
+    private int indexOf(String name) {
+        int i = Arrays.binarySearch(names, name);
+        while (i > 0 && names[i - 1].equals(name)) {
+            i--;
+        }
+        return i;
+    }
+
+    private ZipRecord record(int i) {
+        return new ZipRecord(names[i], methods[i], dosTimes[i] & 0xFFFFFFFFL, crcs[i] & 0xFFFFFFFFL, compressedSizes[i], sizes[i], offsets[i]);
+    }
+
+    private long dataOffset(FileChannel channel, int i) throws IOException {
+        long offset = dataOffsets[i];
+        if (offset < 0) {
+            ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            ZipCentralDirectory.readFully(channel, header, offsets[i]);
+            if (header.getInt(0) != ZipArchiveWriter.LOCAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid local header of " + names[i]);
+            }
+            offset = offsets[i] + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+            if (offset + compressedSizes[i] > length) {
+                throw new ZipException("Invalid entry size of " + names[i]);
+            }
+            // 多个线程同时计算的结果相同，不需要同步
+            dataOffsets[i] = offset;
+        }
+        return offset;
+    }
+
+    /**
+     * 按位置读取文件中的一段，关闭时关闭文件
+     */
+    private static class ChannelInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        ChannelInputStream(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.end = position + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (n < 0) {
+                throw new EOFException("Unexpected end of ZIP file");
+            }
+            position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * 解压不带zlib头的deflate数据，关闭时释放Inflater
+     */
+    private static class RawInflaterInputStream extends InflaterInputStream {
+
+        private boolean eof;
+        private boolean closed;
+
+        RawInflaterInputStream(InputStream in, int size) {
+            super(in, new Inflater(true), size);
+        }
+
+        /**
+         * 和ZipFile一样，nowrap模式的Inflater在数据末尾需要一个额外的字节
+         */
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                inf.end();
+                super.close();
+            }
+        }
+    }
+}
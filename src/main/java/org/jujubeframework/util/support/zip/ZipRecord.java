@@ -0,0 +1,140 @@
+package org.jujubeframework.util.support.zip;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.zip.ZipEntry;
+
+/**
+ * ZIP条目的元数据：名称、压缩方式、时间、CRC、大小和本地文件头的偏移量
+ * <p>
+ * 和ZipEntry不同，这里的大小和CRC总是已知的，足以直接写出本地文件头和中央目录，数据本身可以原样复制而不需要重新压缩
+ *
+ * @author John Li
+ */
+public final class ZipRecord {
+
+    private final String name;
+    private final int method;
+    private final long dosTime;
+    private final long crc;
+    private final long compressedSize;
+    private final long size;
+    private final long offset;
+
+    /**
+     * @param name           条目名称，目录以/结尾
+     * @param method         {@link ZipEntry#STORED}或{@link ZipEntry#DEFLATED}
+     * @param dosTime        MS-DOS格式的修改时间，见{@link #toDosTime(long)}
+     * @param crc            未压缩数据的CRC-32
+     * @param compressedSize 压缩后的大小
+     * @param size           未压缩的大小
+     * @param offset         本地文件头在ZIP文件中的偏移量，还未写入时为-1
+     */
+    public ZipRecord(String name, int method, long dosTime, long crc, long compressedSize, long size, long offset) {
+        this.name = name;
+        this.method = method;
+        this.dosTime = dosTime;
+        this.crc = crc;
+        this.compressedSize = compressedSize;
+        this.size = size;
+        this.offset = offset;
+    }
+
+    /**
+     * 目录条目
+     */
+    public static ZipRecord directory(String name, long time) {
+        return new ZipRecord(name, ZipEntry.STORED, toDosTime(time), 0, 0, 0, -1);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMethod() {
+        return method;
+    }
+
+    public long getDosTime() {
+        return dosTime;
+    }
+
+    /**
+     * 修改时间（毫秒）
+     */
+    public long getTime() {
+        return toJavaTime(dosTime);
+    }
+
+    public long getCrc() {
+        return crc;
+    }
+
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public boolean isDirectory() {
+        return name.endsWith("/");
+    }
+
+    /**
+     * 同一个条目，位于另一个偏移量
+     */
+    public ZipRecord withOffset(long offset) {
+        return new ZipRecord(name, method, dosTime, crc, compressedSize, size, offset);
+    }
+
+    /**
+     * 同一份数据，换一个名称
+     */
+    public ZipRecord withName(String name) {
+        return new ZipRecord(name, method, dosTime, crc, compressedSize, size, offset);
+    }
+
+    public ZipEntry toZipEntry() {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(method);
+        entry.setTime(getTime());
+        entry.setCrc(crc);
+        entry.setCompressedSize(compressedSize);
+        entry.setSize(size);
+        return entry;
+    }
+
+    /**
+     * 毫秒转为MS-DOS格式的时间（本地时区，精度2秒），1980年以前的时间按1980-01-01处理
+     */
+    public static long toDosTime(long time) {
+        LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        int year = dateTime.getYear() - 1980;
+        if (year < 0) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) year << 25 | dateTime.getMonthValue() << 21 | dateTime.getDayOfMonth() << 16 | dateTime.getHour() << 11 | dateTime.getMinute() << 5
+                | dateTime.getSecond() >> 1) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * MS-DOS格式的时间转为毫秒。和JDK一样宽松处理越界的字段，例如全0的时间为1979-11-30 00:00:00，62秒进位到下一分钟
+     */
+    public static long toJavaTime(long dosTime) {
+        LocalDateTime dateTime = LocalDateTime.of((int) ((dosTime >> 25) & 0x7F) + 1980, 1, 1, 0, 0).plusMonths(((dosTime >> 21) & 0x0F) - 1)
+                .plusDays(((dosTime >> 16) & 0x1F) - 1).plusHours((dosTime >> 11) & 0x1F).plusMinutes((dosTime >> 5) & 0x3F).plusSeconds((dosTime << 1) & 0x3E);
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Override
+    public String toString() {
+        return "ZipRecord[" + name + ", method=" + method + ", size=" + size + ", compressedSize=" + compressedSize + "]";
+    }
+}
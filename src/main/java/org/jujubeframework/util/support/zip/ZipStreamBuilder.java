@@ -0,0 +1,188 @@
+package org.jujubeframework.util.support.zip;
+
+import org.jujubeframework.util.Zips.ZipEntrySource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * 把条目直接写到OutputStream（比如ServletOutputStream）的ZIP，不需要先生成临时文件
+ * <p>
+ * 先登记条目，{@link #writeTo(OutputStream)}时按登记顺序逐个打开、逐个写出：文件在写到它时才打开，整个过程只有一个64K的写缓冲，
+ * 不缓冲整个条目，也不写临时文件。写出是同步的，客户端接收得慢时写操作阻塞，读取也随之暂停。第一个条目写完后立即flush，客户端尽早收到数据。
+ * <ul>
+ * <li>普通内容边读边压缩，CRC和大小写在数据之后的数据描述符中</li>
+ * <li>本身已经压缩过的格式（jpg、zip等）直接存储(STORED)。STORED条目的CRC必须写在数据之前：
+ * 文件没有给出CRC时先读一遍文件计算；ZipEntrySource的ZipEntry给出了STORED方式、CRC和大小时直接使用，否则边读边按不压缩的deflate格式写出</li>
+ * </ul>
+ * 非线程安全
+ *
+ * <pre>
+ *  new ZipStreamBuilder(charset).addFile("report.pdf", report).addFile("images/a.jpg", image).writeTo(response.getOutputStream());
+ * </pre>
+ *
+ * @author John Li
+ */
+public class ZipStreamBuilder {
+
+    private interface Item {
+        void writeTo(ZipArchiveWriter writer) throws IOException;
+    }
+
+    private final Charset charset;
+    private final List<Item> items = new ArrayList<>();
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    public ZipStreamBuilder(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * 压缩级别，{@link Deflater#NO_COMPRESSION}时所有条目都直接存储
+     */
+    public ZipStreamBuilder compressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    /**
+     * 添加目录条目
+     */
+    public ZipStreamBuilder addDirectory(String path, long time) {
+        items.add(writer -> writer.putDirectory(path, time));
+        return this;
+    }
+
+    /**
+     * 添加文件（或目录，只添加目录本身），写到它时才打开
+     */
+    public ZipStreamBuilder addFile(String path, File file) {
+        return addFile(path, file, -1);
+    }
+
+    /**
+     * 添加文件并直接存储，CRC事先已经计算好（比如保存在数据库中），写出前不需要先读一遍文件计算CRC。
+     * 写出时边复制边校验，文件内容和CRC不一致时抛出ZipException，不会写出中央目录
+     *
+     * @param crc 文件内容的CRC32
+     */
+    public ZipStreamBuilder addStoredFile(String path, File file, long crc) {
+        return addFile(path, file, crc);
+    }
+
+    /**
+     * 添加条目，写到它时才调用{@link ZipEntrySource#getInputStream()}
+     */
+    public ZipStreamBuilder add(ZipEntrySource source) {
+        items.add(writer -> writeSource(writer, source));
+        return this;
+    }
+
+    /**
+     * @param crc 小于0时表示未知
+     */
+    private ZipStreamBuilder addFile(String path, File file, long crc) {
+        items.add(writer -> writeFile(writer, path, file, crc));
+        return this;
+    }
+
+    /**
+     * 写出所有条目和中央目录，out不会被关闭
+     *
+     * @return 写出的字节数
+     */
+    public long writeTo(OutputStream out) throws IOException {
+        ZipArchiveWriter writer = new ZipArchiveWriter(out, charset);
+        for (int i = 0; i < items.size(); i++) {
+            items.get(i).writeTo(writer);
+            if (i == 0) {
+                writer.flush();
+            }
+        }
+        writer.finish();
+        return writer.getPosition();
+    }
+
+    private void writeFile(ZipArchiveWriter writer, String path, File file, long crc) throws IOException {
+        long time = file.lastModified();
+        if (file.isDirectory()) {
+            writer.putDirectory(path, time);
+            return;
+        }
+        if (crc < 0 && compressionLevel != Deflater.NO_COMPRESSION && !PreparedEntry.isCompressedFormat(path)) {
+            try (InputStream in = new FileInputStream(file)) {
+                writer.putStream(path, time, in, compressionLevel);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (crc < 0) {
+                writer.putRaw(new ZipRecord(path, ZipEntry.STORED, ZipRecord.toDosTime(time), crc(channel), size, size, -1), channel, 0);
+            } else {
+                // 调用方给出的CRC可能已经过期
+                putChecked(writer, new ZipRecord(path, ZipEntry.STORED, ZipRecord.toDosTime(time), crc, size, size, -1), Channels.newInputStream(channel));
+            }
+        }
+    }
+
+    private void writeSource(ZipArchiveWriter writer, ZipEntrySource source) throws IOException {
+        ZipEntry entry = source.getEntry();
+        long time = entry.getTime() == -1 ? System.currentTimeMillis() : entry.getTime();
+        InputStream in = source.getInputStream();
+        if (in == null) {
+            writer.putDirectory(source.getPath(), time);
+            return;
+        }
+        try {
+            if (entry.getMethod() == ZipEntry.STORED && entry.getCrc() != -1 && entry.getSize() != -1) {
+                putChecked(writer, new ZipRecord(source.getPath(), ZipEntry.STORED, ZipRecord.toDosTime(time), entry.getCrc(), entry.getSize(), entry.getSize(), -1), in);
+                return;
+            }
+            boolean store = compressionLevel == Deflater.NO_COMPRESSION || PreparedEntry.isCompressedFormat(source.getPath());
+            writer.putStream(source.getPath(), time, in, store ? Deflater.NO_COMPRESSION : compressionLevel);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 写出CRC和大小已知的STORED条目，边写边校验，内容不一致时抛出ZipException
+     */
+    private static void putChecked(ZipArchiveWriter writer, ZipRecord record, InputStream in) throws IOException {
+        CheckedInputStream checked = new CheckedInputStream(in, new CRC32());
+        writer.putRaw(record, checked);
+        if (checked.read() != -1 || checked.getChecksum().getValue() != record.getCrc()) {
+            throw new ZipException("Content of " + record.getName() + " does not match the given size or CRC");
+        }
+    }
+
+    private static long crc(FileChannel channel) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long position = 0;
+        int n;
+        while ((n = channel.read(buffer, position)) != -1) {
+            buffer.flip();
+            crc.update(buffer);
+            buffer.clear();
+            position += n;
+        }
+        return crc.getValue();
+    }
+}
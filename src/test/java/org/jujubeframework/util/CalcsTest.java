@@ -0,0 +1,86 @@
+package org.jujubeframework.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class CalcsTest {
+
+    @Test
+    public void getMedian() {
+        List<Double> list = new ArrayList<>(Arrays.asList(3.0, 1.0, 2.0));
+        assertThat(Calcs.getMedian(list)).isEqualTo(2.0);
+        // 不修改调用方的数据
+        assertThat(list).containsExactly(3.0, 1.0, 2.0);
+        assertThat(Calcs.getMedian(Arrays.asList(4.0, 1.0, 3.0, 2.0))).isEqualTo(2.5);
+
+        double[] values = {5, 1, 4, 2, 3};
+        assertThat(Calcs.getMedian(values)).isEqualTo(3.0);
+        assertThat(values).containsExactly(5, 1, 4, 2, 3);
+    }
+
+    @Test
+    public void getPercentile() {
+        double[] values = {15, 20, 35, 40, 50};
+        assertThat(Calcs.getPercentile(values, 0)).isEqualTo(15.0);
+        assertThat(Calcs.getPercentile(values, 40)).isEqualTo(29.0);
+        assertThat(Calcs.getPercentile(values, 100)).isEqualTo(50.0);
+    }
+
+    @Test
+    public void getVariance() {
+        double[] values = {2, 4, 4, 4, 5, 5, 7, 9};
+        assertThat(Calcs.getAverage(values)).isEqualTo(5.0);
+        assertThat(Calcs.getVariance(values)).isCloseTo(4.0, within(1e-12));
+        assertThat(Calcs.getStandardDeviation(values)).isCloseTo(2.0, within(1e-12));
+    }
+
+    @Test
+    public void largeScale() {
+        // 超过定点数支持的小数位数时按BigDecimal计算
+        assertThat(Calcs.add(0.0001, 0.0, 19)).isEqualTo(0.0001);
+        assertThat(Calcs.sub(1.5, 0.25, 20)).isEqualTo(1.25);
+        assertThat(Calcs.mul(0.1, 3, 19)).isEqualTo(0.3);
+        assertThat(Calcs.div(1, 4, 25)).isEqualTo(0.25);
+        assertThat(Calcs.add("0.0001", "0", 19)).isEqualTo("0.0001000000000000000");
+    }
+
+    @Test
+    public void numberToString() {
+        assertThat(Calcs.numberToString(1.0E-5)).isEqualTo("0.00001");
+        assertThat(Calcs.numberToString(-12.50)).isEqualTo("-12.5");
+        assertThat(Calcs.numberToString(1.0E15)).isEqualTo("1000000000000000");
+        assertThat(Calcs.numberToString(0.123456789012)).isEqualTo("0.123456789");
+        assertThat(Calcs.numberToString(123456789012345L)).isEqualTo("123456789012345");
+        assertThat(Calcs.numberToString(1.5f)).isEqualTo("1.5");
+    }
+
+    @Test
+    public void numberToStringWithLocale() {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        try {
+            // 小数点和负号按默认Locale
+            Locale.setDefault(Locale.Category.FORMAT, Locale.GERMANY);
+            assertThat(Calcs.numberToString(-12.5)).isEqualTo("-12,5");
+            assertThat(Calcs.numberToString(0.123456789012)).isEqualTo("0,123456789");
+            Locale.setDefault(Locale.Category.FORMAT, Locale.forLanguageTag("ar-EG-u-nu-arab"));
+            assertThat(Calcs.numberToString(12L)).isEqualTo("١٢");
+            Locale.setDefault(Locale.Category.FORMAT, Locale.US);
+            assertThat(Calcs.numberToString(-12.5)).isEqualTo("-12.5");
+        } finally {
+            Locale.setDefault(Locale.Category.FORMAT, locale);
+        }
+    }
+
+    @Test
+    public void numberFormat() {
+        assertThat(Calcs.numberFormat(1234.5, "#,##0.00")).isEqualTo("1,234.50");
+        assertThat(Calcs.numberFormat(0.256, "#%")).isEqualTo("26%");
+    }
+}
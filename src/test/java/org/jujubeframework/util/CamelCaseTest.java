@@ -4,6 +4,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import org.jujubeframework.util.CamelCase;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 public class CamelCaseTest {
 
     @Test
@@ -26,4 +28,17 @@ public class CamelCaseTest {
         assertThat(CamelCase.toCapitalizeCamelCase("card_id")).isEqualTo("CardId");
     }
 
+    @Test
+    public void testCacheSeparatedByDirection() {
+        assertThat(CamelCase.toCamelCase("Ab_cd")).isEqualTo("AbCd");
+        assertThat(CamelCase.toSpecilCamelCase("Ab_cd")).isEqualTo("abCd");
+        assertThat(CamelCase.toCamelCase("Ab_cd")).isEqualTo("AbCd");
+    }
+
+    @Test
+    public void testBulk() {
+        assertThat(CamelCase.toCamelCases(Arrays.asList("card_id", "user_name", "age"))).containsExactly("cardId", "userName", "age");
+        assertThat(CamelCase.toUnderlineNames(new String[]{"cardId", "age"})).containsExactly("card_id", "age");
+    }
+
 }
@@ -2,10 +2,100 @@ package org.jujubeframework.util;
 
 import org.junit.Test;
 
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.TimeZone;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
 public class DatesTest {
 
     @Test
     public void test() {
     }
 
+    @Test
+    public void parseToTimeMillis() throws Exception {
+        String[] sources = {"2020-01-05 10:11:12", "2020-01-05 10:11", "2020-01-05 10", "2020-01-05"};
+        String[] patterns = {"yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd HH:mm", "yyyy-MM-dd HH", "yyyy-MM-dd"};
+        for (int i = 0; i < sources.length; i++) {
+            long expected = new SimpleDateFormat(patterns[i]).parse(sources[i]).getTime();
+            assertThat(Dates.parseToTimeMillis(sources[i])).isEqualTo(expected);
+            assertThat(Dates.parseToTimeMillis(sources[i], patterns[i])).isEqualTo(expected);
+        }
+        // 不规范的写法仍然按SimpleDateFormat宽松解析
+        assertThat(Dates.parseToTimeMillis("2020-1-5")).isEqualTo(new SimpleDateFormat("yyyy-MM-dd").parse("2020-01-05").getTime());
+        assertThat(Dates.parseToTimeMillis("2020-02-30")).isEqualTo(new SimpleDateFormat("yyyy-MM-dd").parse("2020-03-01").getTime());
+        assertThatThrownBy(() -> Dates.parseToTimeMillis("abc")).isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    public void parseWithoutYear() throws Exception {
+        assertThat(Dates.parseToTimeMillis("03-15", "MM-dd")).isEqualTo(new SimpleDateFormat("MM-dd").parse("03-15").getTime());
+        assertThat(Dates.formatDate(Dates.parse("03-15", "MM-dd"), "yyyy-MM-dd")).isEqualTo("1970-03-15");
+    }
+
+    @Test
+    public void parseDaylightSavingOverlap() {
+        // 夏令时结束时01:30出现两次，和SimpleDateFormat一样取较晚的一次
+        TimeZone newYork = TimeZone.getTimeZone("America/New_York");
+        assertThat(Dates.parse("2020-11-01 01:30", "yyyy-MM-dd HH:mm", newYork).getTime()).isEqualTo(1604212200000L);
+        TimeZone original = TimeZone.getDefault();
+        TimeZone.setDefault(newYork);
+        try {
+            assertThat(Dates.parseToTimeMillis("2020-11-01 01:30:00")).isEqualTo(1604212200000L);
+        } finally {
+            TimeZone.setDefault(original);
+        }
+    }
+
+    @Test
+    public void formatTimeMillis() throws Exception {
+        long time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse("2020-01-05 10:11:12").getTime();
+        assertThat(Dates.formatTimeMillis(time, null)).isEqualTo("2020-01-05 10:11:12");
+        assertThat(Dates.formatTimeMillis(time / 1000, "yyyy-MM-dd")).isEqualTo("2020-01-05");
+        assertThat(Dates.formatTimeMillis(123L, null)).isEmpty();
+        assertThat(Dates.formatTo(time, new StringBuilder("[")).append(']').toString()).isEqualTo("[2020-01-05 10:11:12]");
+        StringWriter writer = new StringWriter();
+        Dates.formatTo(time + 999, writer);
+        assertThat(writer.toString()).isEqualTo("2020-01-05 10:11:12");
+    }
+
+    @Test
+    public void formatFollowsDefaultTimeZone() {
+        TimeZone original = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+            assertThat(Dates.formatTimeMillis(1000000000000L, null)).isEqualTo("2001-09-09 01:46:40");
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Shanghai"));
+            assertThat(Dates.formatTimeMillis(1000000000000L, null)).isEqualTo("2001-09-09 09:46:40");
+            assertThat(Dates.formatTo(1000000000000L, new StringBuilder()).toString()).isEqualTo("2001-09-09 09:46:40");
+        } finally {
+            TimeZone.setDefault(original);
+        }
+    }
+
+    @Test
+    public void dayBoundary() {
+        long start = Dates.minimumTimeMillisOfToday();
+        long end = Dates.maximumTimeMillisOfToday();
+        assertThat(System.currentTimeMillis()).isBetween(start, end);
+        // 夏令时切换的日子不一定从00:00:00开始
+        LocalDate today = LocalDate.now();
+        assertThat(start).isEqualTo(today.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        assertThat(end + 1).isEqualTo(today.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    @Test
+    public void endDown() {
+        assertThat(Dates.endDown(1578219072L, 1578219072000L + 90061000L)).containsExactly(1, 1, 1, 1);
+        assertThat(Dates.endDown(1578219072L, 1578219071L)).isNull();
+        long[] result = new long[4];
+        assertThat(Dates.endDown(1578219072000L, 1578219072L + 59, result)).isTrue();
+        assertThat(result).containsExactly(0, 0, 0, 59);
+        assertThat(Dates.countDownSeconds(1000000000L)).isZero();
+    }
 }
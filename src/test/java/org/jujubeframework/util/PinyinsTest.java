@@ -0,0 +1,38 @@
+package org.jujubeframework.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PinyinsTest {
+
+    @Test
+    public void toPinyin() {
+        assertThat(Pinyins.toPinyin("张三a", Pinyins.Style.WITH_TONE)).isEqualTo("zhang1san1");
+        assertThat(Pinyins.toPinyin("张三a", Pinyins.Style.WITHOUT_TONE)).isEqualTo("zhangsan");
+        assertThat(Pinyins.toPinyin("张三a", Pinyins.Style.CAPITALIZE)).isEqualTo("ZhangSan");
+        assertThat(Pinyins.isChinese('a')).isFalse();
+        assertThat(Pinyins.isChinese('李')).isTrue();
+    }
+
+    @Test
+    public void firstLetter() {
+        assertThat(Pinyins.firstLetter("#@李")).isEqualTo('l');
+        assertThat(Pinyins.firstLetter("#@")).isEqualTo((char) 0);
+        assertThat(Texts.getFirstLetter("-张三")).isEqualTo("z");
+        assertThat(Texts.getFirstLetterArr("张a三")).isEqualTo("zs");
+    }
+
+    @Test
+    public void buildIndex() {
+        List<String> names = Arrays.asList("李四", "#1", "张三", "alice", "Bob", "刘备");
+        Map<Character, List<String>> index = Pinyins.buildIndex(names, Function.identity());
+        assertThat(index.keySet()).containsExactly('A', 'B', 'L', 'Z', '#');
+        assertThat(index.get('L')).containsExactly("李四", "刘备");
+    }
+}
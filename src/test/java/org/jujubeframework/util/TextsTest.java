@@ -3,6 +3,8 @@ package org.jujubeframework.util;
 import static org.assertj.core.api.Assertions.assertThat;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 public class TextsTest {
 
     @Test
@@ -22,4 +24,17 @@ public class TextsTest {
         assertThat(Texts.format("123{}456")).isEqualTo("123456");
         assertThat(Texts.format("1{}2{}3", "-")).isEqualTo("1-23");
     }
+
+    @Test
+    public void highlight() {
+        assertThat(Texts.highlight("Hello hello", "HELLO", "<b>", "</b>")).isEqualTo("<b>Hello</b> <b>hello</b>");
+        assertThat(Texts.highlight("java on jvm", Arrays.asList("java", "jvm"), "<b>", "</b>")).isEqualTo("<b>java</b> on <b>jvm</b>");
+    }
+
+    @Test
+    public void filterOffUtf8Mb4() {
+        String text = "hello中文";
+        assertThat(Texts.filterOffUtf8Mb4(text)).isSameAs(text);
+        assertThat(Texts.filterOffUtf8Mb4("a\uD83D\uDE00b中\uD83D\uDE00")).isEqualTo("ab中");
+    }
 }
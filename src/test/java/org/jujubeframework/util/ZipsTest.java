@@ -0,0 +1,318 @@
+package org.jujubeframework.util;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jujubeframework.util.support.zip.ZipDiff;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ZipsTest {
+
+    private final Zips zips = new Zips(StandardCharsets.UTF_8);
+    private File root;
+    private File source;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("zips-test").toFile();
+        source = new File(root, "source");
+        Random random = new Random(1);
+        byte[] noise = new byte[100000];
+        random.nextBytes(noise);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 200000) {
+            text.append(Long.toHexString(random.nextLong())).append(' ');
+        }
+        FileUtils.writeStringToFile(new File(source, "a/hello.txt"), "hello world", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(source, "a/b/text.txt"), text.toString(), StandardCharsets.UTF_8);
+        FileUtils.writeByteArrayToFile(new File(source, "a/b/photo.jpg"), noise);
+        FileUtils.writeByteArrayToFile(new File(source, "noise.bin"), noise);
+        FileUtils.writeByteArrayToFile(new File(source, "empty.txt"), new byte[0]);
+        FileUtils.forceMkdir(new File(source, "dir"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Test
+    public void parallelPack() throws IOException {
+        File serial = new File(root, "serial.zip");
+        File parallel = new File(root, "parallel.zip");
+        zips.pack(source, serial);
+        zips.pack(source, parallel, name -> name, zips.DEFAULT_COMPRESSION_LEVEL, 3);
+
+        assertThat(names(parallel)).isEqualTo(names(serial));
+        for (String name : names(serial)) {
+            assertThat(zips.entryEquals(serial, parallel, name)).as(name).isTrue();
+        }
+        try (ZipFile zf = new ZipFile(parallel)) {
+            // 已压缩的格式和压缩后更大的文件直接存储
+            assertThat(zf.getEntry("a/b/photo.jpg").getMethod()).isEqualTo(ZipEntry.STORED);
+            assertThat(zf.getEntry("noise.bin").getMethod()).isEqualTo(ZipEntry.STORED);
+            assertThat(zf.getEntry("a/b/text.txt").getMethod()).isEqualTo(ZipEntry.DEFLATED);
+            try (InputStream in = zf.getInputStream(zf.getEntry("a/hello.txt"))) {
+                assertThat(IOUtils.toString(in, StandardCharsets.UTF_8)).isEqualTo("hello world");
+            }
+        }
+    }
+
+    @Test
+    public void editInPlace() throws IOException {
+        File zip = new File(root, "edit.zip");
+        zips.pack(source, zip);
+        long length = zip.length();
+        byte[] head = Arrays.copyOf(Files.readAllBytes(zip.toPath()), 1024);
+
+        // 只追加时原有的条目数据不变
+        zips.addEntry(zip, "added.txt", "added".getBytes(StandardCharsets.UTF_8));
+        assertThat(zip.length()).isGreaterThan(length);
+        assertThat(Arrays.copyOf(Files.readAllBytes(zip.toPath()), 1024)).isEqualTo(head);
+        assertThat(content(zip, "added.txt")).isEqualTo("added");
+        assertThatThrownBy(() -> zips.addEntry(zip, "added.txt", new byte[1])).isInstanceOf(Zips.ZipException.class);
+
+        assertThat(zips.replaceEntry(zip, "missing.txt", new byte[1])).isFalse();
+        zips.edit(zip).replace(zips.new ByteSource("a/hello.txt", "hi".getBytes(StandardCharsets.UTF_8))).remove("a/b").commit();
+        assertThat(names(zip)).containsExactlyInAnyOrder("a/", "a/hello.txt", "dir/", "empty.txt", "noise.bin", "added.txt");
+        assertThat(names(zip)).endsWith("added.txt");
+        assertThat(content(zip, "a/hello.txt")).isEqualTo("hi");
+    }
+
+    @Test
+    public void copyRawEntries() throws IOException {
+        File zip = new File(root, "source.zip");
+        File removed = new File(root, "removed.zip");
+        zips.pack(source, zip);
+        zips.removeEntries(zip, new String[]{"a/hello.txt"}, removed);
+
+        assertThat(names(removed)).doesNotContain("a/hello.txt").hasSize(names(zip).size() - 1);
+        try (ZipFile original = new ZipFile(zip); ZipFile copy = new ZipFile(removed)) {
+            // 压缩数据原样复制
+            ZipEntry entry = copy.getEntry("a/b/text.txt");
+            assertThat(entry.getCompressedSize()).isEqualTo(original.getEntry("a/b/text.txt").getCompressedSize());
+            assertThat(entry.getCrc()).isEqualTo(original.getEntry("a/b/text.txt").getCrc());
+        }
+        assertThat(zips.entryEquals(zip, removed, "a/b/text.txt")).isTrue();
+
+        File repacked = new File(root, "repacked.zip");
+        zips.repack(zip, repacked, Deflater.NO_COMPRESSION);
+        assertThat(zips.entryEquals(zip, repacked, "a/b/text.txt")).isTrue();
+        try (ZipFile zf = new ZipFile(repacked)) {
+            assertThat(zf.getEntry("a/b/text.txt").getMethod()).isEqualTo(ZipEntry.STORED);
+        }
+    }
+
+    @Test
+    public void repackInvalidTimestamps() throws IOException {
+        File zip = new File(root, "timestamps.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("d/"));
+            out.putNextEntry(new ZipEntry("x.txt"));
+            out.write("timestamps".getBytes(StandardCharsets.UTF_8));
+        }
+        // 有的工具写出全0或者越界的MS-DOS时间：目录为全0，文件为2020-01-01 00:00:62
+        byte[] bytes = Files.readAllBytes(zip.toPath());
+        for (int i = 0; i + 47 <= bytes.length; i++) {
+            boolean local = bytes[i] == 'P' && bytes[i + 1] == 'K' && bytes[i + 2] == 3 && bytes[i + 3] == 4;
+            boolean central = bytes[i] == 'P' && bytes[i + 1] == 'K' && bytes[i + 2] == 1 && bytes[i + 3] == 2;
+            if (local || central) {
+                boolean directory = bytes[i + (local ? 30 : 46)] == 'd';
+                int dosTime = directory ? 0 : 40 << 25 | 1 << 21 | 1 << 16 | 31;
+                int pos = i + (local ? 10 : 12);
+                for (int b = 0; b < 4; b++) {
+                    bytes[pos + b] = (byte) (dosTime >>> (8 * b));
+                }
+            }
+        }
+        Files.write(zip.toPath(), bytes);
+
+        File repacked = new File(root, "repacked.zip");
+        zips.repack(zip, repacked, zips.DEFAULT_COMPRESSION_LEVEL);
+        assertThat(names(repacked)).containsExactly("d/", "x.txt");
+        assertThat(content(repacked, "x.txt")).isEqualTo("timestamps");
+    }
+
+    @Test
+    public void readThroughIndex() throws IOException {
+        File zip = new File(root, "index.zip");
+        zips.pack(source, zip);
+
+        assertThat(zips.containsEntry(zip, "a/hello.txt")).isTrue();
+        assertThat(zips.containsEntry(zip, "dir")).isTrue();
+        assertThat(zips.containsEntry(zip, "missing.txt")).isFalse();
+        assertThat(zips.unpackEntry(zip, "missing.txt")).isNull();
+        try (ZipFile zf = new ZipFile(zip)) {
+            for (ZipEntry entry : Collections.list(zf.entries())) {
+                try (InputStream in = zf.getInputStream(entry)) {
+                    assertThat(zips.unpackEntry(zip, entry.getName())).as(entry.getName()).isEqualTo(IOUtils.toByteArray(in));
+                }
+            }
+        }
+        assertThat(zips.index(zip)).isSameAs(zips.index(zip));
+
+        // 修改后重新加载
+        zips.addEntry(zip, "new.txt", "new".getBytes(StandardCharsets.UTF_8));
+        assertThat(zips.containsEntry(zip, "new.txt")).isTrue();
+        assertThat(new String(zips.unpackEntry(zip, "new.txt"), StandardCharsets.UTF_8)).isEqualTo("new");
+
+        // 读取后可以直接替换文件，修改时间相同也能发现变化
+        long lastModified = zip.lastModified();
+        File other = new File(root, "other.zip");
+        zips.packEntry(new File(source, "a/hello.txt"), other);
+        Files.move(other.toPath(), zip.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertThat(zip.setLastModified(lastModified)).isTrue();
+        assertThat(zips.containsEntry(zip, "new.txt")).isFalse();
+        assertThat(zips.unpackEntry(zip, "hello.txt")).isEqualTo("hello world".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void prefixedArchive() throws IOException {
+        File plain = new File(root, "plain.zip");
+        zips.pack(source, plain);
+        // 自解压脚本 + ZIP，ZIP中的偏移量不包括前面的脚本
+        byte[] stub = "#!/bin/sh\nexec unzip \"$0\"\n".getBytes(StandardCharsets.UTF_8);
+        File zip = new File(root, "prefixed.zip");
+        try (OutputStream out = new FileOutputStream(zip)) {
+            out.write(stub);
+            Files.copy(plain.toPath(), out);
+        }
+
+        assertThat(zips.containsEntry(zip, "a/hello.txt")).isTrue();
+        assertThat(zips.unpackEntry(zip, "a/b/text.txt")).isEqualTo(zips.unpackEntry(plain, "a/b/text.txt"));
+        assertThat(zips.unpackEntry(zip, "noise.bin")).isEqualTo(zips.unpackEntry(plain, "noise.bin"));
+
+        File repacked = new File(root, "repacked.zip");
+        zips.repack(zip, repacked, Deflater.NO_COMPRESSION);
+        assertThat(zips.entryEquals(plain, repacked, "a/b/photo.jpg")).isTrue();
+        assertThat(zips.entryEquals(plain, repacked, "a/b/text.txt")).isTrue();
+
+        // 追加和重写都保留前面的脚本
+        zips.addEntry(zip, "added.txt", "added".getBytes(StandardCharsets.UTF_8));
+        assertThat(content(zip, "added.txt")).isEqualTo("added");
+        assertThat(content(zip, "a/hello.txt")).isEqualTo("hello world");
+        zips.replaceEntry(zip, "a/hello.txt", "hi".getBytes(StandardCharsets.UTF_8));
+        assertThat(content(zip, "a/hello.txt")).isEqualTo("hi");
+        assertThat(zips.entryEquals(plain, zip, "noise.bin")).isTrue();
+        assertThat(zips.unpackEntry(zip, "added.txt")).isEqualTo("added".getBytes(StandardCharsets.UTF_8));
+        assertThat(Arrays.copyOf(Files.readAllBytes(zip.toPath()), stub.length)).isEqualTo(stub);
+    }
+
+    @Test
+    public void packToStream() throws IOException {
+        File serial = new File(root, "serial.zip");
+        File streamed = new File(root, "streamed.zip");
+        zips.pack(source, serial);
+        try (OutputStream out = new FileOutputStream(streamed)) {
+            zips.pack(source, out, name -> name);
+        }
+
+        assertThat(names(streamed)).containsExactlyInAnyOrderElementsOf(names(serial));
+        for (String name : names(serial)) {
+            assertThat(zips.entryEquals(serial, streamed, name)).as(name).isTrue();
+        }
+        try (ZipFile zf = new ZipFile(streamed)) {
+            assertThat(zf.getEntry("a/b/photo.jpg").getMethod()).isEqualTo(ZipEntry.STORED);
+            assertThat(zf.getEntry("a/b/text.txt").getMethod()).isEqualTo(ZipEntry.DEFLATED);
+        }
+        // 数据描述符也能被流式读取
+        List<String> streamedNames = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new FileInputStream(streamed))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                streamedNames.add(entry.getName());
+                IOUtils.toByteArray(in);
+            }
+        }
+        assertThat(streamedNames).containsExactlyInAnyOrderElementsOf(names(serial));
+
+        // 事先给出的CRC边写边校验
+        File photo = new File(source, "a/b/photo.jpg");
+        long crc = FileUtils.checksumCRC32(photo);
+        ByteArrayOutputStream stored = new ByteArrayOutputStream();
+        zips.stream().addStoredFile("photo.jpg", photo, crc).writeTo(stored);
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(stored.toByteArray()))) {
+            assertThat(in.getNextEntry().getCrc()).isEqualTo(crc);
+            assertThat(IOUtils.toByteArray(in)).isEqualTo(FileUtils.readFileToByteArray(photo));
+        }
+        assertThatThrownBy(() -> zips.stream().addStoredFile("photo.jpg", photo, crc ^ 1).writeTo(new ByteArrayOutputStream()))
+                .isInstanceOf(java.util.zip.ZipException.class);
+    }
+
+    @Test
+    public void parallelUnpack() throws IOException {
+        File zip = new File(root, "unpack.zip");
+        zips.pack(source, zip, true);
+        File serial = new File(root, "serial");
+        File parallel = new File(root, "parallel");
+        zips.unwrap(zip, serial);
+        zips.unwrap(zip, parallel, name -> name, 3);
+
+        for (File file : FileUtils.listFiles(serial, null, true)) {
+            String path = serial.toPath().relativize(file.toPath()).toString();
+            assertThat(FileUtils.contentEquals(file, new File(parallel, path))).as(path).isTrue();
+        }
+        assertThat(new File(parallel, "dir")).isDirectory();
+        assertThat(new File(parallel, "empty.txt")).hasContent("");
+    }
+
+    @Test
+    public void diff() throws IOException {
+        File from = new File(root, "from.zip");
+        File to = new File(root, "to.zip");
+        zips.pack(source, from);
+        zips.pack(source, to);
+        assertThat(zips.diff(from, to, true).isEmpty()).isTrue();
+
+        zips.edit(to).remove("a/hello.txt").put(zips.new ByteSource("noise.bin", new byte[]{1, 2, 3}))
+                .add(zips.new ByteSource("added.txt", new byte[]{4})).commit();
+        ZipDiff diff = zips.diff(from, to);
+        assertThat(diff.getAdded()).containsExactly("added.txt");
+        assertThat(diff.getRemoved()).containsExactly("a/hello.txt");
+        assertThat(diff.getChanged()).containsExactly("noise.bin");
+        assertThat(zips.entryEquals(from, to, "noise.bin")).isFalse();
+        assertThat(zips.entryEquals(from, to, "a/b/text.txt")).isTrue();
+    }
+
+    private static String content(File zip, String name) throws IOException {
+        try (ZipFile zf = new ZipFile(zip); InputStream in = zf.getInputStream(zf.getEntry(name))) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static List<String> names(File zip) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (ZipFile zf = new ZipFile(zip)) {
+            for (ZipEntry entry : Collections.list(zf.entries())) {
+                names.add(entry.getName());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,35 @@
+package org.jujubeframework.util;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ZxingCodeTest {
+
+    @Test
+    public void encodeToPng() throws Exception {
+        byte[] png = ZxingCode.encodeToPng("https://www.example.com/ticket/1024", 301, 301);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        BufferedImage expected = ZxingCode.encode("https://www.example.com/ticket/1024", 301, 301);
+        assertThat(image.getWidth()).isEqualTo(301);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                assertThat(image.getRGB(x, y) & 0xFFFFFF).isEqualTo(expected.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+        assertThat(ZxingCode.decode(new ByteArrayInputStream(png))).isEqualTo("https://www.example.com/ticket/1024");
+    }
+
+    @Test
+    public void encodeAllToPng() throws Exception {
+        Map<String, byte[]> images = ZxingCode.encodeAllToPng(Arrays.asList("票号001", "票号002", "票号003"), 200, 200);
+        assertThat(images).containsOnlyKeys("票号001", "票号002", "票号003");
+        assertThat(ZxingCode.decode(ImageIO.read(new ByteArrayInputStream(images.get("票号002"))))).isEqualTo("票号002");
+    }
+}
@@ -0,0 +1,105 @@
+package org.jujubeframework.util.net;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HttpClientRegistryTest {
+
+    private HttpServer server;
+    private String base;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/hello", exchange -> {
+            byte[] body = "你好".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        HttpClientRegistry.closeAll();
+        server.stop(0);
+    }
+
+    @Test
+    public void namedClients() throws Exception {
+        PooledHttpClient slow = HttpClientRegistry.register("slow", new HttpClientConfig().maxTotal(1).maxPerRoute(1));
+        PooledHttpClient fast = HttpClientRegistry.get("fast");
+        assertThat(HttpClientRegistry.get("slow")).isSameAs(slow);
+
+        // 慢的上游占满自己的连接池，不影响其他客户端
+        CompletableFuture<HttpResult> pending = slow.getAsync(base + "/slow");
+        HttpResult result = fast.getAsync(base + "/hello").get();
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getBodyAsString()).isEqualTo("你好");
+        assertThat(pending.isDone()).isFalse();
+        assertThat(pending.get().getStatus()).isEqualTo(503);
+
+        try (HttpStream stream = fast.stream(new HttpGet(base + "/hello"))) {
+            assertThat(IOUtils.toString(stream.getBody(), StandardCharsets.UTF_8)).isEqualTo("你好");
+        }
+    }
+
+    @Test
+    public void replaceAndClose() throws Exception {
+        PooledHttpClient old = HttpClientRegistry.get("catalog");
+        CompletableFuture<HttpResult> pending = old.getAsync(base + "/slow");
+        Thread.sleep(100);
+        PooledHttpClient current = HttpClientRegistry.register("catalog", new HttpClientConfig().socketTimeout(5000));
+
+        // 正在进行的请求正常完成，旧实例之后的请求转给新的客户端
+        assertThat(pending.get().getStatus()).isEqualTo(503);
+        assertThat(old.get(base + "/hello").getBodyAsString()).isEqualTo("你好");
+        assertThat(old.getAsync(base + "/hello").get().getBodyAsString()).isEqualTo("你好");
+        try (HttpStream stream = old.stream(new HttpGet(base + "/hello"))) {
+            assertThat(IOUtils.toString(stream.getBody(), StandardCharsets.UTF_8)).isEqualTo("你好");
+        }
+
+        // 关闭后抛出IOException
+        CompletableFuture<HttpResult> interrupted = current.getAsync(base + "/slow");
+        Thread.sleep(100);
+        HttpClientRegistry.close("catalog");
+        assertThatThrownBy(interrupted::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(IOException.class);
+        assertThatThrownBy(() -> old.get(base + "/hello")).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> current.getAsync(base + "/hello").get()).hasCauseInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void errorsAreNotHidden() {
+        PooledHttpClient client = HttpClientRegistry.getDefault();
+        assertThatThrownBy(() -> client.get("http://127.0.0.1:1/")).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> client.getAsync("http://127.0.0.1:1/").get()).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,119 @@
+package org.jujubeframework.util.net;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HttpResponseCacheTest {
+
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final AtomicInteger catalogCalls = new AtomicInteger();
+    private HttpServer server;
+    private String base;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/config", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            fullResponses.incrementAndGet();
+            byte[] body = "config".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/catalog", exchange -> {
+            catalogCalls.incrementAndGet();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "catalog".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Cache-Control", "max-age=60");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        HttpClientRegistry.closeAll();
+        server.stop(0);
+    }
+
+    @Test
+    public void revalidate() throws IOException {
+        HttpResponseCache cache = new HttpResponseCache(HttpClientRegistry.DEFAULT, 1024 * 1024);
+        for (int i = 0; i < 3; i++) {
+            assertThat(cache.get(base + "/config").getBodyAsString()).isEqualTo("config");
+        }
+        assertThat(fullResponses.get()).isEqualTo(1);
+        assertThat(notModified.get()).isEqualTo(2);
+        assertThat(cache.getRevalidatedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void clientReplaced() throws IOException {
+        HttpResponseCache cache = new HttpResponseCache("replaced", 1024 * 1024);
+        assertThat(cache.get(base + "/config").getBodyAsString()).isEqualTo("config");
+        // 重新注册或关闭客户端后，缓存使用同名的新客户端
+        HttpClientRegistry.register("replaced", new HttpClientConfig().socketTimeout(5000));
+        assertThat(cache.get(base + "/config").getBodyAsString()).isEqualTo("config");
+        HttpClientRegistry.closeAll();
+        assertThat(cache.get(base + "/config").getBodyAsString()).isEqualTo("config");
+        assertThat(notModified.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void collapseAndDiskTier() throws Exception {
+        File dir = Files.createTempDirectory("http-cache").toFile();
+        HttpResponseCache cache = new HttpResponseCache(HttpClientRegistry.DEFAULT, 1024 * 1024, dir, 1024 * 1024);
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        List<Future<HttpResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(executor.submit(() -> cache.get(base + "/catalog")));
+        }
+        for (Future<HttpResult> future : futures) {
+            assertThat(future.get().getBodyAsString()).isEqualTo("catalog");
+        }
+        executor.shutdown();
+        assertThat(catalogCalls.get()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+
+        // 新的实例从磁盘读取
+        HttpResponseCache reopened = new HttpResponseCache(HttpClientRegistry.DEFAULT, 1024 * 1024, dir, 1024 * 1024);
+        assertThat(reopened.get(base + "/catalog").getBodyAsString()).isEqualTo("catalog");
+        assertThat(reopened.getDiskHitCount()).isEqualTo(1);
+        assertThat(catalogCalls.get()).isEqualTo(1);
+        reopened.clear();
+        dir.delete();
+    }
+}
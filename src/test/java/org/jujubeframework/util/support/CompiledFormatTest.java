@@ -0,0 +1,31 @@
+package org.jujubeframework.util.support;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CompiledFormatTest {
+
+    @Test
+    public void indexed() {
+        CompiledFormat format = CompiledFormat.compile("a{0}b{1}c");
+        assertThat(format.getSlotCount()).isEqualTo(2);
+        assertThat(format.format("1", "2")).isEqualTo("a1b2c");
+        assertThat(format.format("{1}", "2")).isEqualTo("a{1}b2c");
+        assertThat(format.formatTo(new StringBuilder(">"), "1", null).toString()).isEqualTo(">a1bc");
+        assertThatThrownBy(() -> format.format("1")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void sequential() {
+        assertThat(CompiledFormat.compile("{}{}").format("1", "2", "3")).isEqualTo("12");
+        assertThat(CompiledFormat.compile("x={}, y={}").format("1")).isEqualTo("x=1, y=");
+        assertThat(CompiledFormat.compile("{0}{}").format("1")).isEqualTo("1{}");
+    }
+
+    @Test
+    public void cache() {
+        assertThat(CompiledFormat.compile("{}-{}")).isSameAs(CompiledFormat.compile("{}-{}"));
+    }
+}
@@ -0,0 +1,59 @@
+package org.jujubeframework.util.support;
+
+import org.jujubeframework.util.Calcs;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FixedDecimalTest {
+
+    @Test
+    public void parse() {
+        assertThat(FixedDecimal.scaleOf("12.340")).isEqualTo(3);
+        assertThat(FixedDecimal.scaleOf("-5")).isEqualTo(0);
+        assertThat(FixedDecimal.scaleOf("1e3")).isEqualTo(-1);
+        assertThat(FixedDecimal.scaleOf("1234567890.1234567890")).isEqualTo(-1);
+        assertThat(FixedDecimal.unscaled("-12.34", 3)).isEqualTo(-12340L);
+        assertThat(FixedDecimal.scaleOf(0.1)).isEqualTo(1);
+        assertThat(FixedDecimal.scaleOf(Double.NaN)).isEqualTo(-1);
+        assertThat(FixedDecimal.toUnscaled(2.675, 2)).isEqualTo(268L);
+        assertThat(FixedDecimal.toPlainString(-5, 3)).isEqualTo("-0.005");
+        assertThat(FixedDecimal.toPlainString(1230, 2)).isEqualTo("12.30");
+    }
+
+    @Test
+    public void arithmetic() {
+        assertThat(FixedDecimal.add(1, 1, 2, 1, 2)).isEqualTo(30L);
+        assertThat(FixedDecimal.subtract(1, 2, 5, 3, 2)).isEqualTo(1L);
+        assertThat(FixedDecimal.multiply(-125, 2, 1, 1, 2)).isEqualTo(-13L);
+        assertThat(FixedDecimal.divide(1, 0, 3, 0, 4)).isEqualTo(3333L);
+        assertThat(FixedDecimal.divide(-2, 0, 3, 0, 2)).isEqualTo(-67L);
+        assertThat(FixedDecimal.compare(10, 1, 1, 0)).isEqualTo(0);
+        assertThat(FixedDecimal.compare(Long.MAX_VALUE, 0, 1, 1)).isEqualTo(1);
+        assertThatThrownBy(() -> FixedDecimal.multiply(Long.MAX_VALUE, 0, 2, 0, 0)).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    public void bulk() {
+        long[] prices = FixedDecimal.toUnscaled(new double[]{19.99, 0.5, 100}, 2);
+        assertThat(prices).containsExactly(1999L, 50L, 10000L);
+        assertThat(FixedDecimal.sumProduct(prices, new long[]{3, 2, 1})).isEqualTo(16097L);
+        assertThat(FixedDecimal.toDouble(new long[]{FixedDecimal.sum(prices)}, 2)).containsExactly(120.49);
+    }
+
+    @Test
+    public void calcsConsistency() {
+        assertThat(Calcs.add("0.1", "0.2", 2)).isEqualTo("0.30");
+        assertThat(Calcs.mul("2.675", "1", 2)).isEqualTo("2.68");
+        assertThat(Calcs.div("1", "0", 2)).isEqualTo("1.00");
+        assertThat(Calcs.add(0.1, 0.2, 2)).isEqualTo(0.3);
+        assertThat(Calcs.equ(1, 1.0)).isTrue();
+        assertThat(Calcs.isLow("1.5", "1.50")).isFalse();
+        // 溢出时退回BigDecimal
+        String big = "999999999999999999";
+        assertThat(Calcs.mul(big, big, 0)).isEqualTo(new BigDecimal(big).multiply(new BigDecimal(big)).toPlainString());
+    }
+}
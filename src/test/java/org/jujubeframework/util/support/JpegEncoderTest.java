@@ -0,0 +1,40 @@
+package org.jujubeframework.util.support;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JpegEncoderTest {
+
+    @Test
+    public void encode() throws IOException {
+        BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setColor(new Color(255, 0, 0, 128));
+        g2.fillRect(0, 0, 150, 200);
+        g2.dispose();
+
+        byte[] best = new JpegEncoder(1.0f, false, false).toByteArray(image);
+        byte[] normal = JpegEncoder.DEFAULT.toByteArray(image);
+        byte[] progressive = new JpegEncoder(0.85f, true, true).toByteArray(image);
+        assertThat(normal.length).isLessThan(best.length);
+        for (byte[] bytes : new byte[][]{best, normal, progressive}) {
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(bytes));
+            assertThat(decoded.getWidth()).isEqualTo(300);
+            assertThat(decoded.getHeight()).isEqualTo(200);
+        }
+
+        // 重复使用池中的writer
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JpegEncoder.DEFAULT.encode(image, out);
+        assertThat(out.toByteArray()).isEqualTo(normal);
+    }
+}
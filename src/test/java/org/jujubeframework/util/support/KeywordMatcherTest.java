@@ -0,0 +1,36 @@
+package org.jujubeframework.util.support;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeywordMatcherTest {
+
+    private final KeywordMatcher matcher = KeywordMatcher.compile(Arrays.asList("he", "she", "his", "hers", "java"));
+
+    @Test
+    public void findAll() {
+        assertThat(matcher.findAll("ushers his JAVA")).extracting(KeywordMatcher.Match::getText).containsExactly("she", "his", "JAVA");
+        assertThat(matcher.findAll("nothing")).isEmpty();
+    }
+
+    @Test
+    public void highlight() {
+        assertThat(matcher.highlight("Java and his", "<em>", "</em>")).isEqualTo("<em>Java</em> and <em>his</em>");
+    }
+
+    @Test
+    public void replace() {
+        assertThat(matcher.replace("ushers", '*')).isEqualTo("u*****");
+        assertThat(matcher.replace("ushers!", "**")).isEqualTo("u**!");
+        assertThat(matcher.containsAny("abc")).isFalse();
+    }
+
+    @Test
+    public void caseSensitive() {
+        KeywordMatcher sensitive = KeywordMatcher.compile(Arrays.asList("Java"), false);
+        assertThat(sensitive.highlight("java Java", "[", "]")).isEqualTo("java [Java]");
+    }
+}
@@ -0,0 +1,39 @@
+package org.jujubeframework.util.support;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+        assertThat(histogram.getCount()).isEqualTo(100000);
+        assertThat(histogram.getMean()).isEqualTo(50000.5);
+        // 相对误差不超过1/128
+        assertThat((double) histogram.getPercentile(50)).isCloseTo(50000, within(50000 / 128.0));
+        assertThat((double) histogram.getPercentile(99)).isCloseTo(99000, within(99000 / 128.0));
+        assertThat(histogram.getPercentile(0)).isEqualTo(1);
+        assertThat(histogram.getPercentile(100)).isEqualTo(100000);
+    }
+
+    @Test
+    public void mergeAndReset() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        b.record(Long.MAX_VALUE);
+        a.merge(b);
+        assertThat(a.getCount()).isEqualTo(2);
+        assertThat(a.getMax()).isEqualTo(Long.MAX_VALUE);
+        assertThat(a.getPercentile(50)).isEqualTo(10);
+        a.reset();
+        assertThat(a.getCount()).isZero();
+        assertThat(a.getPercentile(50)).isZero();
+    }
+}
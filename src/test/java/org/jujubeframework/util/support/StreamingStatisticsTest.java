@@ -0,0 +1,30 @@
+package org.jujubeframework.util.support;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class StreamingStatisticsTest {
+
+    @Test
+    public void merge() {
+        StreamingStatistics all = new StreamingStatistics().addAll(new double[]{1, 2, 3, 4, 5, 6});
+        StreamingStatistics merged = new StreamingStatistics().addAll(new double[]{1, 2, 3, 4}).merge(new StreamingStatistics().addAll(new double[]{5, 6}));
+        assertThat(merged.getCount()).isEqualTo(6);
+        assertThat(merged.getSum()).isEqualTo(21.0);
+        assertThat(merged.getMean()).isEqualTo(all.getMean());
+        assertThat(merged.getVariance()).isCloseTo(all.getVariance(), within(1e-12));
+        assertThat(merged.getSampleVariance()).isCloseTo(3.5, within(1e-12));
+        assertThat(merged.getMin()).isEqualTo(1.0);
+        assertThat(merged.getMax()).isEqualTo(6.0);
+    }
+
+    @Test
+    public void empty() {
+        StreamingStatistics statistics = new StreamingStatistics();
+        assertThat(statistics.getMean()).isNaN();
+        assertThat(statistics.getVariance()).isNaN();
+        assertThat(statistics.merge(new StreamingStatistics().add(3)).getMean()).isEqualTo(3.0);
+    }
+}
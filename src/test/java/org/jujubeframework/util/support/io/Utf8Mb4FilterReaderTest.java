@@ -0,0 +1,66 @@
+package org.jujubeframework.util.support.io;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class Utf8Mb4FilterReaderTest {
+
+    @Test
+    public void surrogatePairSplitAcrossReads() throws IOException {
+        // 每次最多读2个字符，代理对被拆在两次读取中
+        Reader reader = new Utf8Mb4FilterReader(chunked("a😀b😀😀c", 2));
+        char[] buf = new char[2];
+        StringBuilder result = new StringBuilder();
+        int n;
+        while ((n = reader.read(buf, 0, buf.length)) != -1) {
+            // 整段都是代理字符时继续读，不返回0
+            assertThat(n).isPositive();
+            result.append(buf, 0, n);
+        }
+        assertThat(result.toString()).isEqualTo("abc");
+    }
+
+    @Test
+    public void loneHighSurrogateAtEnd() throws IOException {
+        assertThat(IOUtils.toString(new Utf8Mb4FilterReader(new StringReader("abc\uD83D")))).isEqualTo("abc");
+        assertThat(IOUtils.toString(new Utf8Mb4FilterReader(new StringReader("\uD83D")))).isEmpty();
+
+        Reader reader = new Utf8Mb4FilterReader(new StringReader("中\uD83D"));
+        assertThat(reader.read()).isEqualTo('中');
+        assertThat(reader.read()).isEqualTo(-1);
+    }
+
+    @Test
+    public void skipAndClose() throws IOException {
+        StringReader in = new StringReader("😀ab😀cd");
+        Reader reader = new Utf8Mb4FilterReader(in);
+        // 跳过的是过滤后的字符
+        assertThat(reader.skip(3)).isEqualTo(3);
+        assertThat(reader.read()).isEqualTo('d');
+        assertThat(reader.skip(1)).isZero();
+        assertThat(reader.markSupported()).isFalse();
+
+        reader.close();
+        assertThatThrownBy(in::read).isInstanceOf(IOException.class);
+    }
+
+    /**
+     * 每次最多返回max个字符的Reader
+     */
+    private static Reader chunked(String text, int max) {
+        return new FilterReader(new StringReader(text)) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, max));
+            }
+        };
+    }
+}
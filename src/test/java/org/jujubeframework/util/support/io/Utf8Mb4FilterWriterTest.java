@@ -0,0 +1,57 @@
+package org.jujubeframework.util.support.io;
+
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class Utf8Mb4FilterWriterTest {
+
+    @Test
+    public void surrogatePairSplitAcrossWrites() throws IOException {
+        StringWriter out = new StringWriter();
+        Writer writer = new Utf8Mb4FilterWriter(out);
+        // 代理对被拆在两次写入中
+        writer.write("a\uD83D".toCharArray(), 0, 2);
+        writer.write("\uDE00b".toCharArray(), 0, 2);
+        writer.write("x\uD83D", 1, 1);
+        writer.write("\uDE00中", 0, 2);
+        writer.write(0xD83D);
+        writer.write(0xDE00);
+        writer.write('c');
+        // 只写数组或字符串中的一段
+        writer.write("--😀d--".toCharArray(), 2, 3);
+        writer.write("--e😀--", 2, 3);
+        assertThat(out.toString()).isEqualTo("ab中cde");
+    }
+
+    @Test
+    public void loneHighSurrogateAtEnd() throws IOException {
+        StringWriter out = new StringWriter();
+        try (Writer writer = new Utf8Mb4FilterWriter(out)) {
+            writer.write("abc\uD83D");
+        }
+        assertThat(out.toString()).isEqualTo("abc");
+    }
+
+    @Test
+    public void flushAndClose() throws IOException {
+        StringWriter out = new StringWriter();
+        BufferedWriter buffered = new BufferedWriter(out);
+        Writer writer = new Utf8Mb4FilterWriter(buffered);
+        writer.write("a😀b");
+        assertThat(out.toString()).isEmpty();
+        writer.flush();
+        assertThat(out.toString()).isEqualTo("ab");
+
+        writer.write("c");
+        writer.close();
+        assertThat(out.toString()).isEqualTo("abc");
+        assertThatThrownBy(() -> buffered.write("d")).isInstanceOf(IOException.class);
+    }
+}